@@ -0,0 +1,80 @@
+package org.base.benchmark;
+
+import org.base.aggregator.MedianResolver;
+import org.base.aggregator.RecordAggregate;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Folds parsed records into the aggregate, merges per source aggregates and resolves the median person,
+// without the cost of parsing.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregationBenchmark {
+    private static final int ROWS_PER_SOURCE = 1000;
+
+    @Param({"1000", "100000", "1000000", "5000000"})
+    private int rows;
+
+    private int[] ages;
+    private List<RecordAggregate> sourceAggregates;
+    private RecordAggregate medianBetweenAges;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        ages = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            ages[i] = random.nextInt(100);
+        }
+
+        sourceAggregates = new ArrayList<>();
+        for (int start = 0; start < rows; start += ROWS_PER_SOURCE) {
+            RecordAggregate source = new RecordAggregate();
+            for (int i = start; i < Math.min(rows, start + ROWS_PER_SOURCE); i++) {
+                addRecord(source, ages[i]);
+            }
+            sourceAggregates.add(source);
+        }
+
+        // Worst case of the even median, the two middle ages are far apart and nobody is aged in between
+        medianBetweenAges = new RecordAggregate();
+        for (int i = 0; i < rows; i++) {
+            addRecord(medianBetweenAges, i < rows / 2 ? 1 : 149);
+        }
+    }
+
+    @Benchmark
+    public RecordAggregate aggregate() {
+        RecordAggregate allData = new RecordAggregate();
+        for (int age : ages) {
+            addRecord(allData, age);
+        }
+        return allData;
+    }
+
+    @Benchmark
+    public RecordAggregate mergeSources() {
+        RecordAggregate allData = new RecordAggregate();
+        sourceAggregates.forEach(allData::merge);
+        return allData;
+    }
+
+    @Benchmark
+    public String medianPerson() {
+        return new MedianResolver(medianBetweenAges).getPersonWithMedianAge();
+    }
+
+    private static void addRecord(RecordAggregate allData, int age) {
+        if (allData.add(age)) {
+            allData.setPersonWithAge(age, "Phillip GILES");
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.base.benchmark;
+
+import org.base.aggregator.RecordAggregate;
+import org.base.config.StatisticsProperties;
+import org.base.dto.RecordErrors;
+import org.base.dto.URLErrors;
+import org.base.exectutor.ExecutorServiceManager;
+import org.base.fetcher.ChunkedFileParser;
+import org.base.fetcher.DataFetcher;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Parses a whole synthetic CSV file per operation, from a stream like uploads and URLs and from a local file
+// like paths. Run with "-prof gc" to see the allocation rate next to the throughput.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CsvParserBenchmark {
+
+    @Param({"1000", "100000", "1000000", "5000000"})
+    private int rows;
+
+    private byte[] csv;
+    private Path csvFile;
+    private ExecutorServiceManager executorServiceManager;
+    private ChunkedFileParser chunkedFileParser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        csv = SyntheticCsv.generate(rows);
+        csvFile = Files.createTempFile("benchmark-", ".csv");
+        Files.write(csvFile, csv);
+        executorServiceManager = new ExecutorServiceManager(new StatisticsProperties());
+        chunkedFileParser = new ChunkedFileParser(executorServiceManager);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        executorServiceManager.shutdown();
+        Files.deleteIfExists(csvFile);
+    }
+
+    @Benchmark
+    public RecordAggregate parseStream() throws IOException {
+        return DataFetcher.processCSVFile("benchmark.csv", new ByteArrayInputStream(csv), new ArrayList<>(),
+                new HashSet<URLErrors>(), new HashSet<RecordErrors>());
+    }
+
+    @Benchmark
+    public RecordAggregate parseLocalFile() throws IOException {
+        RecordAggregate allData = new RecordAggregate();
+        List<String> recordLineErrors = new ArrayList<>();
+        chunkedFileParser.parse("benchmark.csv", csvFile, allData, recordLineErrors);
+        return allData;
+    }
+}
@@ -0,0 +1,42 @@
+package org.base.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+// Generates CSV data in the format of the service, with a fixed seed so every run parses the same bytes.
+// Every 20th line is one of the malformed lines the parser reports as a line error.
+public class SyntheticCsv {
+    private static final String[] FIRST_NAMES = {"Phillip", "Michaela", "Mikayla", "Melanie", "Caitlin", "Cory", "Jorge", "Desiree"};
+    private static final String[] LAST_NAMES = {"GILES", "SERRANO", "POWELL", "CHAVEZ", "PARKER", "FINLEY", "MALDONADO", "SCOTT"};
+    private static final String[] BAD_LINES = {"Sergio, CANNON", "Jesus, BRYANT, 4x", "Faith, CHAVEZ, 151", "Cory, FINLEY, , 37"};
+
+    public static byte[] generate(int rows) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(rows * 24);
+        try {
+            write(outputStream, rows);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static void write(OutputStream outputStream, int rows) throws IOException {
+        Random random = new Random(42);
+        StringBuilder line = new StringBuilder("fname, lname, age\n");
+        for (int row = 0; row < rows; row++) {
+            if (row % 20 == 19) {
+                line.append(BAD_LINES[random.nextInt(BAD_LINES.length)]);
+            } else {
+                line.append(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]).append(", ")
+                        .append(LAST_NAMES[random.nextInt(LAST_NAMES.length)]).append(", ")
+                        .append(random.nextInt(100));
+            }
+            line.append('\n');
+            outputStream.write(line.toString().getBytes(StandardCharsets.UTF_8));
+            line.setLength(0);
+        }
+    }
+}
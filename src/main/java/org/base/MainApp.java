@@ -1,9 +1,12 @@
 package org.base;
 
 import org.springframework.boot.SpringApplication;
+import org.base.config.StatisticsProperties;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
+@EnableConfigurationProperties(StatisticsProperties.class)
 public class MainApp {
     public static void main(String[] args) {
         SpringApplication.run(MainApp.class, args);
@@ -0,0 +1,74 @@
+package org.base.aggregator;
+
+// Counting structure used instead of sorting the records by age.
+// Ages are bounded between 0 and MAX_AGE, so the histogram has a fixed size.
+public class AgeHistogram {
+    public static final int MIN_AGE = 0;
+    public static final int MAX_AGE = 150;
+
+    private final long[] ageCounts = new long[MAX_AGE + 1];
+    private long count;
+    private long sum;
+
+    public static boolean isValidAge(int age) {
+        return age >= MIN_AGE && age <= MAX_AGE;
+    }
+
+    public void add(int age) {
+        ageCounts[age]++;
+        count++;
+        sum += age;
+    }
+
+    // Adds a number of records with the same age at once, used for aggregates read from other instances
+    public void add(int age, long records) {
+        ageCounts[age] += records;
+        count += records;
+        sum += age * records;
+    }
+
+    public void merge(AgeHistogram other) {
+        for (int age = MIN_AGE; age <= MAX_AGE; age++) {
+            ageCounts[age] += other.ageCounts[age];
+        }
+        count += other.count;
+        sum += other.sum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getCount(int age) {
+        return ageCounts[age];
+    }
+
+    public double getAverage() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    // Returns the age found at the given (0 based) position if all records were sorted by age
+    public int ageAtRank(long rank) {
+        long seen = 0;
+        for (int age = MIN_AGE; age <= MAX_AGE; age++) {
+            seen += ageCounts[age];
+            if (rank < seen) {
+                return age;
+            }
+        }
+        throw new IndexOutOfBoundsException("Rank " + rank + " is out of bounds for " + count + " records");
+    }
+
+    // Returns the number of records that are younger than the given age
+    public long countBelow(int age) {
+        long below = 0;
+        for (int i = MIN_AGE; i < age; i++) {
+            below += ageCounts[i];
+        }
+        return below;
+    }
+}
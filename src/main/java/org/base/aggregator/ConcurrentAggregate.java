@@ -0,0 +1,49 @@
+package org.base.aggregator;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.base.aggregator.AgeHistogram.MAX_AGE;
+import static org.base.aggregator.AgeHistogram.MIN_AGE;
+
+// Aggregate that many producers add to at the same time without a lock. Each producer parses its rows into its own
+// RecordAggregate and adds it here at once, so a batch costs one striped counter update per age whatever its size.
+// The person kept for each age is the one of the first batch that had a person with that age.
+//
+// A reader can see a batch that is still being added for some ages only. The count and the sum are derived from the
+// age counts that were read, so the statistics of a read are always consistent with each other.
+public class ConcurrentAggregate {
+    private final LongAdder[] ageCounts = new LongAdder[MAX_AGE + 1];
+    private final AtomicReferenceArray<String> personByAge = new AtomicReferenceArray<>(MAX_AGE + 1);
+
+    public ConcurrentAggregate() {
+        for (int age = MIN_AGE; age <= MAX_AGE; age++) {
+            ageCounts[age] = new LongAdder();
+        }
+    }
+
+    public void add(RecordAggregate batch) {
+        AgeHistogram histogram = batch.getHistogram();
+        for (int age = MIN_AGE; age <= MAX_AGE; age++) {
+            long records = histogram.getCount(age);
+            if (records == 0) {
+                continue;
+            }
+            // The person is set before the count, a reader that sees the age always finds a person for it
+            personByAge.compareAndSet(age, null, batch.getPersonWithAge(age));
+            ageCounts[age].add(records);
+        }
+    }
+
+    // A copy of the current counts, built from the fixed number of ages and not from the records
+    public RecordAggregate toRecordAggregate() {
+        RecordAggregate allData = new RecordAggregate();
+        for (int age = MIN_AGE; age <= MAX_AGE; age++) {
+            long records = ageCounts[age].sum();
+            if (records > 0 && allData.add(age, records)) {
+                allData.setPersonWithAge(age, personByAge.get(age));
+            }
+        }
+        return allData;
+    }
+}
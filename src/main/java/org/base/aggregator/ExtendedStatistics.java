@@ -0,0 +1,92 @@
+package org.base.aggregator;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.base.aggregator.AgeHistogram.MAX_AGE;
+import static org.base.aggregator.AgeHistogram.MIN_AGE;
+
+// Minimum, maximum, variance, percentiles and the count of every age, all read from the age histogram that the single
+// pass over the records already built. No record is read again and nothing is sorted, every statistic is found in the
+// same walk over the MAX_AGE + 1 ages whatever the number of records.
+public class ExtendedStatistics {
+    private final int minAge;
+    private final int maxAge;
+    private final double variance;
+    private final int[] percentileAges;
+    private final Map<Integer, Long> ageCounts = new LinkedHashMap<>();
+
+    // Percentiles use the nearest rank method, the age of the p-th percentile is the lowest age with at least p% of the
+    // records at or below it. The 0th percentile is the minimum age.
+    public ExtendedStatistics(AgeHistogram histogram, double[] percentiles) {
+        long[] ranks = new long[percentiles.length];
+        percentileAges = new int[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            long recordsAtOrBelow = BigDecimal.valueOf(percentiles[i]).multiply(BigDecimal.valueOf(histogram.getCount()))
+                    .divide(BigDecimal.valueOf(100), 0, RoundingMode.CEILING).longValueExact();
+            ranks[i] = Math.max(0, recordsAtOrBelow - 1);
+            percentileAges[i] = -1;
+        }
+
+        int min = -1;
+        int max = -1;
+        long seen = 0;
+        double mean = 0;
+        double squaredDeviations = 0;
+        for (int age = MIN_AGE; age <= MAX_AGE; age++) {
+            long records = histogram.getCount(age);
+            if (records == 0) {
+                continue;
+            }
+            if (min == -1) {
+                min = age;
+            }
+            max = age;
+            ageCounts.put(age, records);
+
+            // Welford's update weighted by the number of records with this age, which adds them all at once
+            seen += records;
+            double delta = age - mean;
+            mean += delta * records / seen;
+            squaredDeviations += records * delta * (age - mean);
+
+            for (int i = 0; i < ranks.length; i++) {
+                if (percentileAges[i] == -1 && ranks[i] < seen) {
+                    percentileAges[i] = age;
+                }
+            }
+        }
+        this.minAge = min;
+        this.maxAge = max;
+        this.variance = seen == 0 ? 0 : squaredDeviations / seen;
+    }
+
+    public int getMinAge() {
+        return minAge;
+    }
+
+    public int getMaxAge() {
+        return maxAge;
+    }
+
+    // Population variance, every record of the request is part of the data
+    public double getVariance() {
+        return variance;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(variance);
+    }
+
+    // Ages of the percentiles, in the order they were asked for
+    public int[] getPercentileAges() {
+        return percentileAges;
+    }
+
+    // Counts of the ages that have records, from the youngest age to the oldest
+    public Map<Integer, Long> getAgeCounts() {
+        return ageCounts;
+    }
+}
@@ -0,0 +1,131 @@
+package org.base.aggregator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import static org.base.aggregator.AgeHistogram.MAX_AGE;
+import static org.base.aggregator.AgeHistogram.MIN_AGE;
+
+// Age histograms per group, such as per last name, counted while the records are parsed. The keys are interned as
+// bytes in a NameDictionary and the histogram of the group with id i is counts[i * AGES] up to counts[(i + 1) * AGES],
+// so counting a record looks up its key without creating an object and increments one long.
+//
+// At most maxGroups keys are tracked. The records of keys first seen after that are counted in one histogram of
+// other groups, so a key column with millions of distinct values takes no more than maxGroups histograms. Aggregates
+// that were counted apart, such as the chunks of a file, can each track a key the other did not, so once any records
+// are in the other groups the counts of the tracked keys can be low.
+public class GroupAggregate {
+    private static final int AGES = MAX_AGE + 1;
+    private static final int NOT_TRACKED = -1;
+
+    private final int maxGroups;
+    private final NameDictionary keys = new NameDictionary();
+    private final AgeHistogram otherGroups = new AgeHistogram();
+    private long[] counts = new long[16 * AGES];
+
+    public GroupAggregate(int maxGroups) {
+        this.maxGroups = maxGroups;
+    }
+
+    // Counts a record of the group whose key is the bytes between start and end
+    public void add(ByteBuffer bytes, int start, int end, int age) {
+        count(id(bytes, start, end), age, 1);
+    }
+
+    // Counts all the records of a histogram in one group, used to group whole sources
+    public void add(String key, AgeHistogram histogram) {
+        byte[] utf8 = key.getBytes(StandardCharsets.UTF_8);
+        int id = id(ByteBuffer.wrap(utf8), 0, utf8.length);
+        for (int age = MIN_AGE; age <= MAX_AGE; age++) {
+            if (histogram.getCount(age) > 0) {
+                count(id, age, histogram.getCount(age));
+            }
+        }
+    }
+
+    // Groups of the other aggregate that do not fit are counted in the other groups here
+    public void merge(GroupAggregate other) {
+        int[] ids = keys.internAll(other.keys, maxGroups);
+        for (int otherId = 0; otherId < ids.length; otherId++) {
+            int offset = otherId * AGES;
+            for (int age = MIN_AGE; age <= MAX_AGE; age++) {
+                if (other.counts[offset + age] > 0) {
+                    count(ids[otherId], age, other.counts[offset + age]);
+                }
+            }
+        }
+        otherGroups.merge(other.otherGroups);
+    }
+
+    public int getMaxGroups() {
+        return maxGroups;
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    public String getKey(int id) {
+        return keys.get(id);
+    }
+
+    public AgeHistogram getHistogram(int id) {
+        AgeHistogram histogram = new AgeHistogram();
+        int offset = id * AGES;
+        for (int age = MIN_AGE; age <= MAX_AGE; age++) {
+            if (counts[offset + age] > 0) {
+                histogram.add(age, counts[offset + age]);
+            }
+        }
+        return histogram;
+    }
+
+    // Records of the keys that were not tracked
+    public AgeHistogram getOtherGroups() {
+        return otherGroups;
+    }
+
+    // Ids of the k groups with the most records, the largest first. Only k ids are held while the groups are compared.
+    public int[] topGroups(int k) {
+        long[] totals = new long[keys.size()];
+        for (int id = 0; id < totals.length; id++) {
+            int offset = id * AGES;
+            for (int age = MIN_AGE; age <= MAX_AGE; age++) {
+                totals[id] += counts[offset + age];
+            }
+        }
+
+        // Smallest group on top, ties are broken by the key so the result does not depend on the order of the sources
+        PriorityQueue<Integer> smallest = new PriorityQueue<>(Math.min(k, Math.max(1, totals.length)), (a, b) ->
+                totals[a] != totals[b] ? Long.compare(totals[a], totals[b]) : keys.get(b).compareTo(keys.get(a)));
+        for (int id = 0; id < totals.length; id++) {
+            smallest.add(id);
+            if (smallest.size() > k) {
+                smallest.poll();
+            }
+        }
+        int[] top = new int[smallest.size()];
+        for (int i = top.length - 1; i >= 0; i--) {
+            top[i] = smallest.poll();
+        }
+        return top;
+    }
+
+    private int id(ByteBuffer bytes, int start, int end) {
+        return keys.size() < maxGroups ? keys.intern(bytes, start, end) : keys.find(bytes, start, end);
+    }
+
+    private void count(int id, int age, long records) {
+        if (id == NOT_TRACKED) {
+            otherGroups.add(age, records);
+            return;
+        }
+        int offset = id * AGES;
+        if (offset + AGES > counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(counts.length * 2, offset + AGES));
+        }
+        counts[offset + age] += records;
+    }
+}
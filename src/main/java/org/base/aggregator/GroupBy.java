@@ -0,0 +1,49 @@
+package org.base.aggregator;
+
+import org.base.util.InvalidRequestException;
+
+// The column a summary is broken down by, and how many groups are tracked and returned
+public class GroupBy {
+    public enum Key {
+        FNAME, LNAME, SOURCE;
+
+        public static Key parse(String name) {
+            for (Key key : values()) {
+                if (key.name().equalsIgnoreCase(name)) {
+                    return key;
+                }
+            }
+            throw new InvalidRequestException("Can not group by " + name);
+        }
+    }
+
+    private final Key key;
+    private final int topGroups;
+    private final int maxGroups;
+
+    // The topGroups groups with the most records are returned, of at most maxGroups groups tracked per source
+    public GroupBy(Key key, int topGroups, int maxGroups) {
+        if (topGroups < 1) {
+            throw new InvalidRequestException("At least one group must be returned");
+        }
+        this.key = key;
+        this.topGroups = topGroups;
+        this.maxGroups = maxGroups;
+    }
+
+    public Key getKey() {
+        return key;
+    }
+
+    public int getTopGroups() {
+        return topGroups;
+    }
+
+    public int getMaxGroups() {
+        return maxGroups;
+    }
+
+    public GroupAggregate newAggregate() {
+        return new GroupAggregate(maxGroups);
+    }
+}
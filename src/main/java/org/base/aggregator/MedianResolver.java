@@ -0,0 +1,52 @@
+package org.base.aggregator;
+
+import static org.base.aggregator.AgeHistogram.MAX_AGE;
+import static org.base.aggregator.AgeHistogram.MIN_AGE;
+
+// Finds the median age and a person with that age in a single pass over the histogram.
+//
+// For an even count with different middle ages the person is chosen by rounding the median up and then trying
+// every higher age until a person is found. No record can have an age between the two middle ages, they are
+// neighbours in sorted order, and every age with a record has a person. So the first person found that way is
+// always the one with the upper middle age and no search is needed.
+public class MedianResolver {
+    private final double medianAge;
+    private final String personWithMedianAge;
+
+    public MedianResolver(RecordAggregate allData) {
+        AgeHistogram histogram = allData.getHistogram();
+        long size = histogram.getCount();
+        if (size == 0) {
+            medianAge = 0;
+            personWithMedianAge = null;
+            return;
+        }
+
+        // Ages at the (0 based) ranks size / 2 - 1 and size / 2 if all records were sorted by age
+        long upperRank = size / 2;
+        long lowerRank = size % 2 == 0 ? upperRank - 1 : upperRank;
+        int lowerAge = -1;
+        int upperAge = -1;
+        long seen = 0;
+        for (int age = MIN_AGE; age <= MAX_AGE && upperAge == -1; age++) {
+            seen += histogram.getCount(age);
+            if (lowerAge == -1 && lowerRank < seen) {
+                lowerAge = age;
+            }
+            if (upperRank < seen) {
+                upperAge = age;
+            }
+        }
+
+        medianAge = (lowerAge + upperAge) / 2.0;
+        personWithMedianAge = allData.getPersonWithAge(upperAge);
+    }
+
+    public double getMedianAge() {
+        return medianAge;
+    }
+
+    public String getPersonWithMedianAge() {
+        return personWithMedianAge;
+    }
+}
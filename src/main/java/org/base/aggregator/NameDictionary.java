@@ -0,0 +1,167 @@
+package org.base.aggregator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Interns names given as UTF-8 bytes, every distinct name gets the next id starting at 0. The bytes of all names are
+// kept one after the other in a single array and ids are found with open addressing, so interning a name that is
+// already known creates no object.
+public class NameDictionary {
+    private static final int EMPTY = -1;
+
+    private byte[] bytes = new byte[4096];
+    private int bytesLength;
+    // The name with id i is bytes[offsets[i]] up to bytes[offsets[i + 1]]
+    private int[] offsets = new int[65];
+    private int[] hashes = new int[64];
+    private int[] slots = newSlots(128);
+    private int size;
+
+    // Id of the bytes between start and end, the buffer position is left untouched
+    public int intern(ByteBuffer name, int start, int end) {
+        return lookup(name, start, end, true);
+    }
+
+    // Id of the bytes between start and end if they are already known, -1 otherwise
+    public int find(ByteBuffer name, int start, int end) {
+        return lookup(name, start, end, false);
+    }
+
+    private int lookup(ByteBuffer name, int start, int end, boolean add) {
+        int hash = hash(name, start, end);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot];
+            if (id == EMPTY) {
+                if (!add) {
+                    return EMPTY;
+                }
+                id = add(name, start, end, hash);
+                slots[slot] = id;
+                if (size * 2 > slots.length) {
+                    rehash();
+                }
+                return id;
+            }
+            if (hashes[id] == hash && matches(id, name, start, end)) {
+                return id;
+            }
+        }
+    }
+
+    public int intern(String name) {
+        byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+        return intern(ByteBuffer.wrap(utf8), 0, utf8.length);
+    }
+
+    // Ids of the names of another dictionary in this one, indexed by their id in the other dictionary
+    public int[] internAll(NameDictionary other) {
+        return internAll(other, Integer.MAX_VALUE);
+    }
+
+    // Same, but no name is added once this dictionary has maxSize names. The id of a name that was not added is -1.
+    public int[] internAll(NameDictionary other, int maxSize) {
+        ByteBuffer otherBytes = ByteBuffer.wrap(other.bytes);
+        int[] ids = new int[other.size];
+        for (int id = 0; id < other.size; id++) {
+            ids[id] = lookup(otherBytes, other.offsets[id], other.offsets[id + 1], size < maxSize);
+        }
+        return ids;
+    }
+
+    public String get(int id) {
+        return new String(bytes, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Written as the name count, the byte count, the offsets and the bytes, the layout NameDictionary.read expects
+    public int serializedSize() {
+        return 8 + (size + 1) * 4 + bytesLength;
+    }
+
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(size);
+        buffer.putInt(bytesLength);
+        for (int id = 0; id <= size; id++) {
+            buffer.putInt(offsets[id]);
+        }
+        buffer.put(bytes, 0, bytesLength);
+    }
+
+    // A name of a serialized dictionary, read without building the dictionary. The offset is where writeTo started.
+    public static String read(ByteBuffer buffer, int offset, int id) {
+        int size = buffer.getInt(offset);
+        int offsetsStart = offset + 8;
+        int bytesStart = offsetsStart + (size + 1) * 4;
+        int start = buffer.getInt(offsetsStart + id * 4);
+        int end = buffer.getInt(offsetsStart + (id + 1) * 4);
+        byte[] name = new byte[end - start];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = buffer.get(bytesStart + start + i);
+        }
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private int add(ByteBuffer name, int start, int end, int hash) {
+        int length = end - start;
+        if (bytesLength + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, bytesLength + length));
+        }
+        for (int i = 0; i < length; i++) {
+            bytes[bytesLength + i] = name.get(start + i);
+        }
+        bytesLength += length;
+
+        if (size + 1 == hashes.length) {
+            hashes = Arrays.copyOf(hashes, hashes.length * 2);
+            offsets = Arrays.copyOf(offsets, hashes.length + 1);
+        }
+        hashes[size] = hash;
+        offsets[size + 1] = bytesLength;
+        return size++;
+    }
+
+    private boolean matches(int id, ByteBuffer name, int start, int end) {
+        int offset = offsets[id];
+        if (offsets[id + 1] - offset != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (bytes[offset++] != name.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        slots = newSlots(slots.length * 2);
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id;
+        }
+    }
+
+    private static int[] newSlots(int length) {
+        int[] slots = new int[length];
+        Arrays.fill(slots, EMPTY);
+        return slots;
+    }
+
+    // Spreads the high bits, the slot is taken from the low bits
+    private static int hash(ByteBuffer name, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + name.get(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
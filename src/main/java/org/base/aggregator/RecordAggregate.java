@@ -0,0 +1,63 @@
+package org.base.aggregator;
+
+import static org.base.aggregator.AgeHistogram.MAX_AGE;
+
+// Per source accumulator, every record is folded into the age histogram and then thrown away.
+// Only the first person seen for each age is kept, which is enough to name a person with the median age.
+public class RecordAggregate {
+    private final AgeHistogram histogram = new AgeHistogram();
+    private final String[] personByAge = new String[MAX_AGE + 1];
+    // Histograms per group of a summary with groupBy, null otherwise
+    private GroupAggregate groups;
+
+    // Counts the age and returns true if this is the first person with that age, whose name should then be set
+    public boolean add(int age) {
+        histogram.add(age);
+        return personByAge[age] == null;
+    }
+
+    public boolean add(int age, long records) {
+        histogram.add(age, records);
+        return personByAge[age] == null;
+    }
+
+    public void setPersonWithAge(int age, String person) {
+        personByAge[age] = person;
+    }
+
+    // Sources are merged in submission order, so the person kept for each age is the first one read
+    public void merge(RecordAggregate other) {
+        histogram.merge(other.histogram);
+        for (int age = 0; age <= MAX_AGE; age++) {
+            if (personByAge[age] == null) {
+                personByAge[age] = other.personByAge[age];
+            }
+        }
+        if (other.groups != null) {
+            if (groups == null) {
+                groups = new GroupAggregate(other.groups.getMaxGroups());
+            }
+            groups.merge(other.groups);
+        }
+    }
+
+    public GroupAggregate getGroups() {
+        return groups;
+    }
+
+    public void setGroups(GroupAggregate groups) {
+        this.groups = groups;
+    }
+
+    public AgeHistogram getHistogram() {
+        return histogram;
+    }
+
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    public String getPersonWithAge(int age) {
+        return personByAge[age];
+    }
+}
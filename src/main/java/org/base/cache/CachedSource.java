@@ -0,0 +1,49 @@
+package org.base.cache;
+
+import org.base.aggregator.RecordAggregate;
+import org.base.fetcher.FetchResponse;
+
+import java.util.Collections;
+import java.util.List;
+
+// Parsed result of a URL source together with the validators needed to ask the server if it changed.
+// The aggregate and line errors are shared by every request that gets a cache hit, so they are never modified.
+public class CachedSource {
+    private final RecordAggregate allData;
+    private final List<String> recordLineErrors;
+    private final boolean validCSV;
+    private final FetchResponse validators;
+    private volatile long validatedAtMillis;
+
+    public CachedSource(RecordAggregate allData, List<String> recordLineErrors, boolean validCSV, FetchResponse validators) {
+        this.allData = allData;
+        this.recordLineErrors = Collections.unmodifiableList(recordLineErrors);
+        this.validCSV = validCSV;
+        this.validators = validators;
+        this.validatedAtMillis = System.currentTimeMillis();
+    }
+
+    public RecordAggregate getAllData() {
+        return allData;
+    }
+
+    public List<String> getRecordLineErrors() {
+        return recordLineErrors;
+    }
+
+    public boolean isValidCSV() {
+        return validCSV;
+    }
+
+    public FetchResponse getValidators() {
+        return validators;
+    }
+
+    long getValidatedAtMillis() {
+        return validatedAtMillis;
+    }
+
+    void markValidated() {
+        validatedAtMillis = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,96 @@
+package org.base.cache;
+
+import org.base.config.StatisticsProperties;
+import org.base.dto.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps the parsed result of URL sources, so a URL that did not change since the last request is answered
+// by the server with 304 Not Modified and is neither downloaded nor parsed again.
+// The cache is bounded by the number of entries and drops the least recently used source first. Entries that
+// were not validated against the server within the ttl are dropped as well.
+@Component
+public class UrlSourceCache {
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    private final Map<String, CachedSource> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    @Autowired
+    public UrlSourceCache(StatisticsProperties statisticsProperties) {
+        StatisticsProperties.Cache properties = statisticsProperties.getCache();
+        this.enabled = properties.isEnabled();
+        this.maxEntries = properties.getMaxEntries();
+        this.ttlMillis = properties.getTtl().toMillis();
+
+        // Access ordered map, the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<String, CachedSource>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSource> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Returns the cached source to revalidate, or null if the URL is not cached or its entry expired
+    public CachedSource get(String url) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (entries) {
+            CachedSource cached = entries.get(url);
+            if (cached != null && System.currentTimeMillis() - cached.getValidatedAtMillis() > ttlMillis) {
+                entries.remove(url);
+                expirations.increment();
+                return null;
+            }
+            return cached;
+        }
+    }
+
+    // The server confirmed that the cached source did not change
+    public CachedSource notModified(CachedSource cached) {
+        hits.increment();
+        cached.markValidated();
+        return cached;
+    }
+
+    // The source was downloaded and parsed, it is only kept if the server sent validators to revalidate it with
+    public void put(String url, CachedSource source) {
+        if (!enabled) {
+            return;
+        }
+        misses.increment();
+        synchronized (entries) {
+            if (source.getValidators().hasValidators()) {
+                entries.put(url, source);
+            } else {
+                entries.remove(url);
+            }
+        }
+    }
+
+    public CacheStats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        double hitRate = hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount);
+        return new CacheStats(size, maxEntries, hitCount, missCount, evictions.sum(), expirations.sum(), hitRate);
+    }
+}
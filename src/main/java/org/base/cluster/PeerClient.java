@@ -0,0 +1,66 @@
+package org.base.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import org.base.config.StatisticsProperties;
+import org.base.dto.PartialAggregate;
+import org.base.fetcher.HttpStatusException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Asks the peer instances of a coordinator for the partial aggregate of a shard of paths or URLs
+@Component
+public class PeerClient {
+    private static final String PARTIAL_PATH = "/rest/summary/partial";
+
+    private final List<String> peers;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    public PeerClient(StatisticsProperties statisticsProperties) {
+        StatisticsProperties.Cluster properties = statisticsProperties.getCluster();
+        this.peers = new ArrayList<>();
+        for (String peer : properties.getPeers()) {
+            if (!peer.trim().isEmpty()) {
+                peers.add(peer.trim().replaceAll("/+$", ""));
+            }
+        }
+        // The peer answers once its whole shard was read, so the response timeout covers the shard and not only the network
+        this.httpClient = HttpClient.create()
+                .responseTimeout(properties.getPeerTimeout());
+    }
+
+    public List<String> getPeers() {
+        return peers;
+    }
+
+    public CompletableFuture<PartialAggregate> fetchPartial(String peer, List<String> pathsOrURLs) {
+        String url = peer + PARTIAL_PATH;
+        return Mono.fromCallable(() -> objectMapper.writeValueAsBytes(pathsOrURLs))
+                .flatMap(request -> httpClient
+                        .headers(headers -> headers.set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON))
+                        .post()
+                        .uri(url)
+                        .send(Mono.just(Unpooled.wrappedBuffer(request)))
+                        .responseSingle((response, body) -> {
+                            int status = response.status().code();
+                            if (status >= 400) {
+                                return Mono.error(new HttpStatusException(url, status));
+                            }
+                            return body.asByteArray();
+                        }))
+                .flatMap(response -> Mono.fromCallable(() -> objectMapper.readValue(response, PartialAggregate.class)))
+                .switchIfEmpty(Mono.error(() -> new IOException("Empty response from " + url)))
+                .toFuture();
+    }
+}
@@ -0,0 +1,543 @@
+package org.base.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Settings of the statistics service, bound from the "statistics" prefix in application.properties
+@ConfigurationProperties(prefix = "statistics")
+public class StatisticsProperties {
+    private final Executor executor = new Executor();
+    private final Fetch fetch = new Fetch();
+    private final Cache cache = new Cache();
+    private final Jobs jobs = new Jobs();
+    private final Cluster cluster = new Cluster();
+    private final Limits limits = new Limits();
+    private final Snapshots snapshots = new Snapshots();
+    private final Datasets datasets = new Datasets();
+    private final Summary summary = new Summary();
+    private final Groups groups = new Groups();
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public Fetch getFetch() {
+        return fetch;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Jobs getJobs() {
+        return jobs;
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    public Limits getLimits() {
+        return limits;
+    }
+
+    public Snapshots getSnapshots() {
+        return snapshots;
+    }
+
+    public Datasets getDatasets() {
+        return datasets;
+    }
+
+    public Summary getSummary() {
+        return summary;
+    }
+
+    public Groups getGroups() {
+        return groups;
+    }
+
+    public static class Executor {
+        // Threads and queue of the pool that fetches files and URLs, tasks above the queue capacity are rejected
+        private int ioThreads = 200;
+        private int ioQueueCapacity = 100000;
+        // Threads of the pool that parses chunks of large files
+        private int cpuThreads = Runtime.getRuntime().availableProcessors();
+        // Runs every fetch on its own virtual thread (JDK 21+), at most maxConcurrentFetches at the same time. URLs read by
+        // the async client do not run on the fetch pool, only local files and the blocking client do.
+        private boolean virtualThreads;
+        private int maxConcurrentFetches = 10000;
+
+        public int getIoThreads() {
+            return ioThreads;
+        }
+
+        public void setIoThreads(int ioThreads) {
+            this.ioThreads = ioThreads;
+        }
+
+        public int getIoQueueCapacity() {
+            return ioQueueCapacity;
+        }
+
+        public void setIoQueueCapacity(int ioQueueCapacity) {
+            this.ioQueueCapacity = ioQueueCapacity;
+        }
+
+        public int getCpuThreads() {
+            return cpuThreads;
+        }
+
+        public void setCpuThreads(int cpuThreads) {
+            this.cpuThreads = cpuThreads;
+        }
+
+        public boolean isVirtualThreads() {
+            return virtualThreads;
+        }
+
+        public void setVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+        }
+
+        public int getMaxConcurrentFetches() {
+            return maxConcurrentFetches;
+        }
+
+        public void setMaxConcurrentFetches(int maxConcurrentFetches) {
+            this.maxConcurrentFetches = maxConcurrentFetches;
+        }
+    }
+
+    public static class Fetch {
+        // "async" streams URL bodies through the non-blocking client, "blocking" uses HttpURLConnection on the fetch pool
+        private String httpClient = "async";
+        private Duration connectTimeout = Duration.ofSeconds(10);
+        private Duration readTimeout = Duration.ofSeconds(30);
+        // Size of the connection pool kept for every host, and the most requests sent to one host at the same time
+        private int maxConnectionsPerHost = 50;
+        // Most URL requests running at the same time over all hosts
+        private int maxConcurrentRequests = 256;
+        // A host that failed this many requests in a row is not requested again for circuitOpenDuration
+        private int circuitFailureThreshold = 5;
+        private Duration circuitOpenDuration = Duration.ofSeconds(30);
+        // Negotiate HTTP/2 with https hosts, so requests to the same host share one connection
+        private boolean http2 = true;
+        // Longest time a single URL may take over all its attempts, and a whole request over all its sources
+        private Duration sourceTimeout = Duration.ofMinutes(2);
+        private Duration requestTimeout = Duration.ofMinutes(10);
+        // Failed attempts are retried after an exponential backoff with random jitter, capped at maxRetryBackoff
+        private int maxRetries = 2;
+        private Duration retryBackoff = Duration.ofMillis(200);
+        private Duration maxRetryBackoff = Duration.ofSeconds(5);
+        // Sends a second request for a URL that is slower than the given percentile of recent fetches,
+        // hedgeDelay is used until enough fetches were measured
+        private boolean hedge;
+        private double hedgePercentile = 0.95;
+        private Duration hedgeDelay = Duration.ofSeconds(2);
+
+        public String getHttpClient() {
+            return httpClient;
+        }
+
+        public void setHttpClient(String httpClient) {
+            this.httpClient = httpClient;
+        }
+
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public Duration getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public int getMaxConnectionsPerHost() {
+            return maxConnectionsPerHost;
+        }
+
+        public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+        }
+
+        public int getMaxConcurrentRequests() {
+            return maxConcurrentRequests;
+        }
+
+        public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+        }
+
+        public int getCircuitFailureThreshold() {
+            return circuitFailureThreshold;
+        }
+
+        public void setCircuitFailureThreshold(int circuitFailureThreshold) {
+            this.circuitFailureThreshold = circuitFailureThreshold;
+        }
+
+        public Duration getCircuitOpenDuration() {
+            return circuitOpenDuration;
+        }
+
+        public void setCircuitOpenDuration(Duration circuitOpenDuration) {
+            this.circuitOpenDuration = circuitOpenDuration;
+        }
+
+        public boolean isHttp2() {
+            return http2;
+        }
+
+        public void setHttp2(boolean http2) {
+            this.http2 = http2;
+        }
+
+        public Duration getSourceTimeout() {
+            return sourceTimeout;
+        }
+
+        public void setSourceTimeout(Duration sourceTimeout) {
+            this.sourceTimeout = sourceTimeout;
+        }
+
+        public Duration getRequestTimeout() {
+            return requestTimeout;
+        }
+
+        public void setRequestTimeout(Duration requestTimeout) {
+            this.requestTimeout = requestTimeout;
+        }
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public Duration getRetryBackoff() {
+            return retryBackoff;
+        }
+
+        public void setRetryBackoff(Duration retryBackoff) {
+            this.retryBackoff = retryBackoff;
+        }
+
+        public Duration getMaxRetryBackoff() {
+            return maxRetryBackoff;
+        }
+
+        public void setMaxRetryBackoff(Duration maxRetryBackoff) {
+            this.maxRetryBackoff = maxRetryBackoff;
+        }
+
+        public boolean isHedge() {
+            return hedge;
+        }
+
+        public void setHedge(boolean hedge) {
+            this.hedge = hedge;
+        }
+
+        public double getHedgePercentile() {
+            return hedgePercentile;
+        }
+
+        public void setHedgePercentile(double hedgePercentile) {
+            this.hedgePercentile = hedgePercentile;
+        }
+
+        public Duration getHedgeDelay() {
+            return hedgeDelay;
+        }
+
+        public void setHedgeDelay(Duration hedgeDelay) {
+            this.hedgeDelay = hedgeDelay;
+        }
+    }
+
+    public static class Cache {
+        // Keeps the parsed result of URL sources and revalidates it with the ETag / Last-Modified of the server
+        private boolean enabled = true;
+        // Least recently used sources are dropped above this number of entries
+        private int maxEntries = 1000;
+        // Sources that were not revalidated within this time are dropped
+        private Duration ttl = Duration.ofHours(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+    }
+
+    public static class Jobs {
+        // Summary jobs running at the same time, further jobs wait in the queue and are rejected when it is full
+        private int maxInFlight = 4;
+        private int queueCapacity = 1000;
+        // Finished jobs can be polled for this long
+        private Duration retention = Duration.ofHours(1);
+        // Longest time a poll waits for a job to finish
+        private Duration maxWait = Duration.ofSeconds(30);
+        // Streamed summaries send the running statistics at most once per interval
+        private Duration progressInterval = Duration.ofMillis(500);
+        private Duration streamTimeout = Duration.ofMinutes(30);
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public Duration getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Duration retention) {
+            this.retention = retention;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+        }
+
+        public Duration getProgressInterval() {
+            return progressInterval;
+        }
+
+        public void setProgressInterval(Duration progressInterval) {
+            this.progressInterval = progressInterval;
+        }
+
+        public Duration getStreamTimeout() {
+            return streamTimeout;
+        }
+
+        public void setStreamTimeout(Duration streamTimeout) {
+            this.streamTimeout = streamTimeout;
+        }
+    }
+
+    public static class Cluster {
+        // Base URLs of the peer instances, e.g. http://host:8080. With peers the paths or URLs of a summary are split
+        // into shards, the first one is read here and the others by the peers.
+        private List<String> peers = new ArrayList<>();
+        // Longest wait for the partial aggregate of a peer, a little longer than the request timeout of the peer
+        private Duration peerTimeout = Duration.ofMinutes(11);
+
+        public List<String> getPeers() {
+            return peers;
+        }
+
+        public void setPeers(List<String> peers) {
+            this.peers = peers;
+        }
+
+        public Duration getPeerTimeout() {
+            return peerTimeout;
+        }
+
+        public void setPeerTimeout(Duration peerTimeout) {
+            this.peerTimeout = peerTimeout;
+        }
+    }
+
+    public static class Limits {
+        public enum OnExceeded {TRUNCATE, FAIL}
+
+        // Limits on the bytes and rows read from every URL or uploaded file and from all of them in one request, 0 is no limit
+        private DataSize maxSourceBytes = DataSize.ofGigabytes(1);
+        private long maxSourceRows;
+        private DataSize maxRequestBytes = DataSize.ofBytes(0);
+        private long maxRequestRows;
+        // A source over a limit is kept up to the limit (TRUNCATE) or dropped (FAIL), it is reported in urlErrors either way
+        private OnExceeded onExceeded = OnExceeded.TRUNCATE;
+
+        public DataSize getMaxSourceBytes() {
+            return maxSourceBytes;
+        }
+
+        public void setMaxSourceBytes(DataSize maxSourceBytes) {
+            this.maxSourceBytes = maxSourceBytes;
+        }
+
+        public long getMaxSourceRows() {
+            return maxSourceRows;
+        }
+
+        public void setMaxSourceRows(long maxSourceRows) {
+            this.maxSourceRows = maxSourceRows;
+        }
+
+        public DataSize getMaxRequestBytes() {
+            return maxRequestBytes;
+        }
+
+        public void setMaxRequestBytes(DataSize maxRequestBytes) {
+            this.maxRequestBytes = maxRequestBytes;
+        }
+
+        public long getMaxRequestRows() {
+            return maxRequestRows;
+        }
+
+        public void setMaxRequestRows(long maxRequestRows) {
+            this.maxRequestRows = maxRequestRows;
+        }
+
+        public OnExceeded getOnExceeded() {
+            return onExceeded;
+        }
+
+        public void setOnExceeded(OnExceeded onExceeded) {
+            this.onExceeded = onExceeded;
+        }
+    }
+
+    public static class Snapshots {
+        // Parsed local files and URLs are kept as binary snapshots in the directory and read from there while they are unchanged
+        private boolean enabled;
+        private String directory = System.getProperty("java.io.tmpdir") + "/summary-snapshots";
+        // Sources with more rows are not snapshotted, the rows of a source are held in memory until its snapshot is written
+        private int maxRows = 10_000_000;
+        // Rows held in memory by all sources until their snapshots are written, 9 bytes each. A source that finds them
+        // used up by the sources read at the same time is not snapshotted.
+        private long maxBufferedRows = 4_000_000;
+        // The least recently used snapshots are deleted once the directory is larger
+        private DataSize maxDiskSize = DataSize.ofGigabytes(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getMaxRows() {
+            return maxRows;
+        }
+
+        public void setMaxRows(int maxRows) {
+            this.maxRows = maxRows;
+        }
+
+        public long getMaxBufferedRows() {
+            return maxBufferedRows;
+        }
+
+        public void setMaxBufferedRows(long maxBufferedRows) {
+            this.maxBufferedRows = maxBufferedRows;
+        }
+
+        public DataSize getMaxDiskSize() {
+            return maxDiskSize;
+        }
+
+        public void setMaxDiskSize(DataSize maxDiskSize) {
+            this.maxDiskSize = maxDiskSize;
+        }
+    }
+
+    public static class Datasets {
+        // Named datasets kept in memory, appending to a new dataset above this number is rejected
+        private int maxDatasets = 1000;
+
+        public int getMaxDatasets() {
+            return maxDatasets;
+        }
+
+        public void setMaxDatasets(int maxDatasets) {
+            this.maxDatasets = maxDatasets;
+        }
+    }
+
+    public static class Summary {
+        // Percentiles of the extended statistics when the request names none, comma separated between 0 and 100
+        private String percentiles = "50,90,95,99";
+
+        public String getPercentiles() {
+            return percentiles;
+        }
+
+        public void setPercentiles(String percentiles) {
+            this.percentiles = percentiles;
+        }
+    }
+
+    public static class Groups {
+        // Groups returned by a summary with groupBy when the request does not say how many
+        private int top = 100;
+        // Groups counted per source, the records of further keys are only counted together with the other groups
+        private int maxTracked = 10000;
+
+        public int getTop() {
+            return top;
+        }
+
+        public void setTop(int top) {
+            this.top = top;
+        }
+
+        public int getMaxTracked() {
+            return maxTracked;
+        }
+
+        public void setMaxTracked(int maxTracked) {
+            this.maxTracked = maxTracked;
+        }
+    }
+}
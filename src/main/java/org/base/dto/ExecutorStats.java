@@ -0,0 +1,80 @@
+package org.base.dto;
+
+public class ExecutorStats {
+    private String name;
+    private int poolSize;
+    private int maxPoolSize;
+    private int activeThreads;
+    private long queuedTasks;
+    private long completedTasks;
+    private long rejectedTasks;
+
+    public ExecutorStats() {
+    }
+
+    public ExecutorStats(String name, int poolSize, int maxPoolSize, int activeThreads, long queuedTasks, long completedTasks, long rejectedTasks) {
+        this.name = name;
+        this.poolSize = poolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.activeThreads = activeThreads;
+        this.queuedTasks = queuedTasks;
+        this.completedTasks = completedTasks;
+        this.rejectedTasks = rejectedTasks;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getActiveThreads() {
+        return activeThreads;
+    }
+
+    public void setActiveThreads(int activeThreads) {
+        this.activeThreads = activeThreads;
+    }
+
+    public long getQueuedTasks() {
+        return queuedTasks;
+    }
+
+    public void setQueuedTasks(long queuedTasks) {
+        this.queuedTasks = queuedTasks;
+    }
+
+    public long getCompletedTasks() {
+        return completedTasks;
+    }
+
+    public void setCompletedTasks(long completedTasks) {
+        this.completedTasks = completedTasks;
+    }
+
+    public long getRejectedTasks() {
+        return rejectedTasks;
+    }
+
+    public void setRejectedTasks(long rejectedTasks) {
+        this.rejectedTasks = rejectedTasks;
+    }
+}
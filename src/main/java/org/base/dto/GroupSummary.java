@@ -0,0 +1,41 @@
+package org.base.dto;
+
+// Statistics of the records of one group of a summary with groupBy
+public class GroupSummary {
+    private long recordCount;
+    private double averageAge;
+    private double medianAge;
+
+    public GroupSummary() {
+    }
+
+    public GroupSummary(long recordCount, double averageAge, double medianAge) {
+        this.recordCount = recordCount;
+        this.averageAge = averageAge;
+        this.medianAge = medianAge;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public void setRecordCount(long recordCount) {
+        this.recordCount = recordCount;
+    }
+
+    public double getAverageAge() {
+        return averageAge;
+    }
+
+    public void setAverageAge(double averageAge) {
+        this.averageAge = averageAge;
+    }
+
+    public double getMedianAge() {
+        return medianAge;
+    }
+
+    public void setMedianAge(double medianAge) {
+        this.medianAge = medianAge;
+    }
+}
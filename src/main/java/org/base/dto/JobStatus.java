@@ -0,0 +1,76 @@
+package org.base.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+public class JobStatus {
+    public enum State {QUEUED, RUNNING, DONE, FAILED}
+
+    private String id;
+    private State state;
+    private int sourcesTotal;
+    private int sourcesCompleted;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private SummaryData summary;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+
+    public JobStatus() {
+    }
+
+    public JobStatus(String id, State state, int sourcesTotal, int sourcesCompleted, SummaryData summary, String error) {
+        this.id = id;
+        this.state = state;
+        this.sourcesTotal = sourcesTotal;
+        this.sourcesCompleted = sourcesCompleted;
+        this.summary = summary;
+        this.error = error;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    public int getSourcesTotal() {
+        return sourcesTotal;
+    }
+
+    public void setSourcesTotal(int sourcesTotal) {
+        this.sourcesTotal = sourcesTotal;
+    }
+
+    public int getSourcesCompleted() {
+        return sourcesCompleted;
+    }
+
+    public void setSourcesCompleted(int sourcesCompleted) {
+        this.sourcesCompleted = sourcesCompleted;
+    }
+
+    public SummaryData getSummary() {
+        return summary;
+    }
+
+    public void setSummary(SummaryData summary) {
+        this.summary = summary;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,76 @@
+package org.base.dto;
+
+import java.util.Set;
+
+// Aggregate of a shard of the sources of a summary, sent by a peer to the coordinating instance. Partial aggregates
+// merged in shard order give the same summary as reading all the sources on one instance.
+public class PartialAggregate {
+    private long count;
+    private long sum;
+    // Number of records for every age, indexed by age
+    private long[] ageCounts;
+    // First person read for every age, null for ages without records
+    private String[] personByAge;
+    private Set<URLErrors> urlErrors;
+    private Set<RecordErrors> lineErrors;
+
+    public PartialAggregate() {
+    }
+
+    public PartialAggregate(long count, long sum, long[] ageCounts, String[] personByAge, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors) {
+        this.count = count;
+        this.sum = sum;
+        this.ageCounts = ageCounts;
+        this.personByAge = personByAge;
+        this.urlErrors = urlErrors;
+        this.lineErrors = lineErrors;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public void setSum(long sum) {
+        this.sum = sum;
+    }
+
+    public long[] getAgeCounts() {
+        return ageCounts;
+    }
+
+    public void setAgeCounts(long[] ageCounts) {
+        this.ageCounts = ageCounts;
+    }
+
+    public String[] getPersonByAge() {
+        return personByAge;
+    }
+
+    public void setPersonByAge(String[] personByAge) {
+        this.personByAge = personByAge;
+    }
+
+    public Set<URLErrors> getUrlErrors() {
+        return urlErrors;
+    }
+
+    public void setUrlErrors(Set<URLErrors> urlErrors) {
+        this.urlErrors = urlErrors;
+    }
+
+    public Set<RecordErrors> getLineErrors() {
+        return lineErrors;
+    }
+
+    public void setLineErrors(Set<RecordErrors> lineErrors) {
+        this.lineErrors = lineErrors;
+    }
+}
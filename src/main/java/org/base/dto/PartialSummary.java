@@ -0,0 +1,84 @@
+package org.base.dto;
+
+import java.util.Set;
+
+// Running statistics of the sources read so far, sent while a summary is still being computed
+public class PartialSummary {
+    private int sourcesCompleted;
+    private int sourcesTotal;
+    private long recordCount;
+    private double averageAge;
+    private double medianAge;
+    private long lineErrorCount;
+    private Set<URLErrors> urlErrors;
+
+    public PartialSummary() {
+    }
+
+    public PartialSummary(int sourcesCompleted, int sourcesTotal, long recordCount, double averageAge, double medianAge,
+                          long lineErrorCount, Set<URLErrors> urlErrors) {
+        this.sourcesCompleted = sourcesCompleted;
+        this.sourcesTotal = sourcesTotal;
+        this.recordCount = recordCount;
+        this.averageAge = averageAge;
+        this.medianAge = medianAge;
+        this.lineErrorCount = lineErrorCount;
+        this.urlErrors = urlErrors;
+    }
+
+    public int getSourcesCompleted() {
+        return sourcesCompleted;
+    }
+
+    public void setSourcesCompleted(int sourcesCompleted) {
+        this.sourcesCompleted = sourcesCompleted;
+    }
+
+    public int getSourcesTotal() {
+        return sourcesTotal;
+    }
+
+    public void setSourcesTotal(int sourcesTotal) {
+        this.sourcesTotal = sourcesTotal;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public void setRecordCount(long recordCount) {
+        this.recordCount = recordCount;
+    }
+
+    public double getAverageAge() {
+        return averageAge;
+    }
+
+    public void setAverageAge(double averageAge) {
+        this.averageAge = averageAge;
+    }
+
+    public double getMedianAge() {
+        return medianAge;
+    }
+
+    public void setMedianAge(double medianAge) {
+        this.medianAge = medianAge;
+    }
+
+    public long getLineErrorCount() {
+        return lineErrorCount;
+    }
+
+    public void setLineErrorCount(long lineErrorCount) {
+        this.lineErrorCount = lineErrorCount;
+    }
+
+    public Set<URLErrors> getUrlErrors() {
+        return urlErrors;
+    }
+
+    public void setUrlErrors(Set<URLErrors> urlErrors) {
+        this.urlErrors = urlErrors;
+    }
+}
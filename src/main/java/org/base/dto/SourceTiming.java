@@ -0,0 +1,63 @@
+package org.base.dto;
+
+// Time spent on one source of a summary. The body of a URL is parsed while it is downloaded, so its fetch time includes
+// the parse time. The fetch time of an upload is the time until its last byte was read, for a streamed upload that
+// includes the time the body took to arrive. Local files are read while they are parsed, their fetch time is 0.
+public class SourceTiming {
+    private String pathOrUrl;
+    private double fetchMillis;
+    private double parseMillis;
+    private long bytes;
+    private long rows;
+
+    public SourceTiming() {
+    }
+
+    public SourceTiming(String pathOrUrl, double fetchMillis, double parseMillis, long bytes, long rows) {
+        this.pathOrUrl = pathOrUrl;
+        this.fetchMillis = fetchMillis;
+        this.parseMillis = parseMillis;
+        this.bytes = bytes;
+        this.rows = rows;
+    }
+
+    public String getPathOrUrl() {
+        return pathOrUrl;
+    }
+
+    public void setPathOrUrl(String pathOrUrl) {
+        this.pathOrUrl = pathOrUrl;
+    }
+
+    public double getFetchMillis() {
+        return fetchMillis;
+    }
+
+    public void setFetchMillis(double fetchMillis) {
+        this.fetchMillis = fetchMillis;
+    }
+
+    public double getParseMillis() {
+        return parseMillis;
+    }
+
+    public void setParseMillis(double parseMillis) {
+        this.parseMillis = parseMillis;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+}
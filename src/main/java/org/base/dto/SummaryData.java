@@ -1,5 +1,8 @@
 package org.base.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Map;
 import java.util.Set;
 
 public class SummaryData {
@@ -10,6 +13,33 @@ public class SummaryData {
     private int threadsUsed;
     private Set<URLErrors> urlErrors;
     private Set<RecordErrors> lineErrors;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private SummaryTiming timing;
+    // Extended statistics, only set when they were asked for
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer minAge;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer maxAge;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double ageVariance;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double ageStandardDeviation;
+    // Age of each percentile, keyed as p50, p90, p99.9
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, Integer> agePercentiles;
+    // Number of records of every age that has records
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<Integer, Long> ageHistogram;
+    // Statistics of the groups with the most records, the largest first, only set with groupBy
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, GroupSummary> groups;
+    // Statistics of the records of all the groups that are not listed
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private GroupSummary otherGroups;
+    // True when a source had more keys than it tracks. Records of a listed group can then be counted in otherGroups and
+    // which groups are listed can depend on the order the sources and chunks were read.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean groupsApproximate;
 
     public Set<URLErrors> getUrlErrors() {
         return urlErrors;
@@ -66,4 +96,84 @@ public class SummaryData {
     public void setPersonWithMedianAge(String personWithMedianAge) {
         this.personWithMedianAge = personWithMedianAge;
     }
+
+    public SummaryTiming getTiming() {
+        return timing;
+    }
+
+    public void setTiming(SummaryTiming timing) {
+        this.timing = timing;
+    }
+
+    public Integer getMinAge() {
+        return minAge;
+    }
+
+    public void setMinAge(Integer minAge) {
+        this.minAge = minAge;
+    }
+
+    public Integer getMaxAge() {
+        return maxAge;
+    }
+
+    public void setMaxAge(Integer maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    public Double getAgeVariance() {
+        return ageVariance;
+    }
+
+    public void setAgeVariance(Double ageVariance) {
+        this.ageVariance = ageVariance;
+    }
+
+    public Double getAgeStandardDeviation() {
+        return ageStandardDeviation;
+    }
+
+    public void setAgeStandardDeviation(Double ageStandardDeviation) {
+        this.ageStandardDeviation = ageStandardDeviation;
+    }
+
+    public Map<String, Integer> getAgePercentiles() {
+        return agePercentiles;
+    }
+
+    public void setAgePercentiles(Map<String, Integer> agePercentiles) {
+        this.agePercentiles = agePercentiles;
+    }
+
+    public Map<Integer, Long> getAgeHistogram() {
+        return ageHistogram;
+    }
+
+    public void setAgeHistogram(Map<Integer, Long> ageHistogram) {
+        this.ageHistogram = ageHistogram;
+    }
+
+    public Map<String, GroupSummary> getGroups() {
+        return groups;
+    }
+
+    public void setGroups(Map<String, GroupSummary> groups) {
+        this.groups = groups;
+    }
+
+    public GroupSummary getOtherGroups() {
+        return otherGroups;
+    }
+
+    public void setOtherGroups(GroupSummary otherGroups) {
+        this.otherGroups = otherGroups;
+    }
+
+    public Boolean getGroupsApproximate() {
+        return groupsApproximate;
+    }
+
+    public void setGroupsApproximate(Boolean groupsApproximate) {
+        this.groupsApproximate = groupsApproximate;
+    }
 }
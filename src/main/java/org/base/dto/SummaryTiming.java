@@ -0,0 +1,118 @@
+package org.base.dto;
+
+import java.util.List;
+
+// Where the time of a summary went, returned with timing=true. Sources are read concurrently, so the fetch and parse
+// times summed over all sources can be larger than the read phase.
+public class SummaryTiming {
+    private double totalMillis;
+    // Phases of the request, one after the other
+    private double readMillis;
+    private double mergeMillis;
+    private double statisticsMillis;
+    // Totals over all sources
+    private int sourceCount;
+    private double fetchMillis;
+    private double parseMillis;
+    private long bytesRead;
+    private long rowsRead;
+    // Sources that took the longest to fetch or parse, slowest first
+    private List<SourceTiming> slowestSources;
+
+    public SummaryTiming() {
+    }
+
+    public SummaryTiming(double totalMillis, double readMillis, double mergeMillis, double statisticsMillis, int sourceCount,
+                         double fetchMillis, double parseMillis, long bytesRead, long rowsRead, List<SourceTiming> slowestSources) {
+        this.totalMillis = totalMillis;
+        this.readMillis = readMillis;
+        this.mergeMillis = mergeMillis;
+        this.statisticsMillis = statisticsMillis;
+        this.sourceCount = sourceCount;
+        this.fetchMillis = fetchMillis;
+        this.parseMillis = parseMillis;
+        this.bytesRead = bytesRead;
+        this.rowsRead = rowsRead;
+        this.slowestSources = slowestSources;
+    }
+
+    public double getTotalMillis() {
+        return totalMillis;
+    }
+
+    public void setTotalMillis(double totalMillis) {
+        this.totalMillis = totalMillis;
+    }
+
+    public double getReadMillis() {
+        return readMillis;
+    }
+
+    public void setReadMillis(double readMillis) {
+        this.readMillis = readMillis;
+    }
+
+    public double getMergeMillis() {
+        return mergeMillis;
+    }
+
+    public void setMergeMillis(double mergeMillis) {
+        this.mergeMillis = mergeMillis;
+    }
+
+    public double getStatisticsMillis() {
+        return statisticsMillis;
+    }
+
+    public void setStatisticsMillis(double statisticsMillis) {
+        this.statisticsMillis = statisticsMillis;
+    }
+
+    public int getSourceCount() {
+        return sourceCount;
+    }
+
+    public void setSourceCount(int sourceCount) {
+        this.sourceCount = sourceCount;
+    }
+
+    public double getFetchMillis() {
+        return fetchMillis;
+    }
+
+    public void setFetchMillis(double fetchMillis) {
+        this.fetchMillis = fetchMillis;
+    }
+
+    public double getParseMillis() {
+        return parseMillis;
+    }
+
+    public void setParseMillis(double parseMillis) {
+        this.parseMillis = parseMillis;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public void setBytesRead(long bytesRead) {
+        this.bytesRead = bytesRead;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public void setRowsRead(long rowsRead) {
+        this.rowsRead = rowsRead;
+    }
+
+    public List<SourceTiming> getSlowestSources() {
+        return slowestSources;
+    }
+
+    public void setSlowestSources(List<SourceTiming> slowestSources) {
+        this.slowestSources = slowestSources;
+    }
+}
@@ -6,6 +6,9 @@ public class URLErrors {
     private String url;
     private String errorName;
 
+    public URLErrors() {
+    }
+
     public URLErrors(String url, String errorName) {
         this.url = url;
         this.errorName = errorName;
@@ -1,39 +1,261 @@
 package org.base.exectutor;
 
-import org.base.dto.RecordData;
+import org.base.config.StatisticsProperties;
+import org.base.dto.ExecutorStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+// Long-lived pools shared by all requests. Fetching files and URLs runs on a bounded I/O pool, or on virtual
+// threads when that mode is enabled. Parsing chunks of large files runs on a ForkJoinPool sized for the CPU.
+// Summary jobs submitted through the job API run on their own small pool, so they never hold a request thread.
+// Retry backoffs, hedged requests and deadlines are scheduled on a single timer thread that only starts them.
+// Snapshots of parsed sources are written on one background thread, after the request that parsed them.
+// Server-Sent Events of streamed summaries are written on their own pool, so a slow client never holds a fetch thread.
+@Component
 public class ExecutorServiceManager {
-    public static final int MAX_THREADS = 1000;
-    private final ExecutorService executorService;
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorServiceManager.class);
+    private static final int SNAPSHOT_QUEUE_CAPACITY = 16;
 
-    public ExecutorServiceManager(int maxThreads) {
-        this.executorService = Executors.newFixedThreadPool(maxThreads);
+    private final ExecutorService ioExecutor;
+    private final ForkJoinPool parserPool;
+    private final ThreadPoolExecutor jobExecutor;
+    private final ScheduledThreadPoolExecutor timer;
+    private final ThreadPoolExecutor snapshotExecutor;
+    private final ThreadPoolExecutor eventExecutor;
+    // Only used with virtual threads, where it replaces the thread count as the limit of concurrent fetches
+    private final Semaphore fetchPermits;
+    private final int maxConcurrentFetches;
+    private final AtomicLong completedFetchTasks = new AtomicLong();
+    private final AtomicLong rejectedTasks = new AtomicLong();
+    private final AtomicLong completedParserTasks = new AtomicLong();
+    private final AtomicLong rejectedJobs = new AtomicLong();
+    private final AtomicLong rejectedSnapshots = new AtomicLong();
+
+    @Autowired
+    public ExecutorServiceManager(StatisticsProperties statisticsProperties) {
+        StatisticsProperties.Executor properties = statisticsProperties.getExecutor();
+
+        ExecutorService virtualThreadExecutor = properties.isVirtualThreads() ? newVirtualThreadExecutor() : null;
+        if (virtualThreadExecutor != null) {
+            this.ioExecutor = virtualThreadExecutor;
+            this.maxConcurrentFetches = properties.getMaxConcurrentFetches();
+            this.fetchPermits = new Semaphore(maxConcurrentFetches);
+        } else {
+            if (properties.isVirtualThreads()) {
+                logger.warn("Virtual threads need JDK 21 or newer, using the platform thread pool for fetching");
+            }
+            ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(properties.getIoThreads(), properties.getIoThreads(), 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(properties.getIoQueueCapacity()), namedThreadFactory("fetch-io-"));
+            // Idle threads are released after a minute instead of being created and destroyed per request
+            threadPoolExecutor.allowCoreThreadTimeOut(true);
+            this.ioExecutor = threadPoolExecutor;
+            this.maxConcurrentFetches = properties.getIoThreads();
+            this.fetchPermits = null;
+        }
+
+        this.parserPool = new ForkJoinPool(properties.getCpuThreads(), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("parser-cpu-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+
+        StatisticsProperties.Jobs jobProperties = statisticsProperties.getJobs();
+        this.jobExecutor = new ThreadPoolExecutor(jobProperties.getMaxInFlight(), jobProperties.getMaxInFlight(), 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(jobProperties.getQueueCapacity()), namedThreadFactory("summary-job-"));
+        jobExecutor.allowCoreThreadTimeOut(true);
+
+        this.timer = new ScheduledThreadPoolExecutor(1, namedThreadFactory("fetch-timer-"));
+        // Deadlines are cancelled when the source completes in time, they should not wait in the queue until they expire
+        timer.setRemoveOnCancelPolicy(true);
+
+        // A waiting snapshot holds the rows of its source in memory, so only a few can wait
+        this.snapshotExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(SNAPSHOT_QUEUE_CAPACITY), namedThreadFactory("snapshot-writer-"));
+        snapshotExecutor.allowCoreThreadTimeOut(true);
+
+        // The events of one stream are written one after the other, so at most one task per open stream waits here
+        // and the queue needs no bound of its own. Streams run as jobs, one thread per running job is enough.
+        this.eventExecutor = new ThreadPoolExecutor(jobProperties.getMaxInFlight(), jobProperties.getMaxInFlight(), 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), namedThreadFactory("summary-events-"));
+        eventExecutor.allowCoreThreadTimeOut(true);
     }
 
     public <T> CompletableFuture<T> submitTask(Callable<T> task) {
+        try {
+            return supplyAsync(task);
+        } catch (RejectedExecutionException e) {
+            rejectedTasks.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(Callable<T> task) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                return task.call();
+                return fetchPermits == null ? task.call() : callWithPermit(task);
             } catch (Exception e) {
                 throw new CompletionException(e);
+            } finally {
+                completedFetchTasks.incrementAndGet();
+            }
+        }, ioExecutor);
+    }
+
+    // A blocked virtual thread is cheap, so tasks wait for a permit instead of waiting in a queue
+    private <T> T callWithPermit(Callable<T> task) throws Exception {
+        fetchPermits.acquire();
+        try {
+            return task.call();
+        } finally {
+            fetchPermits.release();
+        }
+    }
+
+    // Submits all the tasks of a request. When the queue is full the tasks that were already queued are
+    // cancelled, so they never run, and the RejectedExecutionException is passed on to the caller.
+    public <T> List<CompletableFuture<T>> submitTasks(List<Callable<T>> tasks) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                futures.add(submitTask(task));
             }
-        }, executorService);
+        } catch (RejectedExecutionException e) {
+            futures.forEach(future -> future.cancel(false));
+            throw e;
+        }
+        return futures;
+    }
+
+    // Waits until all futures are done or the timeout elapsed, returns false on timeout
+    public <T> boolean waitForCompletion(List<CompletableFuture<T>> futures, long timeoutMillis) {
+        CompletableFuture<Void> allOf = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+        try {
+            allOf.get(Math.max(0, timeoutMillis), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            // The failed future reports its own error to the caller, the wait is over all the same
+            logger.warn("Task failed while waiting for completion", e.getCause());
+        }
+        return true;
+    }
+
+    // Runs a short task after the delay on the timer thread
+    public ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        return timer.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
     }
 
-    public void waitForCompletion(List<CompletableFuture<List<RecordData>>> futures) {
+    public <T> void waitForCompletion(List<CompletableFuture<T>> futures) {
         CompletableFuture<Void> allOf = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
         try {
             allOf.get(); // Wait for all futures to complete
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.warn("Task failed while waiting for completion", e.getCause());
+        }
+    }
+
+    // Runs a summary job, at most the configured number of jobs run at the same time
+    public void submitJob(Runnable job) {
+        try {
+            jobExecutor.execute(job);
+        } catch (RejectedExecutionException e) {
+            rejectedJobs.incrementAndGet();
+            throw e;
         }
     }
 
+    // Writes a snapshot in the background, the write is skipped if too many snapshots are waiting
+    public CompletableFuture<Void> submitSnapshotWrite(Runnable write) {
+        try {
+            return CompletableFuture.runAsync(write, snapshotExecutor);
+        } catch (RejectedExecutionException e) {
+            rejectedSnapshots.incrementAndGet();
+            CompletableFuture<Void> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    // Writes the events of streamed summaries
+    public Executor getEventExecutor() {
+        return eventExecutor;
+    }
+
+    // Runs CPU bound parsing tasks on the parser pool and waits until all of them are done
+    public <T> List<Future<T>> invokeParserTasks(List<Callable<T>> tasks) throws InterruptedException {
+        List<Future<T>> futures = parserPool.invokeAll(tasks);
+        completedParserTasks.addAndGet(tasks.size());
+        return futures;
+    }
+
+    // Parses the bodies of URLs read by the non-blocking client, off the event loop
+    public Executor getParserExecutor() {
+        return parserPool;
+    }
+
+    public int getParserParallelism() {
+        return parserPool.getParallelism();
+    }
+
+    public List<ExecutorStats> getStats() {
+        return Arrays.asList(getFetchStats(),
+                new ExecutorStats("parser-cpu", parserPool.getPoolSize(), parserPool.getParallelism(), parserPool.getActiveThreadCount(),
+                        parserPool.getQueuedSubmissionCount() + parserPool.getQueuedTaskCount(), completedParserTasks.get(), 0),
+                new ExecutorStats("summary-jobs", jobExecutor.getPoolSize(), jobExecutor.getMaximumPoolSize(), jobExecutor.getActiveCount(),
+                        jobExecutor.getQueue().size(), jobExecutor.getCompletedTaskCount(), rejectedJobs.get()),
+                new ExecutorStats("snapshot-writer", snapshotExecutor.getPoolSize(), snapshotExecutor.getMaximumPoolSize(), snapshotExecutor.getActiveCount(),
+                        snapshotExecutor.getQueue().size(), snapshotExecutor.getCompletedTaskCount(), rejectedSnapshots.get()),
+                new ExecutorStats("summary-events", eventExecutor.getPoolSize(), eventExecutor.getMaximumPoolSize(), eventExecutor.getActiveCount(),
+                        eventExecutor.getQueue().size(), eventExecutor.getCompletedTaskCount(), 0));
+    }
+
+    private ExecutorStats getFetchStats() {
+        if (fetchPermits != null) {
+            int activeFetches = maxConcurrentFetches - fetchPermits.availablePermits();
+            return new ExecutorStats("fetch-virtual", activeFetches, maxConcurrentFetches, activeFetches,
+                    fetchPermits.getQueueLength(), completedFetchTasks.get(), rejectedTasks.get());
+        }
+        ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) ioExecutor;
+        return new ExecutorStats("fetch-io", threadPoolExecutor.getPoolSize(), maxConcurrentFetches, threadPoolExecutor.getActiveCount(),
+                threadPoolExecutor.getQueue().size(), completedFetchTasks.get(), rejectedTasks.get());
+    }
+
+    @PreDestroy
     public void shutdown() {
-        executorService.shutdown();
+        jobExecutor.shutdown();
+        timer.shutdown();
+        ioExecutor.shutdown();
+        parserPool.shutdown();
+        snapshotExecutor.shutdown();
+        eventExecutor.shutdown();
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() only exists from JDK 21 on, it is looked up at runtime so
+    // the default build still compiles and runs on Java 8
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> new Thread(runnable, prefix + threadNumber.incrementAndGet());
     }
 
     // This method can be used to create manual Threads for fetching data
@@ -0,0 +1,111 @@
+package org.base.fetcher;
+
+import io.netty.channel.ChannelOption;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import org.base.config.StatisticsProperties;
+import org.base.exectutor.ExecutorServiceManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Non-blocking client that keeps a connection pool for every host and negotiates HTTP/2 with https hosts.
+// No thread waits for a response. The event loop only copies the body chunks as they arrive, they are inflated and
+// parsed on the parser pool, so a large body does not hold up the other connections of its event loop.
+@Component
+@ConditionalOnProperty(prefix = "statistics.fetch", name = "http-client", havingValue = "async", matchIfMissing = true)
+public class AsyncUrlFetcher implements UrlFetcher {
+    // Requests wait for a free pooled connection instead of failing when a host has many URLs in one request
+    private static final Duration PENDING_ACQUIRE_TIMEOUT = Duration.ofMinutes(10);
+    // Body chunks copied but not parsed yet, once they are used up the connection stops reading until the parser caught up
+    private static final int PARSE_PREFETCH = 8;
+
+    private final ConnectionProvider connectionProvider;
+    private final HttpClient httpClient;
+    private final HttpClient secureHttpClient;
+    private final Scheduler parseScheduler;
+
+    @Autowired
+    public AsyncUrlFetcher(StatisticsProperties statisticsProperties, ExecutorServiceManager executorServiceManager) {
+        StatisticsProperties.Fetch properties = statisticsProperties.getFetch();
+        this.parseScheduler = Schedulers.fromExecutor(executorServiceManager.getParserExecutor());
+        long readTimeoutMillis = properties.getReadTimeout().toMillis();
+
+        this.connectionProvider = ConnectionProvider.builder("url-fetcher")
+                .maxConnections(properties.getMaxConnectionsPerHost())
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(PENDING_ACQUIRE_TIMEOUT)
+                .maxIdleTime(Duration.ofSeconds(60))
+                .build();
+
+        HttpClient client = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+                .responseTimeout(properties.getReadTimeout())
+                // The read timeout handler is removed again when the connection goes back to the pool
+                .doOnRequest((request, connection) ->
+                        connection.addHandlerLast(new ReadTimeoutHandler(readTimeoutMillis, TimeUnit.MILLISECONDS)))
+                .followRedirect(true)
+                // Sends Accept-Encoding: gzip and inflates responses sent with Content-Encoding: gzip or deflate
+                .compress(true);
+        this.httpClient = client;
+        // HTTP/2 is negotiated through TLS, plain http URLs keep using HTTP/1.1
+        this.secureHttpClient = properties.isHttp2() ? client.protocol(HttpProtocol.HTTP11, HttpProtocol.H2).secure() : client;
+    }
+
+    @Override
+    public CompletableFuture<FetchResponse> fetch(String url, FetchResponse previousResponse, CsvRecordParser parser) {
+        HttpClient client = url.toLowerCase().startsWith("https://") ? secureHttpClient : httpClient;
+        return client.headers(headers -> {
+                    if (previousResponse != null && previousResponse.getETag() != null) {
+                        headers.set(HttpHeaderNames.IF_NONE_MATCH, previousResponse.getETag());
+                    }
+                    if (previousResponse != null && previousResponse.getLastModified() != null) {
+                        headers.set(HttpHeaderNames.IF_MODIFIED_SINCE, previousResponse.getLastModified());
+                    }
+                })
+                .get()
+                .uri(url)
+                .response((response, body) -> {
+                    int status = response.status().code();
+                    if (status == HttpResponseStatus.NOT_MODIFIED.code() && previousResponse != null) {
+                        return Mono.just(new FetchResponse(true, previousResponse.getETag(), previousResponse.getLastModified()));
+                    }
+                    if (status >= 400) {
+                        return Mono.error(new HttpStatusException(url, status));
+                    }
+                    FetchResponse fetchResponse = new FetchResponse(false, response.responseHeaders().get(HttpHeaderNames.ETAG),
+                            response.responseHeaders().get(HttpHeaderNames.LAST_MODIFIED));
+                    // Stop reading as soon as the first line shows that the body is not a CSV file or a limit is reached
+                    GzipBodyDecoder decoder = new GzipBodyDecoder(parser);
+                    return body.asByteArray()
+                            .publishOn(parseScheduler, PARSE_PREFETCH)
+                            .takeWhile(bytes -> decoder.isReading())
+                            .doOnNext(bytes -> decoder.feed(ByteBuffer.wrap(bytes)))
+                            .then(Mono.fromCallable(() -> {
+                                decoder.finish();
+                                return fetchResponse;
+                            }))
+                            .doFinally(signal -> decoder.close());
+                })
+                .next()
+                .toFuture();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        connectionProvider.dispose();
+    }
+}
@@ -0,0 +1,63 @@
+package org.base.fetcher;
+
+import org.base.config.StatisticsProperties;
+import org.base.exectutor.ExecutorServiceManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+
+// Reads every URL with its own HttpURLConnection on a thread of the fetch pool
+@Component
+@ConditionalOnProperty(prefix = "statistics.fetch", name = "http-client", havingValue = "blocking")
+public class BlockingUrlFetcher implements UrlFetcher {
+    private final ExecutorServiceManager executorServiceManager;
+    private final StatisticsProperties.Fetch properties;
+
+    @Autowired
+    public BlockingUrlFetcher(ExecutorServiceManager executorServiceManager, StatisticsProperties statisticsProperties) {
+        this.executorServiceManager = executorServiceManager;
+        this.properties = statisticsProperties.getFetch();
+    }
+
+    @Override
+    public CompletableFuture<FetchResponse> fetch(String url, FetchResponse previousResponse, CsvRecordParser parser) {
+        return executorServiceManager.submitTask(() -> {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout((int) properties.getConnectTimeout().toMillis());
+            connection.setReadTimeout((int) properties.getReadTimeout().toMillis());
+            // HttpURLConnection does not inflate responses itself, a gzip body is recognised by its magic bytes
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            if (previousResponse != null) {
+                setHeaderIfPresent(connection, "If-None-Match", previousResponse.getETag());
+                setHeaderIfPresent(connection, "If-Modified-Since", previousResponse.getLastModified());
+            }
+
+            try {
+                int status = connection.getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED && previousResponse != null) {
+                    return new FetchResponse(true, previousResponse.getETag(), previousResponse.getLastModified());
+                }
+                if (status >= 400) {
+                    throw new HttpStatusException(url, status);
+                }
+                try (InputStream inputStream = GzipSources.decode(connection.getInputStream())) {
+                    parser.parse(inputStream);
+                }
+                return new FetchResponse(false, connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+            } finally {
+                connection.disconnect();
+            }
+        });
+    }
+
+    private static void setHeaderIfPresent(HttpURLConnection connection, String name, String value) {
+        if (value != null) {
+            connection.setRequestProperty(name, value);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.base.fetcher;
+
+import org.base.aggregator.RecordAggregate;
+import org.base.exectutor.ExecutorServiceManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+// Parses a local CSV file, large files are parsed on all cores. The file is split into byte ranges that start
+// right after a line feed, every range is parsed into its own aggregate and the aggregates are merged in file order.
+@Component
+public class ChunkedFileParser {
+    public static final long PARALLEL_THRESHOLD = 16L * 1024 * 1024;
+    private static final long MIN_CHUNK_SIZE = 4L * 1024 * 1024;
+
+    private final ExecutorServiceManager executorServiceManager;
+
+    @Autowired
+    public ChunkedFileParser(ExecutorServiceManager executorServiceManager) {
+        this.executorServiceManager = executorServiceManager;
+    }
+
+    public static boolean isLargeFile(long size) {
+        return size >= PARALLEL_THRESHOLD;
+    }
+
+    // Returns false if the first line shows that the file is not a valid CSV file
+    public boolean parse(String pathOrUrl, Path file, RecordAggregate allData, List<String> recordLineErrors) throws IOException {
+        return parse(pathOrUrl, file, allData, recordLineErrors, null);
+    }
+
+    // The records are also passed to a sink from the supplier, one sink per chunk asked for in file order
+    public boolean parse(String pathOrUrl, Path file, RecordAggregate allData, List<String> recordLineErrors,
+                         Supplier<RecordSink> recordSinks) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (GzipSources.isGzip(channel)) {
+                // A compressed file can only be inflated from its start, it is parsed on the calling thread
+                CsvRecordParser parser = newParser(pathOrUrl, allData, recordLineErrors, true, recordSinks);
+                parser.parse(GzipSources.decode(Channels.newInputStream(channel)));
+                return parser.isValidCSV();
+            }
+            long chunks = Math.min(executorServiceManager.getParserParallelism(), Math.max(1, channel.size() / MIN_CHUNK_SIZE));
+            if (chunks == 1) {
+                // Small files are parsed on the calling thread
+                CsvRecordParser parser = newParser(pathOrUrl, allData, recordLineErrors, true, recordSinks);
+                MappedFileReader.read(channel, 0, channel.size(), parser);
+                return parser.isValidCSV();
+            }
+            return parse(pathOrUrl, channel, (int) chunks, allData, recordLineErrors, recordSinks);
+        }
+    }
+
+    boolean parse(String pathOrUrl, FileChannel channel, int chunks, RecordAggregate allData, List<String> recordLineErrors) throws IOException {
+        return parse(pathOrUrl, channel, chunks, allData, recordLineErrors, null);
+    }
+
+    private boolean parse(String pathOrUrl, FileChannel channel, int chunks, RecordAggregate allData, List<String> recordLineErrors,
+                          Supplier<RecordSink> recordSinks) throws IOException {
+        List<Long> boundaries = findChunkBoundaries(channel, chunks);
+
+        List<Callable<ChunkResult>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < boundaries.size(); i++) {
+            long start = boundaries.get(i);
+            long end = boundaries.get(i + 1);
+            boolean checkHeader = i == 0;
+            ChunkResult result = new ChunkResult();
+            CsvRecordParser parser = newParser(pathOrUrl, result.allData, result.recordLineErrors, checkHeader, recordSinks);
+            tasks.add(() -> parseChunk(channel, start, end, parser, result));
+        }
+
+        try {
+            List<ChunkResult> results = new ArrayList<>();
+            for (Future<ChunkResult> future : executorServiceManager.invokeParserTasks(tasks)) {
+                results.add(future.get());
+            }
+
+            // The header check only runs on the first chunk
+            if (!results.get(0).validCSV) {
+                return false;
+            }
+            for (ChunkResult result : results) {
+                allData.merge(result.allData);
+                recordLineErrors.addAll(result.recordLineErrors);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing " + pathOrUrl);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error parsing " + pathOrUrl, e.getCause());
+        }
+    }
+
+    // Chunk i covers the bytes between boundaries i and i + 1. Every boundary except the first and last is
+    // moved forward to the byte after the next line feed, so no line is split between two chunks.
+    static List<Long> findChunkBoundaries(FileChannel channel, int chunks) throws IOException {
+        long size = channel.size();
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+
+        for (int i = 1; i < chunks; i++) {
+            long previous = boundaries.get(boundaries.size() - 1);
+            long boundary = nextLineStart(channel, Math.max(previous, size * i / chunks));
+            if (boundary > previous && boundary < size) {
+                boundaries.add(boundary);
+            }
+        }
+
+        boundaries.add(size);
+        return boundaries;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        byte[] buffer = new byte[8 * 1024];
+        long size = channel.size();
+        while (position < size) {
+            int read = channel.read(ByteBuffer.wrap(buffer), position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static CsvRecordParser newParser(String pathOrUrl, RecordAggregate allData, List<String> recordLineErrors, boolean checkHeader,
+                                             Supplier<RecordSink> recordSinks) {
+        CsvRecordParser parser = new CsvRecordParser(pathOrUrl, allData, recordLineErrors, checkHeader);
+        if (recordSinks != null) {
+            parser.setRecordSink(recordSinks.get());
+        }
+        return parser;
+    }
+
+    private static ChunkResult parseChunk(FileChannel channel, long start, long end, CsvRecordParser parser, ChunkResult result) throws IOException {
+        MappedFileReader.read(channel, start, end, parser);
+
+        result.validCSV = parser.isValidCSV();
+        return result;
+    }
+
+    private static class ChunkResult {
+        private final RecordAggregate allData = new RecordAggregate();
+        private final List<String> recordLineErrors = new ArrayList<>();
+        private boolean validCSV;
+    }
+}
@@ -0,0 +1,11 @@
+package org.base.fetcher;
+
+import java.io.IOException;
+
+// Requests to a host fail fast while its circuit breaker is open
+public class CircuitOpenException extends IOException {
+
+    public CircuitOpenException(String host) {
+        super("Circuit breaker is open for host " + host);
+    }
+}
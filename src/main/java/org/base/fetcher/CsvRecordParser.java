@@ -0,0 +1,356 @@
+package org.base.fetcher;
+
+import org.base.aggregator.RecordAggregate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.base.aggregator.AgeHistogram.isValidAge;
+import static org.base.util.ValidationUtil.isCSVFile;
+
+// Parses CSV record lines straight from the raw bytes of a source and folds them into a RecordAggregate.
+// Lines are split the same way as String.split(",") followed by trim() and Integer.parseInt(), but no
+// String is created unless the line is reported as an error or the person is kept for its age.
+public class CsvRecordParser {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long INVALID_AGE = Long.MIN_VALUE;
+    // A line or a list of line errors can not grow without bound, whatever a source contains
+    static final int MAX_LINE_LENGTH = 64 * 1024;
+    static final int MAX_LINE_ERRORS = 1000;
+
+    private final String pathOrUrl;
+    private final RecordAggregate allData;
+    private final List<String> recordLineErrors;
+    // Null for local files, they are not limited
+    private final SourceLimit sourceLimit;
+
+    private boolean headerChecked;
+    private boolean validCSV = true;
+    private boolean skipLineFeed;
+    // Bytes of a line that started in a previous buffer and is not yet terminated
+    private byte[] pendingLine = new byte[256];
+    private int pendingLength;
+    // The pending line is longer than MAX_LINE_LENGTH, the rest of it is skipped
+    private boolean skipLongLine;
+    // Set when a limit was reached, nothing more is parsed
+    private boolean stopped;
+    private int lineErrorCount;
+    // Null unless the records are also kept elsewhere, such as in a snapshot
+    private RecordSink recordSink;
+    // Reported as metrics, the time of a URL source is spent mostly waiting for the network and not in the parser
+    private long bytesRead;
+    private long parseNanos;
+
+    public CsvRecordParser(String pathOrUrl, RecordAggregate allData, List<String> recordLineErrors) {
+        this(pathOrUrl, allData, recordLineErrors, true);
+    }
+
+    // Parsers of a chunk in the middle of a file do not see the header line, so they skip the CSV check
+    public CsvRecordParser(String pathOrUrl, RecordAggregate allData, List<String> recordLineErrors, boolean checkHeader) {
+        this(pathOrUrl, allData, recordLineErrors, checkHeader, null);
+    }
+
+    // Parser of a streamed source, it stops at the byte and row limits
+    public CsvRecordParser(String pathOrUrl, RecordAggregate allData, List<String> recordLineErrors, SourceLimit sourceLimit) {
+        this(pathOrUrl, allData, recordLineErrors, true, sourceLimit);
+    }
+
+    private CsvRecordParser(String pathOrUrl, RecordAggregate allData, List<String> recordLineErrors, boolean checkHeader, SourceLimit sourceLimit) {
+        this.pathOrUrl = pathOrUrl;
+        this.allData = allData;
+        this.recordLineErrors = recordLineErrors;
+        this.headerChecked = !checkHeader;
+        this.sourceLimit = sourceLimit;
+    }
+
+    // Reads and parses the whole stream, stops early if the first line shows it is not a CSV file or a limit is reached
+    public void parse(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while (isReading() && (read = inputStream.read(buffer)) != -1) {
+            feed(ByteBuffer.wrap(buffer, 0, read));
+        }
+        finish();
+    }
+
+    // Parses every complete line between the buffer position and limit, the rest is kept for the next call.
+    // The buffer position is left untouched.
+    public void feed(ByteBuffer bytes) {
+        long startTime = System.nanoTime();
+        int limit = bytes.limit();
+        int lineStart = bytes.position();
+        boolean truncated = false;
+        if (sourceLimit != null && isReading()) {
+            int allowed = (int) sourceLimit.acquireBytes(limit - lineStart);
+            truncated = allowed < limit - lineStart;
+            limit = lineStart + allowed;
+        }
+        bytesRead += limit - lineStart;
+
+        for (int i = lineStart; i < limit && isReading(); i++) {
+            byte b = bytes.get(i);
+            if (skipLineFeed) {
+                // A '\r' ended the previous line, a following '\n' belongs to the same line terminator
+                skipLineFeed = false;
+                if (b == '\n') {
+                    lineStart = i + 1;
+                    continue;
+                }
+            }
+            if (b == '\n' || b == '\r') {
+                if (skipLongLine) {
+                    // The end of a line that was reported as too long
+                    skipLongLine = false;
+                } else if (pendingLength > 0) {
+                    appendPending(bytes, lineStart, i);
+                    if (skipLongLine) {
+                        skipLongLine = false;
+                    } else {
+                        parseLine(ByteBuffer.wrap(pendingLine), 0, pendingLength);
+                    }
+                    pendingLength = 0;
+                } else {
+                    parseLine(bytes, lineStart, i);
+                }
+                skipLineFeed = b == '\r';
+                lineStart = i + 1;
+            }
+        }
+
+        if (truncated) {
+            // The line cut by the limit is incomplete, it is not parsed
+            stopped = true;
+            pendingLength = 0;
+        } else if (isReading() && lineStart < limit) {
+            appendPending(bytes, lineStart, limit);
+        }
+        parseNanos += System.nanoTime() - startTime;
+    }
+
+    // Parses the last line when the source does not end with a line terminator
+    public void finish() {
+        if (isReading() && pendingLength > 0) {
+            parseLine(ByteBuffer.wrap(pendingLine), 0, pendingLength);
+            pendingLength = 0;
+        }
+        if (lineErrorCount > MAX_LINE_ERRORS) {
+            recordLineErrors.add((lineErrorCount - MAX_LINE_ERRORS) + " more line errors for url " + pathOrUrl);
+        }
+        if (sourceLimit != null) {
+            sourceLimit.release();
+        }
+        if (recordSink != null) {
+            recordSink.finish();
+        }
+        if (!headerChecked) {
+            // Empty source, there is no first line to validate
+            headerChecked = true;
+            validCSV = isCSVFile(pathOrUrl, null);
+        }
+    }
+
+    public boolean isValidCSV() {
+        return validCSV;
+    }
+
+    // False once the source is known not to be a CSV file or a limit was reached, the rest of the source can be skipped
+    public boolean isReading() {
+        return validCSV && !stopped;
+    }
+
+    public void setRecordSink(RecordSink recordSink) {
+        this.recordSink = recordSink;
+    }
+
+    public SourceLimit getSourceLimit() {
+        return sourceLimit;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    private void parseLine(ByteBuffer bytes, int start, int end) {
+        if (!headerChecked) {
+            // Read the first line to check if its a valid CSV file
+            headerChecked = true;
+            validCSV = isCSVFile(pathOrUrl, decode(bytes, start, end));
+            return;
+        }
+        if (sourceLimit != null && !sourceLimit.acquireRow()) {
+            stopped = true;
+            return;
+        }
+        if (end - start > MAX_LINE_LENGTH) {
+            addLineError("Line longer than " + MAX_LINE_LENGTH + " bytes for url " + pathOrUrl);
+            return;
+        }
+
+        // split(",") drops trailing empty fields, so a record has exactly 3 fields where the last one is
+        // not empty and everything after it can only be commas
+        int firstComma = indexOfComma(bytes, start, end);
+        int secondComma = firstComma == -1 ? -1 : indexOfComma(bytes, firstComma + 1, end);
+        if (secondComma == -1) {
+            addLineError("RecordError on line: " + decode(bytes, start, end) + " for url " + pathOrUrl);
+            return;
+        }
+        int ageStart = secondComma + 1;
+        int ageEnd = indexOfComma(bytes, ageStart, end);
+        if (ageEnd == -1) {
+            ageEnd = end;
+        }
+        if (ageStart == ageEnd || !onlyCommas(bytes, ageEnd, end)) {
+            addLineError("RecordError on line: " + decode(bytes, start, end) + " for url " + pathOrUrl);
+            return;
+        }
+
+        long age = parseAge(bytes, ageStart, ageEnd);
+        if (age == INVALID_AGE) {
+            addLineError("Invalid age format in line: " + decode(bytes, start, end) + " for url " + pathOrUrl);
+            return;
+        }
+        if (!isValidAge((int) age)) {
+            addLineError("Age out of range in line: " + decode(bytes, start, end) + " for url " + pathOrUrl);
+            return;
+        }
+
+        if (recordSink != null) {
+            int fnameStart = trimStart(bytes, start, firstComma);
+            int lnameStart = trimStart(bytes, firstComma + 1, secondComma);
+            recordSink.add(bytes, fnameStart, trimEnd(bytes, fnameStart, firstComma), lnameStart, trimEnd(bytes, lnameStart, secondComma), (int) age);
+        }
+
+        // Only the first person of each age is kept, so the name is decoded only when needed
+        if (allData.add((int) age)) {
+            String fname = decodeTrimmed(bytes, start, firstComma);
+            String lname = decodeTrimmed(bytes, firstComma + 1, secondComma);
+            allData.setPersonWithAge((int) age, fname + " " + lname);
+        }
+    }
+
+    // Same rules as Integer.parseInt(field.trim()), returns INVALID_AGE instead of throwing
+    private static long parseAge(ByteBuffer bytes, int start, int end) {
+        while (start < end && isWhitespace(bytes.get(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(bytes.get(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return INVALID_AGE;
+        }
+
+        boolean negative = false;
+        byte first = bytes.get(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            start++;
+            if (start == end) {
+                return INVALID_AGE;
+            }
+        }
+
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = bytes.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID_AGE;
+            }
+            value = value * 10 + digit;
+            if (value > -(long) Integer.MIN_VALUE) {
+                return INVALID_AGE;
+            }
+        }
+        if (!negative && value > Integer.MAX_VALUE) {
+            return INVALID_AGE;
+        }
+        return negative ? -value : value;
+    }
+
+    private static int indexOfComma(ByteBuffer bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes.get(i) == ',') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean onlyCommas(ByteBuffer bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes.get(i) != ',') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // String.trim() removes every character up to and including the space
+    private static boolean isWhitespace(byte b) {
+        return (b & 0xFF) <= ' ';
+    }
+
+    private static String decodeTrimmed(ByteBuffer bytes, int start, int end) {
+        start = trimStart(bytes, start, end);
+        return decode(bytes, start, trimEnd(bytes, start, end));
+    }
+
+    private static int trimStart(ByteBuffer bytes, int start, int end) {
+        while (start < end && isWhitespace(bytes.get(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(ByteBuffer bytes, int start, int end) {
+        while (end > start && isWhitespace(bytes.get(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static String decode(ByteBuffer bytes, int start, int end) {
+        if (bytes.hasArray()) {
+            return new String(bytes.array(), bytes.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+        }
+        byte[] copy = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            copy[i - start] = bytes.get(i);
+        }
+        return new String(copy, StandardCharsets.UTF_8);
+    }
+
+    // Only the first MAX_LINE_ERRORS errors are kept, the others are counted
+    private void addLineError(String lineError) {
+        if (++lineErrorCount <= MAX_LINE_ERRORS) {
+            recordLineErrors.add(lineError);
+        }
+    }
+
+    private void appendPending(ByteBuffer bytes, int start, int end) {
+        if (skipLongLine) {
+            return;
+        }
+        int length = end - start;
+        if (pendingLength + length > MAX_LINE_LENGTH) {
+            skipLongLine = true;
+            pendingLength = 0;
+            addLineError("Line longer than " + MAX_LINE_LENGTH + " bytes for url " + pathOrUrl);
+            return;
+        }
+        if (pendingLength + length > pendingLine.length) {
+            pendingLine = Arrays.copyOf(pendingLine, Math.max(pendingLine.length * 2, pendingLength + length));
+        }
+        for (int i = start; i < end; i++) {
+            pendingLine[pendingLength++] = bytes.get(i);
+        }
+    }
+}
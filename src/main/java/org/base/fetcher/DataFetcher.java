@@ -1,157 +1,496 @@
 package org.base.fetcher;
 
-import org.base.dto.RecordData;
+import org.base.aggregator.GroupAggregate;
+import org.base.aggregator.GroupBy;
+import org.base.aggregator.RecordAggregate;
+import org.base.cache.CachedSource;
+import org.base.cache.UrlSourceCache;
+import org.base.config.StatisticsProperties;
 import org.base.dto.RecordErrors;
+import org.base.dto.SourceTiming;
 import org.base.dto.URLErrors;
 import org.base.exectutor.ExecutorServiceManager;
+import org.base.metrics.PipelineMetrics;
+import org.base.snapshot.SnapshotStore;
+import org.base.snapshot.SnapshotWriter;
+import org.base.snapshot.SourceSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-import static org.base.exectutor.ExecutorServiceManager.MAX_THREADS;
-import static org.base.util.ValidationUtil.isCSVFile;
+import static org.base.fetcher.ChunkedFileParser.isLargeFile;
 import static org.base.util.ValidationUtil.isURL;
 
+@Component
 public class DataFetcher {
+    private static final long REQUEST_DEADLINE_GRACE_MILLIS = 1000;
+
+    private final ExecutorServiceManager executorServiceManager;
+    private final ChunkedFileParser chunkedFileParser;
+    private final UrlSourceFetcher urlSourceFetcher;
+    private final UrlSourceCache urlSourceCache;
+    private final PipelineMetrics pipelineMetrics;
+    private final SnapshotStore snapshotStore;
+    private final long requestTimeoutMillis;
+    private final StatisticsProperties.Limits limits;
+
+    @Autowired
+    public DataFetcher(ExecutorServiceManager executorServiceManager, ChunkedFileParser chunkedFileParser, UrlSourceFetcher urlSourceFetcher,
+                       UrlSourceCache urlSourceCache, PipelineMetrics pipelineMetrics, SnapshotStore snapshotStore,
+                       StatisticsProperties statisticsProperties) {
+        this.executorServiceManager = executorServiceManager;
+        this.chunkedFileParser = chunkedFileParser;
+        this.urlSourceFetcher = urlSourceFetcher;
+        this.urlSourceCache = urlSourceCache;
+        this.pipelineMetrics = pipelineMetrics;
+        this.snapshotStore = snapshotStore;
+        this.requestTimeoutMillis = statisticsProperties.getFetch().getRequestTimeout().toMillis();
+        this.limits = statisticsProperties.getLimits();
+    }
 
     // This method fetches record data from multiple paths/URLs concurrently
-    public static List<RecordData> fetchRecordData(List<String> pathsOrURLs, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors, AtomicInteger threadCount) {
-        ExecutorServiceManager executorServiceManager = new ExecutorServiceManager(Math.min(pathsOrURLs.size(), MAX_THREADS));
+    public List<RecordAggregate> fetchRecordData(List<String> pathsOrURLs, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors, AtomicInteger threadCount) {
+        return fetchRecordData(pathsOrURLs, urlErrors, lineErrors, threadCount, SourceListener.NONE);
+    }
 
-        // Submit tasks for each path or URL using CompletableFuture and collect the futures
-        List<CompletableFuture<List<RecordData>>> futures = pathsOrURLs.stream()
-                .map(pathOrUrl -> executorServiceManager.submitTask(() -> fetchData(pathOrUrl, urlErrors, lineErrors)))
-                .collect(Collectors.toList());
+    public List<RecordAggregate> fetchRecordData(List<String> pathsOrURLs, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors, AtomicInteger threadCount,
+                                                 SourceListener sourceListener) {
+        return fetchRecordData(pathsOrURLs, urlErrors, lineErrors, threadCount, sourceListener, null);
+    }
 
-        // Wait for all tasks to complete and then shut down the ExecutorService
-        executorServiceManager.waitForCompletion(futures);
-        executorServiceManager.shutdown();
+    // With groupBy every source aggregate also has the histograms of its groups, null reads the sources without groups
+    public List<RecordAggregate> fetchRecordData(List<String> pathsOrURLs, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors, AtomicInteger threadCount,
+                                                 SourceListener sourceListener, GroupBy groupBy) {
+        Set<Long> threadIds = ConcurrentHashMap.newKeySet();
+        long requestDeadlineMillis = System.currentTimeMillis() + requestTimeoutMillis;
+        ReadLimits readLimits = new ReadLimits(limits);
+
+        // Start fetching each path or URL and collect the futures, if the fetch pool is full the whole request is rejected
+        List<CompletableFuture<RecordAggregate>> futures = new ArrayList<>(pathsOrURLs.size());
+        try {
+            for (String pathOrUrl : pathsOrURLs) {
+                futures.add(fetchData(pathOrUrl, urlErrors, lineErrors, threadIds, sourceListener, requestDeadlineMillis, readLimits, groupBy));
+            }
+        } catch (RejectedExecutionException e) {
+            futures.forEach(future -> future.cancel(false));
+            throw e;
+        }
+
+        // Wait for all tasks to complete. URLs stop at the request deadline by themselves, the grace period lets them
+        // report it before the sources that are still being read are given up.
+        long waitMillis = requestDeadlineMillis + REQUEST_DEADLINE_GRACE_MILLIS - System.currentTimeMillis();
+        if (!executorServiceManager.waitForCompletion(futures, waitMillis)) {
+            for (int i = 0; i < futures.size(); i++) {
+                if (futures.get(i).complete(new RecordAggregate())) {
+                    urlErrors.add(new URLErrors(pathsOrURLs.get(i), "Request deadline exceeded"));
+                }
+            }
+        }
 
-        // Calculate the active thread count after completion
-        threadCount.set(Thread.activeCount() - threadCount.get());
+        // The pools are shared between requests, so count the threads that worked on this request
+        threadCount.set(threadIds.size());
 
-        // Combine results and sort by age
         return futures.stream()
                 .map(CompletableFuture::join)
-                .flatMap(List::stream)
-                .sorted(Comparator.comparing(RecordData::getAge))
                 .collect(Collectors.toList());
     }
 
     // This method reads record data from multiple multipart CSV files concurrently
-    public static List<RecordData> readCSVRecordDataFiles(List<MultipartFile> csvFiles, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors, AtomicInteger threadCount) {
-        ExecutorServiceManager executorServiceManager = new ExecutorServiceManager(Math.min(csvFiles.size(), MAX_THREADS));
+    public List<RecordAggregate> readCSVRecordDataFiles(List<MultipartFile> csvFiles, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors, AtomicInteger threadCount) {
+        return readCSVRecordDataFiles(csvFiles, urlErrors, lineErrors, threadCount, SourceListener.NONE);
+    }
+
+    public List<RecordAggregate> readCSVRecordDataFiles(List<MultipartFile> csvFiles, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors, AtomicInteger threadCount,
+                                                        SourceListener sourceListener) {
+        return readCSVRecordDataFiles(csvFiles, urlErrors, lineErrors, threadCount, sourceListener, null);
+    }
+
+    public List<RecordAggregate> readCSVRecordDataFiles(List<MultipartFile> csvFiles, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors, AtomicInteger threadCount,
+                                                        SourceListener sourceListener, GroupBy groupBy) {
+        Set<Long> threadIds = ConcurrentHashMap.newKeySet();
+        ReadLimits readLimits = new ReadLimits(limits);
+
+        List<Callable<RecordAggregate>> tasks = csvFiles.stream()
+                .map(file -> trackThread(threadIds, () -> notifyListener(sourceListener, uploadName(file),
+                        groupBySource(uploadName(file), processSingleCSVFile(file, urlErrors, lineErrors, readLimits, sourceListener, groupBy), groupBy))))
+                .collect(Collectors.toList());
+        return waitForTasks(tasks, threadIds, threadCount);
+    }
 
-        List<CompletableFuture<List<RecordData>>> futures = csvFiles.stream()
-                .map(file -> executorServiceManager.submitTask(() -> processSingleCSVFile(file, urlErrors, lineErrors)))
+    // This method reads uploaded CSV files that were spooled to temporary files concurrently
+    public List<RecordAggregate> readSpooledCSVFiles(List<SpooledFile> csvFiles, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors, AtomicInteger threadCount,
+                                                     SourceListener sourceListener) {
+        Set<Long> threadIds = ConcurrentHashMap.newKeySet();
+
+        ReadLimits readLimits = new ReadLimits(limits);
+
+        List<Callable<RecordAggregate>> tasks = csvFiles.stream()
+                .map(file -> trackThread(threadIds, () -> notifyListener(sourceListener, file.getName(),
+                        processSpooledUpload(file.getName(), file.getPath(), readLimits, urlErrors, lineErrors, sourceListener, null))))
                 .collect(Collectors.toList());
+        return waitForTasks(tasks, threadIds, threadCount);
+    }
+
+    // This method reads uploaded CSV files from the request body one after the other, on the calling thread. The files
+    // arrive one after the other, so each file is parsed while it is received and nothing is buffered or spooled.
+    public List<RecordAggregate> readStreamedCSVFiles(Iterator<StreamedFile> csvFiles, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors,
+                                                      AtomicInteger threadCount, SourceListener sourceListener) {
+        ReadLimits readLimits = new ReadLimits(limits);
+        List<RecordAggregate> sourceAggregates = new ArrayList<>();
+
+        while (csvFiles.hasNext()) {
+            StreamedFile file = csvFiles.next();
+            RecordAggregate allData;
+            try (InputStream inputStream = file.getInputStream()) {
+                allData = parseUpload(file.getName(), inputStream, readLimits, urlErrors, lineErrors, sourceListener, null);
+            } catch (IOException e) {
+                urlErrors.add(new URLErrors(file.getName(), "Error accessing file or URL"));
+                allData = new RecordAggregate();
+            }
+            sourceAggregates.add(notifyListener(sourceListener, file.getName(), allData));
+        }
 
-        // Wait for all tasks to complete and then shut down the ExecutorService
+        threadCount.set(1);
+        return sourceAggregates;
+    }
+
+    private List<RecordAggregate> waitForTasks(List<Callable<RecordAggregate>> tasks, Set<Long> threadIds, AtomicInteger threadCount) {
+        List<CompletableFuture<RecordAggregate>> futures = executorServiceManager.submitTasks(tasks);
+
+        // Wait for all tasks to complete
         executorServiceManager.waitForCompletion(futures);
-        executorServiceManager.shutdown();
 
-        // Calculate the active thread count after completion
-        threadCount.set(Thread.activeCount() - threadCount.get());
+        // The pool is shared between requests, so count the threads that worked on this request
+        threadCount.set(threadIds.size());
 
-        // Combine results and sort by age
         return futures.stream()
                 .map(CompletableFuture::join)
-                .flatMap(List::stream)
-                .sorted(Comparator.comparing(RecordData::getAge))
                 .collect(Collectors.toList());
     }
 
-    private static List<RecordData> fetchData(String pathOrUrl, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors) {
-        try {
-            List<String> recordLineErrors = new ArrayList<>();
-
-            if (isURL(pathOrUrl)) {
-                // Handle URL
-                URL url = new URL(pathOrUrl);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-                    return processCSVFile(pathOrUrl, reader, recordLineErrors, urlErrors, lineErrors);
-                } finally {
-                    // Add record line errors if any and close the connection
-                    if (!recordLineErrors.isEmpty()) {
-                        lineErrors.add(new RecordErrors(pathOrUrl, recordLineErrors));
-                    }
-                    connection.disconnect();
-                }
-            } else {
-                // Handle local file
-                try (BufferedReader reader = new BufferedReader(new FileReader(pathOrUrl))) {
-                    return processCSVFile(pathOrUrl, reader, recordLineErrors, urlErrors, lineErrors);
-                }
+    private static RecordAggregate notifyListener(SourceListener sourceListener, String pathOrUrl, RecordAggregate sourceData) {
+        sourceListener.sourceCompleted(pathOrUrl, sourceData);
+        return sourceData;
+    }
+
+    // A summary grouped by source counts every source as one group, which also works for cached and snapshotted sources
+    private static RecordAggregate groupBySource(String pathOrUrl, RecordAggregate sourceData, GroupBy groupBy) {
+        if (groupBy == null || groupBy.getKey() != GroupBy.Key.SOURCE || sourceData.getCount() == 0) {
+            return sourceData;
+        }
+        // The aggregate of a cached source is shared between requests, the group is set on a copy
+        RecordAggregate groupedData = new RecordAggregate();
+        groupedData.merge(sourceData);
+        GroupAggregate groups = groupBy.newAggregate();
+        groups.add(pathOrUrl, sourceData.getHistogram());
+        groupedData.setGroups(groups);
+        return groupedData;
+    }
+
+    // The file name of an upload, a part sent without one is named after the part
+    static String uploadName(MultipartFile file) {
+        return file.getOriginalFilename() != null ? file.getOriginalFilename() : file.getName();
+    }
+
+    // Grouping by a name needs every record, the cache and the snapshots only hold the aggregate of a source
+    private static boolean groupsRecords(GroupBy groupBy) {
+        return groupBy != null && groupBy.getKey() != GroupBy.Key.SOURCE;
+    }
+
+    private static <T> Callable<T> trackThread(Set<Long> threadIds, Callable<T> task) {
+        return () -> {
+            threadIds.add(Thread.currentThread().getId());
+            return task.call();
+        };
+    }
+
+    private CompletableFuture<RecordAggregate> fetchData(String pathOrUrl, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors, Set<Long> threadIds,
+                                                         SourceListener sourceListener, long requestDeadlineMillis, ReadLimits readLimits,
+                                                         GroupBy groupBy) {
+        if (!isURL(pathOrUrl)) {
+            return executorServiceManager.submitTask(trackThread(threadIds, () -> notifyListener(sourceListener, pathOrUrl,
+                    groupBySource(pathOrUrl, readLocalFile(pathOrUrl, urlErrors, lineErrors, sourceListener, groupBy), groupBy))));
+        }
+
+        // Handle URL, the body is parsed while it is downloaded. A cached URL is only downloaded again if it changed.
+        // Without a cached result the snapshot of an earlier run is revalidated instead. A URL grouped by a name is
+        // downloaded and parsed again.
+        boolean groupsRecords = groupsRecords(groupBy);
+        CachedSource cached = groupsRecords ? null : urlSourceCache.get(pathOrUrl);
+        SourceSnapshot snapshot = cached == null && !groupsRecords && snapshotStore.isEnabled() ? snapshotStore.find(pathOrUrl) : null;
+        FetchResponse validators = cached != null ? cached.getValidators() : snapshot != null ? snapshot.getValidators() : null;
+        Supplier<? extends RecordSink> recordSinks = groupsRecords ? () -> new GroupingSink(groupBy)
+                : snapshotStore.isEnabled() ? snapshotStore::newWriter : null;
+        long startTime = System.nanoTime();
+        // A source that broke off keeps the line errors it parsed until then. The deadline can fail the source while
+        // its last attempt fails too, so the errors are added to a list that can be read meanwhile.
+        List<String> failedLineErrors = new CopyOnWriteArrayList<>();
+
+        return urlSourceFetcher.fetch(pathOrUrl, validators, requestDeadlineMillis, readLimits, recordSinks, failedLineErrors)
+                .handle((result, error) -> {
+                    threadIds.add(Thread.currentThread().getId());
+                    urlRead(pathOrUrl, System.nanoTime() - startTime, result, error, sourceListener);
+                    return notifyListener(sourceListener, pathOrUrl, groupBySource(pathOrUrl,
+                            urlResult(pathOrUrl, cached, snapshot, result, error, failedLineErrors, urlErrors, lineErrors), groupBy));
+                });
+    }
+
+    private RecordAggregate urlResult(String url, CachedSource cached, SourceSnapshot snapshot, UrlFetchResult result, Throwable error,
+                                      List<String> failedLineErrors, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors) {
+        if (error != null) {
+            urlErrors.add(new URLErrors(url, errorName(error)));
+            if (!failedLineErrors.isEmpty()) {
+                lineErrors.add(new RecordErrors(url, new ArrayList<>(failedLineErrors)));
             }
-        } catch (IOException e) {
-            urlErrors.add(new URLErrors(pathOrUrl, "Error accessing file or URL"));
-            return Collections.emptyList();
+            return new RecordAggregate();
+        }
+        if (result.getResponse().isNotModified()) {
+            result.releaseRecordSink();
+            CachedSource source = cached != null ? urlSourceCache.notModified(cached) : snapshotSource(url, snapshot);
+            return collectResult(url, source.isValidCSV(), source.getAllData(), source.getRecordLineErrors(), null, urlErrors, lineErrors);
         }
+        SourceLimit sourceLimit = result.getParser().getSourceLimit();
+        if (result.getRecordSink() instanceof GroupingSink) {
+            // The groups are only read by this request, the aggregate is not cached
+            result.getAllData().setGroups(((GroupingSink) result.getRecordSink()).getGroups());
+        } else if (sourceLimit.getExceeded() == null) {
+            // A source cut off by a limit is not complete, it is read again by the next request
+            urlSourceCache.put(url, new CachedSource(result.getAllData(), result.getRecordLineErrors(), result.isValidCSV(), result.getResponse()));
+            if (result.getRecordSink() instanceof SnapshotWriter) {
+                snapshotStore.saveUrl(url, result.getResponse(), result.isValidCSV(), result.getRecordLineErrors(), (SnapshotWriter) result.getRecordSink());
+            }
+        } else {
+            result.releaseRecordSink();
+        }
+        return collectResult(url, result.isValidCSV(), result.getAllData(), result.getRecordLineErrors(), sourceLimit, urlErrors, lineErrors);
     }
 
-    public static List<RecordData> processSingleCSVFile(MultipartFile file, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors) throws IOException {
-        // Read the first line to check if its a valid CSV file
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            List<String> recordLineErrors = new ArrayList<>();
+    // The snapshot of a URL that was not modified, it goes back into the cache so the next request does not map it again
+    private CachedSource snapshotSource(String url, SourceSnapshot snapshot) {
+        CachedSource source = new CachedSource(snapshot.toAggregate(), snapshot.getRecordLineErrors(), snapshot.isValidCSV(), snapshot.getValidators());
+        urlSourceCache.put(url, source);
+        return source;
+    }
 
-            // Process each line of the CSV file and extract the specified columns
-            return processCSVFile(file.getOriginalFilename(), reader, recordLineErrors, urlErrors, lineErrors);
+    private void urlRead(String url, long fetchNanos, UrlFetchResult result, Throwable error, SourceListener sourceListener) {
+        if (error != null || result.getResponse().isNotModified()) {
+            pipelineMetrics.urlFetched(fetchNanos, error != null ? "error" : "not_modified");
+            sourceListener.sourceTimed(new SourceTiming(url, toMillis(fetchNanos), 0, 0, 0));
+            return;
         }
+        pipelineMetrics.urlFetched(fetchNanos, "success");
+        CsvRecordParser parser = result.getParser();
+        sourceParsed("url", url, fetchNanos, parser.getParseNanos(), parser.getBytesRead(), result.getAllData(), result.getRecordLineErrors(),
+                sourceListener);
     }
 
-    public static List<RecordData> processCSVFile(String pathOrUrl, BufferedReader reader, List<String> recordLineErrors,
-                                                  Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors) throws IOException {
-        // Read the first line to check if its a valid CSV file
-        String firstLine = reader.readLine();
-        if (!isCSVFile(pathOrUrl, firstLine)) {
-            urlErrors.add(new URLErrors(pathOrUrl, "File is not a valid CSV"));
-            return Collections.emptyList();
+    private void sourceParsed(String source, String pathOrUrl, long fetchNanos, long parseNanos, long bytes, RecordAggregate allData,
+                              List<String> recordLineErrors, SourceListener sourceListener) {
+        pipelineMetrics.sourceParsed(source, parseNanos, bytes, allData.getCount(), recordLineErrors.size());
+        sourceListener.sourceTimed(new SourceTiming(pathOrUrl, toMillis(fetchNanos), toMillis(parseNanos), bytes, allData.getCount()));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    // Timeouts and open circuits get their own error names, so slow sources can be told apart from unreachable ones
+    private static String errorName(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof SourceDeadlineException) {
+            return ((SourceDeadlineException) cause).isRequestDeadline() ? "Request deadline exceeded" : "Source deadline exceeded";
         }
+        if (UrlSourceFetcher.isTimeout(cause)) {
+            return "Timeout accessing URL";
+        }
+        if (cause instanceof CircuitOpenException) {
+            return "Host circuit open";
+        }
+        return "Error accessing file or URL";
+    }
 
-        List<RecordData> allData = reader.lines()
-                .map(line -> parseRecordLine(pathOrUrl, line, recordLineErrors))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+    private RecordAggregate readLocalFile(String path, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors, SourceListener sourceListener,
+                                          GroupBy groupBy) {
+        try {
+            // Handle local file, it is memory mapped and large files are split into chunks that are parsed in parallel
+            if (snapshotStore.isEnabled() && !groupsRecords(groupBy)) {
+                return readLocalFileWithSnapshot(path, Paths.get(path), urlErrors, lineErrors, sourceListener);
+            }
+            return processLocalCSVFile(path, Paths.get(path), new ArrayList<>(), urlErrors, lineErrors, sourceListener, groupBy);
+        } catch (IOException | InvalidPathException e) {
+            urlErrors.add(new URLErrors(path, "Error accessing file or URL"));
+            return new RecordAggregate();
+        }
+    }
 
-        if (!recordLineErrors.isEmpty()) {
-            lineErrors.add(new RecordErrors(pathOrUrl, recordLineErrors));
+    // A file with the size and modification time of its snapshot is read from the snapshot, otherwise it is parsed
+    // and snapshotted. The attributes are read before parsing, a file changed meanwhile is parsed again next time.
+    private RecordAggregate readLocalFileWithSnapshot(String path, Path file, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors,
+                                                      SourceListener sourceListener) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long modifiedMillis = attributes.lastModifiedTime().toMillis();
+        SourceSnapshot snapshot = snapshotStore.find(path);
+        if (snapshot != null && snapshot.isSameFile(attributes.size(), modifiedMillis)) {
+            long startTime = System.nanoTime();
+            RecordAggregate allData = snapshot.toAggregate();
+            List<String> recordLineErrors = new ArrayList<>(snapshot.getRecordLineErrors());
+            sourceParsed("snapshot", path, 0, System.nanoTime() - startTime, snapshot.getSize(), allData, recordLineErrors, sourceListener);
+            return collectResult(path, snapshot.isValidCSV(), allData, recordLineErrors, null, urlErrors, lineErrors);
         }
 
-        return allData;
+        RecordAggregate allData = new RecordAggregate();
+        List<String> recordLineErrors = new ArrayList<>();
+        SnapshotWriter writer = snapshotStore.newWriter();
+        boolean validCSV;
+        try {
+            validCSV = parseLocalFile(path, file, allData, recordLineErrors, writer::newPart, sourceListener);
+        } catch (IOException | RuntimeException e) {
+            writer.release();
+            throw e;
+        }
+        snapshotStore.saveFile(path, attributes.size(), modifiedMillis, validCSV, recordLineErrors, writer);
+        return collectResult(path, validCSV, allData, recordLineErrors, null, urlErrors, lineErrors);
     }
 
-    public static RecordData parseRecordLine(String url, String line, List<String> lineErrors) {
-        String[] parts = line.split(",");
-        if (parts.length == 3) {
+    public RecordAggregate processSingleCSVFile(MultipartFile file, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors,
+                                                ReadLimits readLimits, SourceListener sourceListener, GroupBy groupBy) throws IOException {
+        if (isLargeFile(file.getSize())) {
+            // Spool the upload to a temporary file so it can be split into chunks that are parsed in parallel
+            Path spooledFile = Files.createTempFile("summary-upload-", ".csv");
             try {
-                String fname = parts[0].trim();
-                String lname = parts[1].trim();
-                int age = Integer.parseInt(parts[2].trim());
-
-                RecordData recordData = new RecordData();
-                recordData.setFname(fname);
-                recordData.setLname(lname);
-                recordData.setAge(age);
-
-                return recordData;
-            } catch (NumberFormatException e) {
-                lineErrors.add("Invalid age format in line: " + line + " for url " + url);
-                return null;
+                file.transferTo(spooledFile.toFile());
+                return processSpooledUpload(uploadName(file), spooledFile, readLimits, urlErrors, lineErrors, sourceListener, groupBy);
+            } finally {
+                Files.deleteIfExists(spooledFile);
             }
-        } else {
-            lineErrors.add("RecordError on line: " + line + " for url " + url);
-            return null;
         }
+
+        try (InputStream inputStream = file.getInputStream()) {
+            return parseUpload(uploadName(file), inputStream, readLimits, urlErrors, lineErrors, sourceListener, groupBy);
+        }
+    }
+
+    // An upload spooled to a file is limited like a streamed one. Without row limits, an uncompressed file that fits the
+    // byte limits takes all its bytes at once and is parsed in parallel chunks. Otherwise it is parsed in order on the
+    // calling thread, and stops at the limit that is reached first.
+    private RecordAggregate processSpooledUpload(String name, Path file, ReadLimits readLimits, Set<URLErrors> urlErrors,
+                                                 Set<RecordErrors> lineErrors, SourceListener sourceListener, GroupBy groupBy) throws IOException {
+        if (!readLimits.hasRowLimits() && !GzipSources.isGzip(file) && readLimits.newSource().acquireAllBytes(Files.size(file))) {
+            return processLocalCSVFile(name, file, new ArrayList<>(), urlErrors, lineErrors, sourceListener, groupBy);
+        }
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            return parseUpload(name, inputStream, readLimits, urlErrors, lineErrors, sourceListener, groupBy);
+        }
+    }
+
+    // The fetch time of an upload is the time until its last byte was read, for a streamed upload it includes the network
+    private RecordAggregate parseUpload(String name, InputStream inputStream, ReadLimits readLimits, Set<URLErrors> urlErrors,
+                                        Set<RecordErrors> lineErrors, SourceListener sourceListener, GroupBy groupBy) throws IOException {
+        List<String> recordLineErrors = new ArrayList<>();
+        RecordAggregate allData = new RecordAggregate();
+        SourceLimit sourceLimit = readLimits.newSource();
+        long startTime = System.nanoTime();
+
+        // Process each line of the CSV file and extract the specified columns
+        CsvRecordParser parser = new CsvRecordParser(name, allData, recordLineErrors, sourceLimit);
+        if (groupsRecords(groupBy)) {
+            GroupingSink groupingSink = new GroupingSink(groupBy);
+            parser.setRecordSink(groupingSink);
+            allData.setGroups(groupingSink.getGroups());
+        }
+        try {
+            parser.parse(GzipSources.decode(inputStream));
+        } finally {
+            // An upload that broke off never finishes its parser
+            sourceLimit.release();
+        }
+        sourceParsed("upload", name, System.nanoTime() - startTime, parser.getParseNanos(), parser.getBytesRead(), allData, recordLineErrors,
+                sourceListener);
+
+        return collectResult(name, parser.isValidCSV(), allData, recordLineErrors, sourceLimit, urlErrors, lineErrors);
+    }
+
+    public static RecordAggregate processCSVFile(String pathOrUrl, InputStream inputStream, List<String> recordLineErrors,
+                                                 Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors) throws IOException {
+        return processCSVFile(pathOrUrl, inputStream, recordLineErrors, ReadLimits.UNLIMITED.newSource(), urlErrors, lineErrors);
+    }
+
+    public static RecordAggregate processCSVFile(String pathOrUrl, InputStream inputStream, List<String> recordLineErrors, SourceLimit sourceLimit,
+                                                 Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors) throws IOException {
+        RecordAggregate allData = new RecordAggregate();
+
+        // Each line is parsed from the raw bytes and folded into the aggregate, no record is kept in memory.
+        // The parser checks the first line and stops reading if it is not a valid CSV file or a limit is reached.
+        CsvRecordParser parser = new CsvRecordParser(pathOrUrl, allData, recordLineErrors, sourceLimit);
+        parser.parse(inputStream);
+
+        return collectResult(pathOrUrl, parser.isValidCSV(), allData, recordLineErrors, sourceLimit, urlErrors, lineErrors);
+    }
+
+    public RecordAggregate processLocalCSVFile(String pathOrUrl, Path file, List<String> recordLineErrors,
+                                               Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors, SourceListener sourceListener,
+                                               GroupBy groupBy) throws IOException {
+        RecordAggregate allData = new RecordAggregate();
+        if (!groupsRecords(groupBy)) {
+            boolean validCSV = parseLocalFile(pathOrUrl, file, allData, recordLineErrors, null, sourceListener);
+            return collectResult(pathOrUrl, validCSV, allData, recordLineErrors, null, urlErrors, lineErrors);
+        }
+
+        // Every chunk counts its groups on its own and merges them into the groups of the file when it is parsed
+        GroupAggregate groups = groupBy.newAggregate();
+        boolean validCSV = parseLocalFile(pathOrUrl, file, allData, recordLineErrors, () -> new GroupingSink(groupBy, groups), sourceListener);
+        allData.setGroups(groups);
+
+        return collectResult(pathOrUrl, validCSV, allData, recordLineErrors, null, urlErrors, lineErrors);
+    }
+
+    // The records are also passed to a sink of each chunk, from a snapshot writer or for the groups. Null passes them nowhere.
+    private boolean parseLocalFile(String pathOrUrl, Path file, RecordAggregate allData, List<String> recordLineErrors,
+                                   Supplier<RecordSink> recordSinks, SourceListener sourceListener) throws IOException {
+        long startTime = System.nanoTime();
+        boolean validCSV = chunkedFileParser.parse(pathOrUrl, file, allData, recordLineErrors, recordSinks);
+        sourceParsed("file", pathOrUrl, 0, System.nanoTime() - startTime, Files.size(file), allData, recordLineErrors, sourceListener);
+        return validCSV;
+    }
+
+    // The source limit is null for sources that are not limited
+    private static RecordAggregate collectResult(String pathOrUrl, boolean validCSV, RecordAggregate allData, List<String> recordLineErrors,
+                                                 SourceLimit sourceLimit, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors) {
+        if (!validCSV) {
+            urlErrors.add(new URLErrors(pathOrUrl, "File is not a valid CSV"));
+            return new RecordAggregate();
+        }
+
+        if (sourceLimit != null && sourceLimit.getExceeded() != null) {
+            if (sourceLimit.isFailFast()) {
+                urlErrors.add(new URLErrors(pathOrUrl, sourceLimit.getExceeded()));
+                return new RecordAggregate();
+            }
+            urlErrors.add(new URLErrors(pathOrUrl, sourceLimit.getExceeded() + ", truncated"));
+        }
+
+        if (!recordLineErrors.isEmpty()) {
+            lineErrors.add(new RecordErrors(pathOrUrl, recordLineErrors));
+        }
+
+        return allData;
     }
 }
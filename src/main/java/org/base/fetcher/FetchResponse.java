@@ -0,0 +1,31 @@
+package org.base.fetcher;
+
+// Outcome of fetching a URL, with the validators the server sent for revalidating it later
+public class FetchResponse {
+    private final boolean notModified;
+    private final String eTag;
+    private final String lastModified;
+
+    public FetchResponse(boolean notModified, String eTag, String lastModified) {
+        this.notModified = notModified;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    // The server answered 304 Not Modified, the body was not sent and the parser was not used
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public boolean hasValidators() {
+        return eTag != null || lastModified != null;
+    }
+}
@@ -0,0 +1,49 @@
+package org.base.fetcher;
+
+import org.base.aggregator.GroupAggregate;
+import org.base.aggregator.GroupBy;
+
+import java.nio.ByteBuffer;
+
+// Counts every parsed record in the group of its first or last name, taken from the bytes of the record. The sink of a
+// chunk merges its groups into the groups of the whole source once the chunk is parsed, so only the chunks that are
+// being parsed hold groups of their own.
+class GroupingSink implements RecordSink {
+    private final boolean byFname;
+    private final GroupAggregate sourceGroups;
+    private GroupAggregate groups;
+
+    GroupingSink(GroupBy groupBy) {
+        this(groupBy, null);
+    }
+
+    // The groups are merged into sourceGroups when the parser finishes, without sourceGroups they are read from the sink
+    GroupingSink(GroupBy groupBy, GroupAggregate sourceGroups) {
+        this.groups = groupBy.newAggregate();
+        this.byFname = groupBy.getKey() == GroupBy.Key.FNAME;
+        this.sourceGroups = sourceGroups;
+    }
+
+    @Override
+    public void add(ByteBuffer bytes, int fnameStart, int fnameEnd, int lnameStart, int lnameEnd, int age) {
+        if (byFname) {
+            groups.add(bytes, fnameStart, fnameEnd, age);
+        } else {
+            groups.add(bytes, lnameStart, lnameEnd, age);
+        }
+    }
+
+    @Override
+    public void finish() {
+        if (sourceGroups != null) {
+            synchronized (sourceGroups) {
+                sourceGroups.merge(groups);
+            }
+            groups = null;
+        }
+    }
+
+    GroupAggregate getGroups() {
+        return groups;
+    }
+}
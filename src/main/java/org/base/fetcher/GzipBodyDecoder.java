@@ -0,0 +1,91 @@
+package org.base.fetcher;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.JdkZlibDecoder;
+import io.netty.handler.codec.compression.ZlibWrapper;
+
+import java.nio.ByteBuffer;
+
+// Feeds the chunks of a response body into the parser and inflates them first if the body starts with the gzip magic
+// bytes. A response sent with Content-Encoding: gzip is inflated by the HTTP client already, this covers .csv.gz files
+// that are served as they are. Netty's zlib decoder runs in an embedded channel, as netty does for Content-Encoding.
+class GzipBodyDecoder {
+    private final CsvRecordParser parser;
+    // The first bytes of the body, until there are enough of them to check the magic bytes
+    private final ByteBuffer head = ByteBuffer.allocate(2);
+    private EmbeddedChannel inflater;
+    private boolean checked;
+
+    GzipBodyDecoder(CsvRecordParser parser) {
+        this.parser = parser;
+    }
+
+    boolean isReading() {
+        return parser.isReading();
+    }
+
+    void feed(ByteBuffer bytes) {
+        if (!checked) {
+            while (head.hasRemaining() && bytes.hasRemaining()) {
+                head.put(bytes.get());
+            }
+            if (head.hasRemaining()) {
+                return;
+            }
+            checked = true;
+            if (GzipSources.isGzip(head.get(0), head.get(1))) {
+                inflater = new EmbeddedChannel(new JdkZlibDecoder(ZlibWrapper.GZIP, true));
+            }
+            head.flip();
+            write(head);
+        }
+        write(bytes);
+    }
+
+    void finish() {
+        if (!checked) {
+            // A body shorter than the magic bytes
+            head.flip();
+            write(head);
+        } else if (inflater != null) {
+            inflater.finish();
+            drain();
+        }
+        parser.finish();
+    }
+
+    // Releases the buffers of the inflater if the body was not read to the end
+    void close() {
+        if (inflater != null) {
+            inflater.finishAndReleaseAll();
+        }
+    }
+
+    private void write(ByteBuffer bytes) {
+        if (!bytes.hasRemaining()) {
+            return;
+        }
+        if (inflater == null) {
+            parser.feed(bytes);
+            return;
+        }
+        // The chunk is copied, the decoder may keep a part of it after the body buffer was released
+        inflater.writeInbound(Unpooled.copiedBuffer(bytes));
+        drain();
+    }
+
+    private void drain() {
+        ByteBuf inflated;
+        while ((inflated = inflater.readInbound()) != null) {
+            try {
+                if (parser.isReading()) {
+                    parser.feed(inflated.nioBuffer());
+                }
+            } finally {
+                inflated.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.base.fetcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+// Gzip compressed sources such as .csv.gz files. A source is recognised by the gzip magic bytes at its start, so a
+// compressed file is read the same way whatever its name or the headers it was served with.
+public final class GzipSources {
+    private static final int MAGIC_FIRST = 0x1f;
+    private static final int MAGIC_SECOND = 0x8b;
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+    private GzipSources() {
+    }
+
+    static boolean isGzip(int first, int second) {
+        return (first & 0xff) == MAGIC_FIRST && (second & 0xff) == MAGIC_SECOND;
+    }
+
+    static boolean isGzip(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return isGzip(channel);
+        }
+    }
+
+    static boolean isGzip(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(2);
+        int read;
+        do {
+            read = channel.read(magic, magic.position());
+        } while (read > 0 && magic.hasRemaining());
+        return !magic.hasRemaining() && isGzip(magic.get(0), magic.get(1));
+    }
+
+    // The stream inflated if it starts with the gzip magic bytes, otherwise the stream as it is.
+    // Files of several concatenated gzip members are read to the end.
+    public static InputStream decode(InputStream inputStream) throws IOException {
+        PushbackInputStream pushbackInputStream = new PushbackInputStream(inputStream, 2);
+        byte[] magic = new byte[2];
+        int read = 0;
+        int n;
+        while (read < magic.length && (n = pushbackInputStream.read(magic, read, magic.length - read)) != -1) {
+            read += n;
+        }
+        pushbackInputStream.unread(magic, 0, read);
+        if (read == magic.length && isGzip(magic[0], magic[1])) {
+            return new GZIPInputStream(pushbackInputStream, INPUT_BUFFER_SIZE);
+        }
+        return pushbackInputStream;
+    }
+}
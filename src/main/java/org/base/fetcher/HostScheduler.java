@@ -0,0 +1,230 @@
+package org.base.fetcher;
+
+import org.base.config.StatisticsProperties;
+import org.base.dto.ExecutorStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+// Starts URL requests so that no host gets more than maxConnectionsPerHost requests at the same time and all
+// hosts together no more than maxConcurrentRequests. Hosts with waiting requests take turns, so a URL list that
+// points mostly at one host does not hold back the other hosts.
+// Every host has a circuit breaker: after circuitFailureThreshold failures in a row its requests fail fast for
+// circuitOpenDuration, then a single trial request decides if the host is used again.
+@Component
+public class HostScheduler {
+    private final int maxConcurrentRequests;
+    private final int maxRequestsPerHost;
+    private final int circuitFailureThreshold;
+    private final long circuitOpenMillis;
+
+    private final Map<String, HostState> hosts = new HashMap<>();
+    // Hosts that have waiting requests and a free slot, in the order they get their next turn
+    private final Deque<HostState> waitingHosts = new ArrayDeque<>();
+    private int activeRequests;
+    private long completedRequests;
+    private long rejectedRequests;
+
+    @Autowired
+    public HostScheduler(StatisticsProperties statisticsProperties) {
+        StatisticsProperties.Fetch properties = statisticsProperties.getFetch();
+        this.maxConcurrentRequests = properties.getMaxConcurrentRequests();
+        this.maxRequestsPerHost = properties.getMaxConnectionsPerHost();
+        this.circuitFailureThreshold = properties.getCircuitFailureThreshold();
+        this.circuitOpenMillis = properties.getCircuitOpenDuration().toMillis();
+    }
+
+    // The request is started once its host has its turn, cancelling the returned future cancels the request
+    public <T> CompletableFuture<T> submit(String url, Supplier<CompletableFuture<T>> request) {
+        PendingRequest<T> pendingRequest = new PendingRequest<>(request);
+        List<Runnable> starts;
+        synchronized (this) {
+            HostState host = hosts.computeIfAbsent(hostOf(url), HostState::new);
+            if (host.isOpen(System.currentTimeMillis())) {
+                rejectedRequests++;
+                removeIfIdle(host);
+                return failedFuture(new CircuitOpenException(host.name));
+            }
+            host.pending.add(pendingRequest);
+            enqueueIfReady(host);
+            starts = nextRequests();
+        }
+        starts.forEach(Runnable::run);
+        return pendingRequest.result;
+    }
+
+    public synchronized ExecutorStats getStats() {
+        int waitingRequests = 0;
+        for (HostState host : hosts.values()) {
+            waitingRequests += host.pending.size();
+        }
+        return new ExecutorStats("fetch-hosts", hosts.size(), maxConcurrentRequests, activeRequests, waitingRequests, completedRequests, rejectedRequests);
+    }
+
+    // Picks the requests to start, one per host in turn, called while holding the lock
+    private List<Runnable> nextRequests() {
+        List<Runnable> starts = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        while (activeRequests < maxConcurrentRequests && !waitingHosts.isEmpty()) {
+            HostState host = waitingHosts.poll();
+            host.waiting = false;
+            PendingRequest<?> pendingRequest = host.pending.poll();
+            if (pendingRequest == null || pendingRequest.result.isDone()) {
+                // Cancelled while waiting
+                enqueueIfReady(host);
+                continue;
+            }
+            if (!host.allowsRequest(pendingRequest, now)) {
+                // The circuit opened while the requests were waiting
+                rejectedRequests += host.pending.size() + 1;
+                starts.add(() -> pendingRequest.result.completeExceptionally(new CircuitOpenException(host.name)));
+                host.pending.forEach(request -> starts.add(() -> request.result.completeExceptionally(new CircuitOpenException(host.name))));
+                host.pending.clear();
+                continue;
+            }
+
+            host.activeRequests++;
+            activeRequests++;
+            starts.add(() -> start(host, pendingRequest));
+            enqueueIfReady(host);
+        }
+        return starts;
+    }
+
+    private <T> void start(HostState host, PendingRequest<T> pendingRequest) {
+        CompletableFuture<T> response;
+        try {
+            response = pendingRequest.request.get();
+        } catch (RuntimeException e) {
+            response = failedFuture(e);
+        }
+        CompletableFuture<T> started = response;
+        pendingRequest.result.whenComplete((result, error) -> started.cancel(true));
+        started.whenComplete((result, error) -> {
+            completed(host, pendingRequest, error);
+            if (error == null) {
+                pendingRequest.result.complete(result);
+            } else {
+                pendingRequest.result.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        });
+    }
+
+    private void completed(HostState host, PendingRequest<?> pendingRequest, Throwable error) {
+        List<Runnable> starts;
+        synchronized (this) {
+            host.activeRequests--;
+            activeRequests--;
+            completedRequests++;
+            host.recordResult(pendingRequest, error, System.currentTimeMillis());
+            enqueueIfReady(host);
+            removeIfIdle(host);
+            starts = nextRequests();
+        }
+        starts.forEach(Runnable::run);
+    }
+
+    private void enqueueIfReady(HostState host) {
+        if (!host.waiting && !host.pending.isEmpty() && host.activeRequests < maxRequestsPerHost) {
+            host.waiting = true;
+            waitingHosts.add(host);
+        }
+    }
+
+    // Hosts are forgotten when nothing runs for them and their circuit is closed
+    private void removeIfIdle(HostState host) {
+        if (host.activeRequests == 0 && host.pending.isEmpty() && host.consecutiveFailures == 0 && !host.waiting) {
+            hosts.remove(host.name);
+        }
+    }
+
+    static String hostOf(String url) {
+        try {
+            URI uri = URI.create(url);
+            if (uri.getHost() != null) {
+                return uri.getHost().toLowerCase() + ":" + uri.getPort();
+            }
+        } catch (IllegalArgumentException e) {
+            // Not a valid URI, it is used as its own host
+        }
+        return url;
+    }
+
+    // Missing files and other client errors are a problem of the URL, not of the host
+    private static boolean isHostFailure(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof HttpStatusException) {
+            return ((HttpStatusException) cause).isRetryable();
+        }
+        return !(cause instanceof CancellationException || cause instanceof SourceDeadlineException || cause instanceof RejectedExecutionException);
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    private static class PendingRequest<T> {
+        private final Supplier<CompletableFuture<T>> request;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private boolean trial;
+
+        private PendingRequest(Supplier<CompletableFuture<T>> request) {
+            this.request = request;
+        }
+    }
+
+    private class HostState {
+        private final String name;
+        private final Deque<PendingRequest<?>> pending = new ArrayDeque<>();
+        private int activeRequests;
+        private boolean waiting;
+        private int consecutiveFailures;
+        private long openUntilMillis;
+        private boolean trialRunning;
+
+        private HostState(String name) {
+            this.name = name;
+        }
+
+        private boolean isOpen(long now) {
+            return consecutiveFailures >= circuitFailureThreshold && (now < openUntilMillis || trialRunning);
+        }
+
+        // Closed: every request is allowed. Open: requests fail until openUntilMillis, then one trial request is let through.
+        private boolean allowsRequest(PendingRequest<?> request, long now) {
+            if (consecutiveFailures < circuitFailureThreshold) {
+                return true;
+            }
+            if (isOpen(now)) {
+                return false;
+            }
+            trialRunning = true;
+            request.trial = true;
+            return true;
+        }
+
+        // A successful trial closes the circuit, a failed one opens it again
+        private void recordResult(PendingRequest<?> request, Throwable error, long now) {
+            if (request.trial) {
+                trialRunning = false;
+            }
+            if (error == null) {
+                consecutiveFailures = 0;
+            } else if (isHostFailure(error)) {
+                consecutiveFailures++;
+                if (request.trial || consecutiveFailures == circuitFailureThreshold) {
+                    openUntilMillis = now + circuitOpenMillis;
+                }
+            }
+        }
+    }
+}
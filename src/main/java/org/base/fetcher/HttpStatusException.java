@@ -0,0 +1,21 @@
+package org.base.fetcher;
+
+import java.io.IOException;
+
+// The server answered with an error status, only server errors and 429 Too Many Requests are worth a retry
+public class HttpStatusException extends IOException {
+    private final int status;
+
+    public HttpStatusException(String url, int status) {
+        super("Server returned HTTP response code: " + status + " for URL: " + url);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isRetryable() {
+        return status >= 500 || status == 429;
+    }
+}
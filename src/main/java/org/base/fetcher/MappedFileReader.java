@@ -0,0 +1,26 @@
+package org.base.fetcher;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Feeds a byte range of a local file to the parser straight from memory mapped windows, so warm pages of
+// the OS page cache are parsed without being copied. A line crossing two windows is carried over by the parser.
+public class MappedFileReader {
+    public static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    public static void read(FileChannel channel, long start, long end, CsvRecordParser parser) throws IOException {
+        read(channel, start, end, WINDOW_SIZE, parser);
+    }
+
+    static void read(FileChannel channel, long start, long end, long windowSize, CsvRecordParser parser) throws IOException {
+        long position = start;
+        while (position < end && parser.isValidCSV()) {
+            long length = Math.min(windowSize, end - position);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            parser.feed(window);
+            position += length;
+        }
+        parser.finish();
+    }
+}
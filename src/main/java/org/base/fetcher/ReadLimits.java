@@ -0,0 +1,119 @@
+package org.base.fetcher;
+
+import org.base.config.StatisticsProperties;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Limits on the bytes and rows read from the streamed sources of one request, URLs and uploads. They are checked
+// while the source is parsed, so an endless response is cut off instead of read to the end. A limit of 0 is no limit.
+// Local paths are not limited, uploads spooled to a file are.
+public class ReadLimits {
+    public static final ReadLimits UNLIMITED = new ReadLimits(0, 0, 0, 0, false);
+
+    // Rows are taken from the request limit in blocks, so sources read at the same time do not contend on every row.
+    // A block is at most 1/ROW_BLOCK of the rows left, close to the limit rows are taken one at a time, so the rows
+    // held by other sources never use up the limit before they are read.
+    private static final long ROW_BLOCK = 1024;
+
+    private final long maxSourceBytes;
+    private final long maxSourceRows;
+    // What is left of the request limits, null without a request limit
+    private final AtomicLong requestBytesLeft;
+    private final AtomicLong requestRowsLeft;
+    private final boolean failFast;
+
+    public ReadLimits(StatisticsProperties.Limits properties) {
+        this(properties.getMaxSourceBytes().toBytes(), properties.getMaxSourceRows(), properties.getMaxRequestBytes().toBytes(),
+                properties.getMaxRequestRows(), properties.getOnExceeded() == StatisticsProperties.Limits.OnExceeded.FAIL);
+    }
+
+    ReadLimits(long maxSourceBytes, long maxSourceRows, long maxRequestBytes, long maxRequestRows, boolean failFast) {
+        this.maxSourceBytes = maxSourceBytes;
+        this.maxSourceRows = maxSourceRows;
+        this.requestBytesLeft = maxRequestBytes > 0 ? new AtomicLong(maxRequestBytes) : null;
+        this.requestRowsLeft = maxRequestRows > 0 ? new AtomicLong(maxRequestRows) : null;
+        this.failFast = failFast;
+    }
+
+    // Every attempt to read a source gets its own limit, retried and hedged attempts count against the request too
+    public SourceLimit newSource() {
+        return new SourceLimit(this);
+    }
+
+    // A source over a limit is dropped instead of kept up to the limit
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    long getMaxSourceBytes() {
+        return maxSourceBytes;
+    }
+
+    long getMaxSourceRows() {
+        return maxSourceRows;
+    }
+
+    // Rows can only be limited while a source is parsed in order
+    boolean hasRowLimits() {
+        return maxSourceRows > 0 || requestRowsLeft != null;
+    }
+
+    long reserveRequestBytes(long bytes) {
+        return reserve(requestBytesLeft, bytes);
+    }
+
+    // A source whose size is known takes all its bytes at once, or none when they do not fit
+    boolean reserveAllRequestBytes(long bytes) {
+        if (requestBytesLeft == null) {
+            return true;
+        }
+        while (true) {
+            long current = requestBytesLeft.get();
+            if (current < bytes) {
+                return false;
+            }
+            if (requestBytesLeft.compareAndSet(current, current - bytes)) {
+                return true;
+            }
+        }
+    }
+
+    long reserveRequestRows() {
+        if (requestRowsLeft == null) {
+            return ROW_BLOCK;
+        }
+        while (true) {
+            long current = requestRowsLeft.get();
+            if (current <= 0) {
+                return 0;
+            }
+            long granted = Math.max(1, Math.min(ROW_BLOCK, current / ROW_BLOCK));
+            if (requestRowsLeft.compareAndSet(current, current - granted)) {
+                return granted;
+            }
+        }
+    }
+
+    void releaseRequestRows(long rows) {
+        if (requestRowsLeft != null && rows > 0) {
+            requestRowsLeft.addAndGet(rows);
+        }
+    }
+
+    // Takes up to the wanted amount from what is left and returns how much was taken
+    private static long reserve(AtomicLong left, long wanted) {
+        if (left == null) {
+            return wanted;
+        }
+        while (true) {
+            long current = left.get();
+            long granted = Math.min(current, wanted);
+            if (granted <= 0) {
+                return 0;
+            }
+            if (left.compareAndSet(current, current - granted)) {
+                return granted;
+            }
+        }
+    }
+}
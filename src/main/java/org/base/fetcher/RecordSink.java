@@ -0,0 +1,18 @@
+package org.base.fetcher;
+
+import java.nio.ByteBuffer;
+
+// Receives every valid record of a source while it is parsed. The names are the trimmed fields as raw bytes between
+// the given offsets, they are only valid during the call.
+public interface RecordSink {
+
+    void add(ByteBuffer bytes, int fnameStart, int fnameEnd, int lnameStart, int lnameEnd, int age);
+
+    // Called once the parser of the sink read its last record, the sink of a chunk is finished when the chunk is parsed
+    default void finish() {
+    }
+
+    // Called when the records of the source are not used, such as for an attempt that failed or lost against its hedge
+    default void release() {
+    }
+}
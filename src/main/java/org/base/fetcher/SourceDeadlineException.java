@@ -0,0 +1,17 @@
+package org.base.fetcher;
+
+import java.util.concurrent.TimeoutException;
+
+// A source was not read within its own deadline, or within what was left of the deadline of the whole request
+public class SourceDeadlineException extends TimeoutException {
+    private final boolean requestDeadline;
+
+    public SourceDeadlineException(String url, long timeoutMillis, boolean requestDeadline) {
+        super((requestDeadline ? "Request" : "Source") + " deadline of " + timeoutMillis + " ms exceeded for URL: " + url);
+        this.requestDeadline = requestDeadline;
+    }
+
+    public boolean isRequestDeadline() {
+        return requestDeadline;
+    }
+}
@@ -0,0 +1,88 @@
+package org.base.fetcher;
+
+// Limits of one source, used by the single parser of that source. Once a limit is reached the parser stops and the
+// name of the limit is reported as the error of the source.
+//
+// The rows a source took from the request and did not read go back when the source is released. That happens when
+// the parser finishes and when the attempt that reads the source completes in any way, failed and cancelled included.
+// A cancelled attempt can still be parsing on another thread, so taking rows and releasing them are synchronized,
+// and a released source takes no more rows.
+public class SourceLimit {
+    private final ReadLimits readLimits;
+    private long bytesRead;
+    private long rowsRead;
+    // Rows taken from the request limit and not read yet
+    private long reservedRows;
+    private boolean released;
+    private String exceeded;
+
+    SourceLimit(ReadLimits readLimits) {
+        this.readLimits = readLimits;
+    }
+
+    // Returns how many of the bytes may be read, fewer when a limit is reached
+    long acquireBytes(long bytes) {
+        long allowed = bytes;
+        long maxSourceBytes = readLimits.getMaxSourceBytes();
+        if (maxSourceBytes > 0 && bytesRead + allowed > maxSourceBytes) {
+            allowed = maxSourceBytes - bytesRead;
+            exceeded = "Source size limit exceeded";
+        }
+        long granted = readLimits.reserveRequestBytes(allowed);
+        if (granted < allowed) {
+            exceeded = "Request size limit exceeded";
+        }
+        bytesRead += granted;
+        return granted;
+    }
+
+    // Takes all the bytes of a source with a known size, returns false without taking any when they do not fit
+    boolean acquireAllBytes(long bytes) {
+        long maxSourceBytes = readLimits.getMaxSourceBytes();
+        if (maxSourceBytes > 0 && bytesRead + bytes > maxSourceBytes || !readLimits.reserveAllRequestBytes(bytes)) {
+            return false;
+        }
+        bytesRead += bytes;
+        return true;
+    }
+
+    // Returns false when the row may not be read
+    boolean acquireRow() {
+        long maxSourceRows = readLimits.getMaxSourceRows();
+        if (maxSourceRows > 0 && rowsRead >= maxSourceRows) {
+            exceeded = "Source row limit exceeded";
+            return false;
+        }
+        if (reservedRows == 0 && !reserveRows()) {
+            return false;
+        }
+        reservedRows--;
+        rowsRead++;
+        return true;
+    }
+
+    private synchronized boolean reserveRows() {
+        reservedRows = released ? 0 : readLimits.reserveRequestRows();
+        if (reservedRows == 0) {
+            exceeded = "Request row limit exceeded";
+            return false;
+        }
+        return true;
+    }
+
+    // Gives the unused rows back to the request once the source is read, releasing it again does nothing
+    synchronized void release() {
+        released = true;
+        readLimits.releaseRequestRows(reservedRows);
+        reservedRows = 0;
+    }
+
+    public boolean isFailFast() {
+        return readLimits.isFailFast();
+    }
+
+    // Name of the limit that stopped the source, null if the source was read to the end
+    public String getExceeded() {
+        return exceeded;
+    }
+}
@@ -0,0 +1,19 @@
+package org.base.fetcher;
+
+import org.base.aggregator.RecordAggregate;
+import org.base.dto.SourceTiming;
+
+// Called once for every source of a request as soon as it was read, in completion order and on the
+// thread that read it
+@FunctionalInterface
+public interface SourceListener {
+    SourceListener NONE = (pathOrUrl, sourceData) -> {
+    };
+
+    void sourceCompleted(String pathOrUrl, RecordAggregate sourceData);
+
+    // Called with the fetch and parse times of a source before it is completed, sources that failed to be read
+    // only have a fetch time
+    default void sourceTimed(SourceTiming sourceTiming) {
+    }
+}
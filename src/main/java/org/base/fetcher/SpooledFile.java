@@ -0,0 +1,49 @@
+package org.base.fetcher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// An uploaded CSV file copied to a temporary file, so it can still be read after the upload request ended
+public class SpooledFile {
+    private static final Logger logger = LoggerFactory.getLogger(SpooledFile.class);
+
+    private final String name;
+    private final Path path;
+
+    private SpooledFile(String name, Path path) {
+        this.name = name;
+        this.path = path;
+    }
+
+    public static SpooledFile spool(MultipartFile file) throws IOException {
+        Path path = Files.createTempFile("summary-upload-", ".csv");
+        try {
+            file.transferTo(path.toFile());
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return new SpooledFile(DataFetcher.uploadName(file), path);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public void delete() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete spooled upload {}", path, e);
+        }
+    }
+}
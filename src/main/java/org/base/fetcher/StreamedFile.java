@@ -0,0 +1,23 @@
+package org.base.fetcher;
+
+import java.io.InputStream;
+
+// An uploaded CSV file read straight from the request body while it arrives. It can be read only once, and only
+// before the next file of the same request is asked for.
+public class StreamedFile {
+    private final String name;
+    private final InputStream inputStream;
+
+    public StreamedFile(String name, InputStream inputStream) {
+        this.name = name;
+        this.inputStream = inputStream;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+}
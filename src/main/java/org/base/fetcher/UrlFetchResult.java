@@ -0,0 +1,59 @@
+package org.base.fetcher;
+
+import org.base.aggregator.RecordAggregate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// What one attempt to fetch a URL parsed. Every attempt parses into its own aggregate, so a failed or
+// losing attempt never leaks records into the result.
+public class UrlFetchResult {
+    private final RecordAggregate allData = new RecordAggregate();
+    private final List<String> recordLineErrors = new ArrayList<>();
+    private final CsvRecordParser parser;
+    private final RecordSink recordSink;
+    private FetchResponse response;
+    volatile long startTime;
+
+    // The record sink is null unless the records are also kept elsewhere
+    UrlFetchResult(String url, SourceLimit sourceLimit, RecordSink recordSink) {
+        this.parser = new CsvRecordParser(url, allData, recordLineErrors, sourceLimit);
+        this.recordSink = recordSink;
+        parser.setRecordSink(recordSink);
+    }
+
+    public RecordAggregate getAllData() {
+        return allData;
+    }
+
+    public List<String> getRecordLineErrors() {
+        return recordLineErrors;
+    }
+
+    public boolean isValidCSV() {
+        return parser.isValidCSV();
+    }
+
+    public RecordSink getRecordSink() {
+        return recordSink;
+    }
+
+    // The records of an attempt that is not used, or of a source that is not snapshotted, are not kept
+    public void releaseRecordSink() {
+        if (recordSink != null) {
+            recordSink.release();
+        }
+    }
+
+    public FetchResponse getResponse() {
+        return response;
+    }
+
+    CsvRecordParser getParser() {
+        return parser;
+    }
+
+    void setResponse(FetchResponse response) {
+        this.response = response;
+    }
+}
@@ -0,0 +1,12 @@
+package org.base.fetcher;
+
+import java.util.concurrent.CompletableFuture;
+
+// Fetch layer for CSV files stored behind a URL. The response body is streamed into the parser as it arrives,
+// the future completes once the whole body was parsed or fails if the URL could not be read.
+public interface UrlFetcher {
+
+    // When a previous response is given, the request is sent with If-None-Match / If-Modified-Since
+    // and the server may answer that the URL was not modified
+    CompletableFuture<FetchResponse> fetch(String url, FetchResponse previousResponse, CsvRecordParser parser);
+}
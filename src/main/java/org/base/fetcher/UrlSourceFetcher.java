@@ -0,0 +1,298 @@
+package org.base.fetcher;
+
+import io.netty.channel.ConnectTimeoutException;
+import org.base.config.StatisticsProperties;
+import org.base.exectutor.ExecutorServiceManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+// Fetches a URL source within a deadline. Attempts that fail with a network error, a server error or
+// 429 Too Many Requests are retried after a jittered exponential backoff, and with hedging enabled a second
+// request is sent for an attempt that is slower than most recent fetches. The first successful attempt wins
+// and the others are cancelled.
+@Component
+public class UrlSourceFetcher {
+    private final UrlFetcher urlFetcher;
+    private final HostScheduler hostScheduler;
+    private final ExecutorServiceManager executorServiceManager;
+    private final StatisticsProperties.Fetch properties;
+    private final LatencyTracker latencyTracker = new LatencyTracker();
+
+    @Autowired
+    public UrlSourceFetcher(UrlFetcher urlFetcher, HostScheduler hostScheduler, ExecutorServiceManager executorServiceManager,
+                            StatisticsProperties statisticsProperties) {
+        this.urlFetcher = urlFetcher;
+        this.hostScheduler = hostScheduler;
+        this.executorServiceManager = executorServiceManager;
+        this.properties = statisticsProperties.getFetch();
+    }
+
+    public CompletableFuture<UrlFetchResult> fetch(String url, FetchResponse previousResponse, long requestDeadlineMillis) {
+        return fetch(url, previousResponse, requestDeadlineMillis, ReadLimits.UNLIMITED);
+    }
+
+    public CompletableFuture<UrlFetchResult> fetch(String url, FetchResponse previousResponse, long requestDeadlineMillis, ReadLimits readLimits) {
+        return fetch(url, previousResponse, requestDeadlineMillis, readLimits, null);
+    }
+
+    public CompletableFuture<UrlFetchResult> fetch(String url, FetchResponse previousResponse, long requestDeadlineMillis, ReadLimits readLimits,
+                                                   Supplier<? extends RecordSink> recordSinks) {
+        return fetch(url, previousResponse, requestDeadlineMillis, readLimits, recordSinks, new ArrayList<>());
+    }
+
+    // The source deadline is shortened to what is left until the deadline of the request. With record sinks every
+    // attempt passes the records it parses to a sink of its own. When the fetch fails because its last attempt
+    // broke off, the line errors that attempt parsed are added to failedLineErrors before the fetch completes.
+    public CompletableFuture<UrlFetchResult> fetch(String url, FetchResponse previousResponse, long requestDeadlineMillis, ReadLimits readLimits,
+                                                   Supplier<? extends RecordSink> recordSinks, List<String> failedLineErrors) {
+        long sourceTimeoutMillis = properties.getSourceTimeout().toMillis();
+        long requestTimeLeftMillis = requestDeadlineMillis - System.currentTimeMillis();
+        boolean requestDeadline = requestTimeLeftMillis < sourceTimeoutMillis;
+        long timeoutMillis = Math.max(0, Math.min(sourceTimeoutMillis, requestTimeLeftMillis));
+
+        SourceFetch fetch = new SourceFetch(url, previousResponse, readLimits, recordSinks, failedLineErrors);
+        ScheduledFuture<?> deadline = executorServiceManager.schedule(
+                () -> fetch.result.completeExceptionally(new SourceDeadlineException(url, timeoutMillis, requestDeadline)), timeoutMillis);
+        fetch.result.whenComplete((result, error) -> {
+            deadline.cancel(false);
+            fetch.cancelAttempts();
+        });
+
+        // The first attempt is started on the calling thread, so a full fetch pool rejects the request
+        try {
+            startAttempt(fetch, 0);
+        } catch (RuntimeException e) {
+            deadline.cancel(false);
+            throw e;
+        }
+        return fetch.result;
+    }
+
+    public static boolean isTimeout(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException || cause instanceof TimeoutException
+                    || cause instanceof io.netty.handler.timeout.TimeoutException || cause instanceof ConnectTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void startAttempt(SourceFetch fetch, int retry) {
+        CompletableFuture<UrlFetchResult> attempt = properties.isHedge() ? hedgedAttempt(fetch) : attempt(fetch);
+
+        attempt.whenComplete((result, error) -> {
+            if (error == null) {
+                // An attempt that finished after the source failed or ended its deadline is not used
+                if (!fetch.result.complete(result)) {
+                    result.releaseRecordSink();
+                }
+                return;
+            }
+            Throwable cause = unwrap(error);
+            if (retry < properties.getMaxRetries() && isRetryable(cause) && !fetch.result.isDone()) {
+                executorServiceManager.schedule(() -> startRetry(fetch, retry + 1), backoffMillis(retry));
+            } else {
+                fetch.fail(cause);
+            }
+        });
+    }
+
+    // Retries run on the timer thread, a rejected retry fails the source instead of being thrown there
+    private void startRetry(SourceFetch fetch, int retry) {
+        if (fetch.result.isDone()) {
+            return;
+        }
+        try {
+            startAttempt(fetch, retry);
+        } catch (RuntimeException e) {
+            fetch.result.completeExceptionally(e);
+        }
+    }
+
+    private CompletableFuture<UrlFetchResult> attempt(SourceFetch fetch) {
+        UrlFetchResult result = new UrlFetchResult(fetch.url, fetch.readLimits.newSource(), fetch.recordSinks == null ? null : fetch.recordSinks.get());
+
+        // The request waits for a free slot of its host, the latency is measured from there
+        CompletableFuture<FetchResponse> response = hostScheduler.submit(fetch.url, () -> {
+            result.startTime = System.nanoTime();
+            return urlFetcher.fetch(fetch.url, fetch.previousResponse, result.getParser());
+        });
+        fetch.addAttempt(response);
+        return response.whenComplete((fetchResponse, error) -> {
+            // A failed or cancelled attempt never finishes its parser, the rows it took from the request go back here
+            result.getParser().getSourceLimit().release();
+            if (error != null) {
+                result.releaseRecordSink();
+            }
+            // A cancelled attempt can still be parsing, its line errors are not read
+            if (error != null && !(unwrap(error) instanceof CancellationException)) {
+                fetch.attemptFailed(result);
+            }
+        }).thenApply(fetchResponse -> {
+            latencyTracker.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - result.startTime));
+            result.setResponse(fetchResponse);
+            return result;
+        });
+    }
+
+    // Sends the same request a second time if the first one did not finish within the hedge delay.
+    // The hedged attempt fails only when both requests failed.
+    private CompletableFuture<UrlFetchResult> hedgedAttempt(SourceFetch fetch) {
+        CompletableFuture<UrlFetchResult> first = new CompletableFuture<>();
+        HedgedRequests requests = new HedgedRequests(first);
+
+        requests.track(attempt(fetch));
+        ScheduledFuture<?> hedge = executorServiceManager.schedule(() -> {
+            if (requests.startHedge()) {
+                try {
+                    requests.track(attempt(fetch));
+                } catch (RuntimeException e) {
+                    // The hedge could not be started, for example because the fetch pool is full. It was never
+                    // tracked, so the first request goes on alone as if no hedge had been sent.
+                }
+            }
+        }, latencyTracker.percentile(properties.getHedgePercentile(), properties.getHedgeDelay().toMillis()));
+        first.whenComplete((result, error) -> hedge.cancel(false));
+        return first;
+    }
+
+    // Full jitter would allow a retry right away, half of the backoff is always waited
+    private long backoffMillis(int retry) {
+        long backoff = Math.min(properties.getMaxRetryBackoff().toMillis(), properties.getRetryBackoff().toMillis() << Math.min(retry, 30));
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof HttpStatusException) {
+            return ((HttpStatusException) error).isRetryable();
+        }
+        return !(error instanceof SourceDeadlineException || error instanceof CircuitOpenException
+                || error instanceof CancellationException || error instanceof RejectedExecutionException);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static class SourceFetch {
+        private final String url;
+        private final FetchResponse previousResponse;
+        private final ReadLimits readLimits;
+        private final Supplier<? extends RecordSink> recordSinks;
+        private final CompletableFuture<UrlFetchResult> result = new CompletableFuture<>();
+        private final List<CompletableFuture<FetchResponse>> attempts = new ArrayList<>();
+        private final List<String> failedLineErrors;
+        // The attempt that failed last, its parser stopped when the attempt failed
+        private UrlFetchResult lastFailed;
+
+        private SourceFetch(String url, FetchResponse previousResponse, ReadLimits readLimits, Supplier<? extends RecordSink> recordSinks,
+                            List<String> failedLineErrors) {
+            this.url = url;
+            this.previousResponse = previousResponse;
+            this.readLimits = readLimits;
+            this.recordSinks = recordSinks;
+            this.failedLineErrors = failedLineErrors;
+        }
+
+        private synchronized void attemptFailed(UrlFetchResult attempt) {
+            lastFailed = attempt;
+        }
+
+        // The line errors are added before the result completes, so the caller sees them when it handles the error
+        private void fail(Throwable error) {
+            synchronized (this) {
+                if (lastFailed != null && !result.isDone()) {
+                    failedLineErrors.addAll(lastFailed.getRecordLineErrors());
+                }
+            }
+            result.completeExceptionally(error);
+        }
+
+        private synchronized void addAttempt(CompletableFuture<FetchResponse> attempt) {
+            attempts.add(attempt);
+        }
+
+        // Cancelling the future of the non-blocking client closes its connection
+        private synchronized void cancelAttempts() {
+            attempts.forEach(attempt -> attempt.cancel(true));
+        }
+    }
+
+    private static class HedgedRequests {
+        private final CompletableFuture<UrlFetchResult> first;
+        private int running;
+        private Throwable lastError;
+
+        private HedgedRequests(CompletableFuture<UrlFetchResult> first) {
+            this.first = first;
+        }
+
+        private synchronized void track(CompletableFuture<UrlFetchResult> request) {
+            running++;
+            request.whenComplete((result, error) -> {
+                if (error == null) {
+                    // The request that finished second is not used
+                    if (!first.complete(result)) {
+                        result.releaseRecordSink();
+                    }
+                } else {
+                    failed(error);
+                }
+            });
+        }
+
+        // The hedge is only sent while the first request is still running
+        private synchronized boolean startHedge() {
+            return !first.isDone() && running > 0;
+        }
+
+        private synchronized void failed(Throwable error) {
+            lastError = error;
+            running--;
+            if (running <= 0) {
+                first.completeExceptionally(lastError);
+            }
+        }
+    }
+
+    // Keeps the latency of the last fetches, the percentile is recomputed once every few samples
+    private static class LatencyTracker {
+        private static final int SAMPLES = 1024;
+        private static final int MIN_SAMPLES = 32;
+        private static final int RECOMPUTE_EVERY = 64;
+
+        private final long[] latencies = new long[SAMPLES];
+        private long recorded;
+        private double computedFor = -1;
+        private long percentile;
+
+        private synchronized void record(long latencyMillis) {
+            latencies[(int) (recorded % SAMPLES)] = latencyMillis;
+            recorded++;
+            if (recorded % RECOMPUTE_EVERY == 0) {
+                computedFor = -1;
+            }
+        }
+
+        private synchronized long percentile(double percentileRank, long defaultMillis) {
+            if (recorded < MIN_SAMPLES) {
+                return defaultMillis;
+            }
+            if (computedFor != percentileRank) {
+                long[] sorted = Arrays.copyOf(latencies, (int) Math.min(recorded, SAMPLES));
+                Arrays.sort(sorted);
+                percentile = sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentileRank * sorted.length) - 1)];
+                computedFor = percentileRank;
+            }
+            return percentile;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.base.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+// Metrics of the fetch, parse and aggregate steps of a summary, scraped as Prometheus text from /actuator/prometheus.
+// The source tag is "url" for URLs, "file" for local and spooled files, "upload" for uploads parsed from memory and
+// "snapshot" for local files read from their snapshot.
+@Component
+public class PipelineMetrics {
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public PipelineMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Time from sending the first request for a URL until its body was read, retries and backoff included.
+    // The outcome is "success", "not_modified" or "error".
+    public void urlFetched(long nanos, String outcome) {
+        Timer.builder("summary.source.fetch")
+                .description("Time to fetch a URL source")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Time spent in the parser for one source, for a URL only the part that did not wait for the network
+    public void sourceParsed(String source, long nanos, long bytes, long rows, long lineErrors) {
+        Timer.builder("summary.source.parse")
+                .description("Time spent parsing a source")
+                .tag("source", source)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        counter("summary.bytes.read", "Bytes read from sources", source).increment(bytes);
+        counter("summary.rows", "Records parsed from sources", source).increment(rows);
+        counter("summary.line.errors", "Lines that could not be parsed", source).increment(lineErrors);
+    }
+
+    // Time from receiving a summary request until its statistics were calculated, and the records it read. The request
+    // is "paths", "upload", "partial", "distributed" or "dataset", the records of a dataset are those of the append.
+    public void requestCompleted(String request, long nanos, long records) {
+        Timer.builder("summary.request")
+                .description("Time to calculate a summary")
+                .tag("request", request)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("summary.request.records")
+                .description("Records read by a summary request")
+                .tag("request", request)
+                .register(meterRegistry)
+                .record(records);
+    }
+
+    private Counter counter(String name, String description, String source) {
+        return Counter.builder(name)
+                .description(description)
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,79 @@
+package org.base.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.base.cache.UrlSourceCache;
+import org.base.dto.CacheStats;
+import org.base.dto.ExecutorStats;
+import org.base.exectutor.ExecutorServiceManager;
+import org.base.fetcher.HostScheduler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+// Exposes the stats of /rest/executors and /rest/cache as metrics, they are read when the metrics are scraped
+@Component
+public class ResourceMetrics implements MeterBinder {
+    private final ExecutorServiceManager executorServiceManager;
+    private final HostScheduler hostScheduler;
+    private final UrlSourceCache urlSourceCache;
+
+    @Autowired
+    public ResourceMetrics(ExecutorServiceManager executorServiceManager, HostScheduler hostScheduler, UrlSourceCache urlSourceCache) {
+        this.executorServiceManager = executorServiceManager;
+        this.hostScheduler = hostScheduler;
+        this.urlSourceCache = urlSourceCache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (ExecutorStats stats : executorStats()) {
+            String name = stats.getName();
+            executorGauge(registry, "summary.executor.active", "Tasks running", name, ExecutorStats::getActiveThreads);
+            executorGauge(registry, "summary.executor.queued", "Tasks waiting to run", name, ExecutorStats::getQueuedTasks);
+            executorGauge(registry, "summary.executor.pool.size", "Threads or slots in use", name, ExecutorStats::getPoolSize);
+            FunctionCounter.builder("summary.executor.completed", this, metrics -> metrics.executorStat(name, ExecutorStats::getCompletedTasks))
+                    .description("Tasks completed").tag("executor", name).register(registry);
+            FunctionCounter.builder("summary.executor.rejected", this, metrics -> metrics.executorStat(name, ExecutorStats::getRejectedTasks))
+                    .description("Tasks rejected").tag("executor", name).register(registry);
+        }
+
+        FunctionCounter.builder("summary.cache.hits", urlSourceCache, cache -> cache.getStats().getHits())
+                .description("URL cache hits").register(registry);
+        FunctionCounter.builder("summary.cache.misses", urlSourceCache, cache -> cache.getStats().getMisses())
+                .description("URL cache misses").register(registry);
+        FunctionCounter.builder("summary.cache.evictions", urlSourceCache, cache -> cache.getStats().getEvictions())
+                .description("URL cache evictions").register(registry);
+        Gauge.builder("summary.cache.hit.rate", urlSourceCache, cache -> cache.getStats().getHitRate())
+                .description("Share of URL lookups answered by the cache").register(registry);
+        Gauge.builder("summary.cache.entries", urlSourceCache, cache -> cache.getStats().getEntries())
+                .description("URLs in the cache").register(registry);
+    }
+
+    private void executorGauge(MeterRegistry registry, String name, String description, String executor, ToDoubleFunction<ExecutorStats> stat) {
+        Gauge.builder(name, this, metrics -> metrics.executorStat(executor, stat))
+                .description(description)
+                .tag("executor", executor)
+                .register(registry);
+    }
+
+    private double executorStat(String executor, ToDoubleFunction<ExecutorStats> stat) {
+        for (ExecutorStats stats : executorStats()) {
+            if (stats.getName().equals(executor)) {
+                return stat.applyAsDouble(stats);
+            }
+        }
+        return Double.NaN;
+    }
+
+    private List<ExecutorStats> executorStats() {
+        List<ExecutorStats> stats = new ArrayList<>(executorServiceManager.getStats());
+        stats.add(hostScheduler.getStats());
+        return stats;
+    }
+}
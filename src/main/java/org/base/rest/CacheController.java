@@ -0,0 +1,30 @@
+package org.base.rest;
+
+import org.base.cache.UrlSourceCache;
+import org.base.dto.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.springframework.http.HttpStatus.OK;
+
+@RestController
+@RequestMapping("/rest")
+public class CacheController {
+
+    private final UrlSourceCache urlSourceCache;
+
+    @Autowired
+    public CacheController(UrlSourceCache urlSourceCache) {
+        this.urlSourceCache = urlSourceCache;
+    }
+
+    @GetMapping(path = "/cache")
+    @ResponseStatus(OK)
+    public ResponseEntity<CacheStats> getCacheStats() {
+        return ResponseEntity.ok(urlSourceCache.getStats());
+    }
+}
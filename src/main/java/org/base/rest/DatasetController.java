@@ -0,0 +1,82 @@
+package org.base.rest;
+
+import org.base.config.StatisticsProperties;
+import org.base.dto.SummaryData;
+import org.base.fetcher.StreamedFile;
+import org.base.service.DatasetService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.base.util.ValidationUtil.readPercentiles;
+import static org.springframework.http.HttpStatus.*;
+
+@RestController
+@RequestMapping("/rest")
+public class DatasetController {
+
+    private final DatasetService datasetService;
+    private final String defaultPercentiles;
+
+    @Autowired
+    public DatasetController(DatasetService datasetService, StatisticsProperties statisticsProperties) {
+        this.datasetService = datasetService;
+        this.defaultPercentiles = statisticsProperties.getSummary().getPercentiles();
+    }
+
+    // Appends the rows of each "csvfiles" part to the dataset, the dataset is created by its first append
+    @PostMapping(path = "/datasets/{name}/rows", consumes = {MediaType.MULTIPART_FORM_DATA_VALUE})
+    @ResponseStatus(OK)
+    public ResponseEntity<SummaryData> appendRowsCSV(
+            @PathVariable String name,
+            HttpServletRequest request) {
+
+        return datasetService.appendCSVStreams(name, new StreamedUploads(request, "csvfiles"));
+    }
+
+    // Appends the rows of a CSV file sent as the raw request body, the file name is used in the errors
+    @PostMapping(path = "/datasets/{name}/rows", consumes = {"text/csv"})
+    @ResponseStatus(OK)
+    public ResponseEntity<SummaryData> appendRowsCSVBody(
+            @PathVariable String name,
+            HttpServletRequest request,
+            @RequestParam(defaultValue = "upload.csv") String file) throws IOException {
+
+        StreamedFile body = new StreamedFile(file, request.getInputStream());
+        return datasetService.appendCSVStreams(name, Collections.singletonList(body).iterator());
+    }
+
+    // Appends the rows of paths or URLs, they are read once and not followed afterwards
+    @PostMapping(path = "/datasets/{name}/sources", consumes = {MediaType.APPLICATION_JSON_VALUE})
+    @ResponseStatus(OK)
+    public ResponseEntity<SummaryData> appendSources(
+            @PathVariable String name,
+            @RequestBody List<String> pathsOrURLs) {
+
+        return datasetService.appendPathsOrUrls(name, pathsOrURLs);
+    }
+
+    @GetMapping(path = "/datasets/{name}/summary")
+    @ResponseStatus(OK)
+    public ResponseEntity<SummaryData> getDatasetSummary(
+            @PathVariable String name,
+            @RequestParam(defaultValue = "false") boolean extended,
+            @RequestParam(required = false) String percentiles) {
+
+        return datasetService.getSummary(name, extended || percentiles != null
+                ? readPercentiles(percentiles == null ? defaultPercentiles : percentiles) : null);
+    }
+
+    @DeleteMapping(path = "/datasets/{name}")
+    public ResponseEntity<Void> deleteDataset(
+            @PathVariable String name) {
+
+        return ResponseEntity.status(datasetService.delete(name) ? NO_CONTENT : NOT_FOUND).build();
+    }
+}
@@ -0,0 +1,39 @@
+package org.base.rest;
+
+import org.base.dto.ExecutorStats;
+import org.base.exectutor.ExecutorServiceManager;
+import org.base.fetcher.HostScheduler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.http.HttpStatus.OK;
+
+@RestController
+@RequestMapping("/rest")
+public class ExecutorController {
+
+    private final ExecutorServiceManager executorServiceManager;
+    private final HostScheduler hostScheduler;
+
+    @Autowired
+    public ExecutorController(ExecutorServiceManager executorServiceManager, HostScheduler hostScheduler) {
+        this.executorServiceManager = executorServiceManager;
+        this.hostScheduler = hostScheduler;
+    }
+
+    @GetMapping(path = "/executors")
+    @ResponseStatus(OK)
+    public ResponseEntity<List<ExecutorStats>> getExecutorStats() {
+        // Requests waiting for a free slot of their host are listed as "fetch-hosts"
+        List<ExecutorStats> stats = new ArrayList<>(executorServiceManager.getStats());
+        stats.add(hostScheduler.getStats());
+        return ResponseEntity.ok(stats);
+    }
+}
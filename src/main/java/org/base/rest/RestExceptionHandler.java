@@ -0,0 +1,46 @@
+package org.base.rest;
+
+import org.base.dto.SummaryData;
+import org.base.util.InvalidRequestException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import java.io.UncheckedIOException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.springframework.http.HttpStatus.*;
+
+// Errors shared by the summary and dataset endpoints, answered with an empty summary like the other errors
+@ControllerAdvice
+public class RestExceptionHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RestExceptionHandler.class);
+
+    // A streamed upload that is not a valid multipart request or broke off while it was read
+    @ExceptionHandler(UncheckedIOException.class)
+    public ResponseEntity<SummaryData> handleBrokenUpload(UncheckedIOException e) {
+        logger.warn("Streamed upload failed : {}", e.getMessage());
+        return ResponseEntity.status(BAD_REQUEST)
+                .body(new SummaryData());
+    }
+
+    // Percentiles that are not numbers between 0 and 100, or an unknown group key
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<SummaryData> handleInvalidRequest(InvalidRequestException e) {
+        logger.debug("Invalid request : {}", e.getMessage());
+        return ResponseEntity.status(BAD_REQUEST)
+                .body(new SummaryData());
+    }
+
+    // The shared fetch pool or the job queue is full, the client should retry later
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<SummaryData> handleRejectedExecution() {
+        return ResponseEntity.status(SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new SummaryData());
+    }
+}
@@ -1,41 +1,223 @@
 package org.base.rest;
 
+import org.base.aggregator.GroupBy;
+import org.base.config.StatisticsProperties;
+import org.base.dto.JobStatus;
+import org.base.dto.PartialAggregate;
 import org.base.dto.SummaryData;
+import org.base.fetcher.StreamedFile;
 import org.base.service.StatisticsService;
+import org.base.service.SummaryJob;
+import org.base.service.SummaryJobService;
+import org.base.service.SummaryOptions;
+import org.base.service.SummaryStreamService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
-import static org.springframework.http.HttpStatus.OK;
+import static org.base.util.ValidationUtil.readPercentiles;
+import static org.base.util.ValidationUtil.readURLNames;
+import static org.springframework.http.HttpStatus.*;
 
 @RestController
 @RequestMapping("/rest")
 public class StatisticsController {
 
     private final StatisticsService statisticsService;
+    private final SummaryJobService summaryJobService;
+    private final SummaryStreamService summaryStreamService;
+    private final long maxWaitMillis;
+    private final String defaultPercentiles;
+    private final int defaultTopGroups;
+    private final int maxTrackedGroups;
 
     @Autowired
-    public StatisticsController(StatisticsService statisticsService) {
+    public StatisticsController(StatisticsService statisticsService, SummaryJobService summaryJobService, SummaryStreamService summaryStreamService,
+                                StatisticsProperties statisticsProperties) {
         this.statisticsService = statisticsService;
+        this.summaryJobService = summaryJobService;
+        this.summaryStreamService = summaryStreamService;
+        this.maxWaitMillis = statisticsProperties.getJobs().getMaxWait().toMillis();
+        this.defaultPercentiles = statisticsProperties.getSummary().getPercentiles();
+        this.defaultTopGroups = statisticsProperties.getGroups().getTop();
+        this.maxTrackedGroups = statisticsProperties.getGroups().getMaxTracked();
     }
 
+    // With peers configured the URLs are split between the instances, except for a summary with timing or groupBy:
+    // the partial aggregates of the peers can not carry them, so that summary is read on this instance.
     @GetMapping(path = "/summary", consumes = {MediaType.MULTIPART_FORM_DATA_VALUE})
     @ResponseStatus(OK)
     public ResponseEntity<SummaryData> computeStatistics(
-            @RequestPart MultipartFile multipartFile) {
+            @RequestPart MultipartFile multipartFile,
+            @RequestParam(defaultValue = "false") boolean timing,
+            @RequestParam(defaultValue = "false") boolean extended,
+            @RequestParam(required = false) String percentiles,
+            @RequestParam(required = false) String groupBy,
+            @RequestParam(required = false) Integer topGroups) {
 
-        return statisticsService.processDataFromPathsOrURLs(multipartFile);
+        return statisticsService.processDataFromPathsOrURLs(multipartFile, summaryOptions(timing, extended, percentiles, groupBy, topGroups));
     }
 
     @PostMapping(path = "/summary/csv")
     @ResponseStatus(OK)
     public ResponseEntity<SummaryData> computeStatisticsCSV(
-            @RequestPart("csvfiles") List<MultipartFile> CSVs) {
+            @RequestPart("csvfiles") List<MultipartFile> CSVs,
+            @RequestParam(defaultValue = "false") boolean timing,
+            @RequestParam(defaultValue = "false") boolean extended,
+            @RequestParam(required = false) String percentiles,
+            @RequestParam(required = false) String groupBy,
+            @RequestParam(required = false) Integer topGroups) {
+
+        return statisticsService.processDataFromCSVFiles(CSVs, summaryOptions(timing, extended, percentiles, groupBy, topGroups));
+    }
+
+    // Same summary as /summary/csv, but each "csvfiles" part is parsed while it arrives instead of being buffered first.
+    // Reading a request parameter would make the servlet container parse the whole multipart body, so timing and the
+    // extended statistics are taken from the query string.
+    @PostMapping(path = "/summary/csv/stream", consumes = {MediaType.MULTIPART_FORM_DATA_VALUE})
+    @ResponseStatus(OK)
+    public ResponseEntity<SummaryData> computeStatisticsCSVStream(HttpServletRequest request) {
+        MultiValueMap<String, String> queryParams = ServletUriComponentsBuilder.fromRequest(request).build().getQueryParams();
+        boolean timing = Boolean.parseBoolean(queryParams.getFirst("timing"));
+        boolean extended = Boolean.parseBoolean(queryParams.getFirst("extended"));
+
+        return statisticsService.processDataFromCSVStreams(new StreamedUploads(request, "csvfiles"),
+                summaryOptions(timing, extended, queryParams.getFirst("percentiles"), null, null));
+    }
+
+    // A single CSV file sent as the raw request body, the name is used in the errors and must end with .csv
+    @PostMapping(path = "/summary/csv/stream", consumes = {"text/csv"})
+    @ResponseStatus(OK)
+    public ResponseEntity<SummaryData> computeStatisticsCSVBody(
+            HttpServletRequest request,
+            @RequestParam(defaultValue = "upload.csv") String name,
+            @RequestParam(defaultValue = "false") boolean timing,
+            @RequestParam(defaultValue = "false") boolean extended,
+            @RequestParam(required = false) String percentiles) throws IOException {
+
+        StreamedFile body = new StreamedFile(name, request.getInputStream());
+        return statisticsService.processDataFromCSVStreams(Collections.singletonList(body).iterator(),
+                summaryOptions(timing, extended, percentiles, null, null));
+    }
+
+    // Partial aggregate of a shard of paths or URLs, requested by a coordinating instance
+    @PostMapping(path = "/summary/partial", consumes = {MediaType.APPLICATION_JSON_VALUE})
+    @ResponseStatus(OK)
+    public ResponseEntity<PartialAggregate> computePartialAggregate(
+            @RequestBody List<String> pathsOrURLs) {
+
+        if (pathsOrURLs.isEmpty()) {
+            return ResponseEntity.status(BAD_REQUEST).body(new PartialAggregate());
+        }
+        return ResponseEntity.ok(statisticsService.calculatePartialAggregate(pathsOrURLs));
+    }
+
+    // Streams the running statistics as Server-Sent Events while the paths or URLs are read, then the summary.
+    // A full job queue is answered without a body, an event stream can not carry the JSON error of the other endpoints.
+    @GetMapping(path = "/summary/stream", consumes = {MediaType.MULTIPART_FORM_DATA_VALUE}, produces = {MediaType.TEXT_EVENT_STREAM_VALUE})
+    public ResponseEntity<SseEmitter> streamStatistics(
+            @RequestPart MultipartFile multipartFile) {
+
+        List<String> pathsOrURLs = readURLNames(multipartFile);
+        if (pathsOrURLs.isEmpty()) {
+            return ResponseEntity.status(BAD_REQUEST).build();
+        }
+        try {
+            return ResponseEntity.ok(summaryStreamService.streamPathsOrUrls(pathsOrURLs));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        }
+    }
+
+    // Starts a background summary of the paths or URLs and returns the job to poll at once
+    @PostMapping(path = "/summary/jobs", consumes = {MediaType.MULTIPART_FORM_DATA_VALUE})
+    public ResponseEntity<JobStatus> submitStatisticsJob(
+            @RequestPart MultipartFile multipartFile) {
+
+        List<String> pathsOrURLs = readURLNames(multipartFile);
+        if (pathsOrURLs.isEmpty()) {
+            return ResponseEntity.status(BAD_REQUEST)
+                    .body(new JobStatus());
+        }
+        return accepted(summaryJobService.submitPathsOrUrls(pathsOrURLs));
+    }
+
+    @PostMapping(path = "/summary/csv/jobs")
+    public ResponseEntity<JobStatus> submitStatisticsCSVJob(
+            @RequestPart("csvfiles") List<MultipartFile> CSVs) throws IOException {
+
+        if (CSVs.isEmpty()) {
+            return ResponseEntity.status(BAD_REQUEST)
+                    .body(new JobStatus());
+        }
+        return accepted(summaryJobService.submitCSVFiles(CSVs));
+    }
+
+    // Returns the job state, the summary once it is done. With waitMillis the response is held until the job
+    // finishes or the wait ends, without keeping a request thread busy.
+    @GetMapping(path = "/summary/jobs/{id}")
+    public DeferredResult<ResponseEntity<JobStatus>> getStatisticsJob(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "0") long waitMillis) {
+
+        SummaryJob job = summaryJobService.getJob(id);
+        DeferredResult<ResponseEntity<JobStatus>> deferredResult = new DeferredResult<>(Math.max(1, Math.min(waitMillis, maxWaitMillis)));
+        if (job == null) {
+            deferredResult.setResult(ResponseEntity.status(NOT_FOUND).body(new JobStatus()));
+            return deferredResult;
+        }
+        if (waitMillis <= 0 || job.isFinished()) {
+            deferredResult.setResult(ResponseEntity.ok(job.toStatus()));
+            return deferredResult;
+        }
+        deferredResult.onTimeout(() -> deferredResult.setResult(ResponseEntity.ok(job.toStatus())));
+        job.getResult().whenComplete((summary, error) -> deferredResult.setResult(ResponseEntity.ok(job.toStatus())));
+        return deferredResult;
+    }
+
+    // The options of a summary request, the parameters are checked here once for all summary endpoints
+    private SummaryOptions summaryOptions(boolean timing, boolean extended, String percentiles, String groupBy, Integer topGroups) {
+        return SummaryOptions.NONE
+                .withTiming(timing)
+                .withPercentiles(extendedPercentiles(extended, percentiles))
+                .withGroupBy(groupBy(groupBy, topGroups));
+    }
+
+    // Percentiles of the extended statistics, asked for with extended=true or by naming them. Null without them.
+    private double[] extendedPercentiles(boolean extended, String percentiles) {
+        if (!extended && percentiles == null) {
+            return null;
+        }
+        return readPercentiles(percentiles == null ? defaultPercentiles : percentiles);
+    }
+
+    // Groups by fname, lname or source, null without groupBy
+    private GroupBy groupBy(String key, Integer topGroups) {
+        if (key == null) {
+            return null;
+        }
+        return new GroupBy(GroupBy.Key.parse(key), topGroups == null ? defaultTopGroups : topGroups, maxTrackedGroups);
+    }
 
-        return statisticsService.processDataFromCSVFiles(CSVs);
+    private static ResponseEntity<JobStatus> accepted(SummaryJob job) {
+        return ResponseEntity.status(ACCEPTED)
+                .location(URI.create("/rest/summary/jobs/" + job.getId()))
+                .body(job.toStatus());
     }
 }
@@ -0,0 +1,61 @@
+package org.base.rest;
+
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.base.fetcher.StreamedFile;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// The file parts of a multipart request, read with the streaming API of commons-fileupload. A part is handed out as
+// soon as its headers arrived, moving to the next part skips what was not read of the previous one.
+class StreamedUploads implements Iterator<StreamedFile> {
+    private final FileItemIterator items;
+    private final String partName;
+    private FileItemStream nextItem;
+
+    StreamedUploads(HttpServletRequest request, String partName) {
+        this.partName = partName;
+        try {
+            this.items = new ServletFileUpload().getItemIterator(request);
+        } catch (FileUploadException | IOException e) {
+            throw new UncheckedIOException(new IOException("Invalid multipart request", e));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            // Form fields and parts with another name are skipped
+            while (nextItem == null && items.hasNext()) {
+                FileItemStream item = items.next();
+                if (!item.isFormField() && partName.equals(item.getFieldName())) {
+                    nextItem = item;
+                }
+            }
+            return nextItem != null;
+        } catch (FileUploadException | IOException e) {
+            throw new UncheckedIOException(new IOException("Invalid multipart request", e));
+        }
+    }
+
+    @Override
+    public StreamedFile next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        FileItemStream item = nextItem;
+        nextItem = null;
+        try {
+            // A part sent without a file name is named after the part
+            return new StreamedFile(item.getName() != null ? item.getName() : item.getFieldName(), item.openStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.base.service;
+
+import org.base.aggregator.ConcurrentAggregate;
+import org.base.aggregator.RecordAggregate;
+import org.base.config.StatisticsProperties;
+import org.base.dto.RecordErrors;
+import org.base.dto.SummaryData;
+import org.base.dto.URLErrors;
+import org.base.fetcher.DataFetcher;
+import org.base.fetcher.SourceListener;
+import org.base.fetcher.StreamedFile;
+import org.base.metrics.PipelineMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+// Named datasets that clients keep appending rows to. Every append is read like the sources of a summary request and
+// then added to the running aggregate of the dataset, so the summary of a dataset never reads its rows again.
+// The errors of an append are returned to its producer only, the dataset keeps its statistics and nothing else.
+@Service
+public class DatasetService {
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+
+    private final DataFetcher dataFetcher;
+    private final PipelineMetrics pipelineMetrics;
+    private final int maxDatasets;
+    private final Map<String, ConcurrentAggregate> datasets = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DatasetService(DataFetcher dataFetcher, PipelineMetrics pipelineMetrics, StatisticsProperties statisticsProperties) {
+        this.dataFetcher = dataFetcher;
+        this.pipelineMetrics = pipelineMetrics;
+        this.maxDatasets = statisticsProperties.getDatasets().getMaxDatasets();
+    }
+
+    // Rows of uploaded CSV files, parsed while the request body arrives. The name is checked first, looking for a file
+    // already reads the request body.
+    public ResponseEntity<SummaryData> appendCSVStreams(String name, Iterator<StreamedFile> streamedFiles) {
+        if (!NAME.matcher(name).matches() || !streamedFiles.hasNext()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new SummaryData());
+        }
+        return append(name, (urlErrors, lineErrors, threadCount, sourceListener) ->
+                dataFetcher.readStreamedCSVFiles(streamedFiles, urlErrors, lineErrors, threadCount, sourceListener));
+    }
+
+    // Rows of paths or URLs, read once when they are appended
+    public ResponseEntity<SummaryData> appendPathsOrUrls(String name, List<String> pathsOrURLs) {
+        if (!NAME.matcher(name).matches() || pathsOrURLs.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new SummaryData());
+        }
+        return append(name, (urlErrors, lineErrors, threadCount, sourceListener) ->
+                dataFetcher.fetchRecordData(pathsOrURLs, urlErrors, lineErrors, threadCount, sourceListener));
+    }
+
+    public ResponseEntity<SummaryData> getSummary(String name) {
+        return getSummary(name, null);
+    }
+
+    // Statistics of all the rows appended so far, computed from the age counts of the dataset. With percentiles the
+    // summary also has the extended statistics, null leaves them out.
+    public ResponseEntity<SummaryData> getSummary(String name, double[] percentiles) {
+        ConcurrentAggregate dataset = datasets.get(name);
+        if (dataset == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new SummaryData());
+        }
+        RecordAggregate allData = dataset.toRecordAggregate();
+        SummaryData summaryData = StatisticsService.calculateStatistics(Collections.emptySet(), Collections.emptySet(),
+                System.currentTimeMillis(), new AtomicInteger(), allData);
+        StatisticsService.addExtendedStatistics(summaryData, allData, percentiles);
+        return ResponseEntity.ok(summaryData);
+    }
+
+    // Rows appended while the dataset is deleted can be lost with it
+    public boolean delete(String name) {
+        return datasets.remove(name) != null;
+    }
+
+    // The statistics of the dataset after the append, with the errors of the append
+    private ResponseEntity<SummaryData> append(String name, StatisticsService.SourceReader sourceReader) {
+        // Checked before the rows are read, so several new datasets appended at the same time can pass the limit slightly
+        if (!datasets.containsKey(name) && datasets.size() >= maxDatasets) {
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE)
+                    .body(new SummaryData());
+        }
+
+        Set<URLErrors> urlErrors = ConcurrentHashMap.newKeySet();
+        Set<RecordErrors> lineErrors = ConcurrentHashMap.newKeySet();
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        AtomicInteger threadCount = new AtomicInteger();
+
+        RecordAggregate batch = StatisticsService.mergeAggregates(sourceReader.read(urlErrors, lineErrors, threadCount, SourceListener.NONE));
+        // A dataset is created by the first batch with rows, an append that failed or was rejected leaves no empty dataset
+        ConcurrentAggregate dataset = batch.getCount() > 0 ? datasets.computeIfAbsent(name, key -> new ConcurrentAggregate()) : datasets.get(name);
+        RecordAggregate allData = batch;
+        if (dataset != null) {
+            dataset.add(batch);
+            allData = dataset.toRecordAggregate();
+        }
+
+        SummaryData summaryData = StatisticsService.calculateStatistics(urlErrors, lineErrors, startTime, threadCount, allData);
+        pipelineMetrics.requestCompleted("dataset", System.nanoTime() - startNanos, batch.getCount());
+        return ResponseEntity.ok(summaryData);
+    }
+}
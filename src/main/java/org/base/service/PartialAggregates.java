@@ -0,0 +1,53 @@
+package org.base.service;
+
+import org.base.aggregator.AgeHistogram;
+import org.base.aggregator.RecordAggregate;
+import org.base.dto.PartialAggregate;
+import org.base.dto.RecordErrors;
+import org.base.dto.URLErrors;
+
+import java.util.Set;
+
+import static org.base.aggregator.AgeHistogram.MAX_AGE;
+import static org.base.aggregator.AgeHistogram.MIN_AGE;
+
+// Converts between the aggregate of a shard and the partial aggregate that is sent between instances
+final class PartialAggregates {
+
+    private PartialAggregates() {
+    }
+
+    static PartialAggregate toPartialAggregate(RecordAggregate allData, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors) {
+        AgeHistogram histogram = allData.getHistogram();
+        long[] ageCounts = new long[MAX_AGE + 1];
+        String[] personByAge = new String[MAX_AGE + 1];
+        for (int age = MIN_AGE; age <= MAX_AGE; age++) {
+            ageCounts[age] = histogram.getCount(age);
+            personByAge[age] = allData.getPersonWithAge(age);
+        }
+        return new PartialAggregate(histogram.getCount(), histogram.getSum(), ageCounts, personByAge, urlErrors, lineErrors);
+    }
+
+    // The partial aggregate comes from another instance, it is checked before anything is merged
+    static RecordAggregate toRecordAggregate(PartialAggregate partialAggregate) {
+        long[] ageCounts = partialAggregate.getAgeCounts();
+        String[] personByAge = partialAggregate.getPersonByAge();
+        if (ageCounts == null || personByAge == null || ageCounts.length != MAX_AGE + 1 || personByAge.length != MAX_AGE + 1) {
+            throw new IllegalArgumentException("Partial aggregate does not cover the ages " + MIN_AGE + " to " + MAX_AGE);
+        }
+
+        RecordAggregate allData = new RecordAggregate();
+        for (int age = MIN_AGE; age <= MAX_AGE; age++) {
+            if (ageCounts[age] < 0 || ageCounts[age] > 0 && personByAge[age] == null) {
+                throw new IllegalArgumentException("Partial aggregate has an invalid entry for age " + age);
+            }
+            if (ageCounts[age] > 0 && allData.add(age, ageCounts[age])) {
+                allData.setPersonWithAge(age, personByAge[age]);
+            }
+        }
+        if (allData.getCount() != partialAggregate.getCount() || allData.getHistogram().getSum() != partialAggregate.getSum()) {
+            throw new IllegalArgumentException("Partial aggregate count and sum do not match its age counts");
+        }
+        return allData;
+    }
+}
@@ -0,0 +1,73 @@
+package org.base.service;
+
+import org.base.aggregator.RecordAggregate;
+import org.base.dto.SourceTiming;
+import org.base.dto.SummaryTiming;
+import org.base.fetcher.SourceListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Collects the times of the sources of one summary request. Only the slowest sources are kept, a request with
+// thousands of URLs adds up its totals but does not hold a timing for every URL.
+class RequestTiming implements SourceListener {
+    private static final Comparator<SourceTiming> BY_TIME = Comparator.comparingDouble(RequestTiming::sourceMillis);
+
+    private final SourceListener sourceListener;
+    private final int slowestSources;
+    // The fastest of the kept sources is at the head, so it is the one replaced by a slower source
+    private final PriorityQueue<SourceTiming> slowest = new PriorityQueue<>(BY_TIME);
+    private final long startTime = System.nanoTime();
+
+    private int sourceCount;
+    private double fetchMillis;
+    private double parseMillis;
+    private long bytesRead;
+    private long rowsRead;
+
+    RequestTiming(SourceListener sourceListener, int slowestSources) {
+        this.sourceListener = sourceListener;
+        this.slowestSources = slowestSources;
+    }
+
+    @Override
+    public void sourceCompleted(String pathOrUrl, RecordAggregate sourceData) {
+        sourceListener.sourceCompleted(pathOrUrl, sourceData);
+    }
+
+    @Override
+    public synchronized void sourceTimed(SourceTiming sourceTiming) {
+        sourceCount++;
+        fetchMillis += sourceTiming.getFetchMillis();
+        parseMillis += sourceTiming.getParseMillis();
+        bytesRead += sourceTiming.getBytes();
+        rowsRead += sourceTiming.getRows();
+
+        if (slowest.size() < slowestSources) {
+            slowest.add(sourceTiming);
+        } else if (slowestSources > 0 && BY_TIME.compare(sourceTiming, slowest.peek()) > 0) {
+            slowest.poll();
+            slowest.add(sourceTiming);
+        }
+        sourceListener.sourceTimed(sourceTiming);
+    }
+
+    // The phases are given as System.nanoTime() marks taken when the read, merge and statistics phases ended
+    synchronized SummaryTiming toSummaryTiming(long readEnd, long mergeEnd, long statisticsEnd) {
+        List<SourceTiming> slowestFirst = new ArrayList<>(slowest);
+        slowestFirst.sort(BY_TIME.reversed());
+        return new SummaryTiming(toMillis(statisticsEnd - startTime), toMillis(readEnd - startTime), toMillis(mergeEnd - readEnd),
+                toMillis(statisticsEnd - mergeEnd), sourceCount, fetchMillis, parseMillis, bytesRead, rowsRead, slowestFirst);
+    }
+
+    // The parse time of a URL is part of its fetch time
+    private static double sourceMillis(SourceTiming sourceTiming) {
+        return Math.max(sourceTiming.getFetchMillis(), sourceTiming.getParseMillis());
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,65 @@
+package org.base.service;
+
+import org.base.aggregator.MedianResolver;
+import org.base.aggregator.RecordAggregate;
+import org.base.dto.PartialSummary;
+import org.base.dto.RecordErrors;
+import org.base.dto.URLErrors;
+import org.base.fetcher.SourceListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Folds every completed source into a running aggregate and reports the statistics so far, at most once per
+// interval so a request with thousands of sources does not produce thousands of reports.
+// Sources are merged in completion order, so the running figures carry no person, the final summary does.
+class RunningSummary implements SourceListener {
+    private final int sourcesTotal;
+    private final Set<URLErrors> urlErrors;
+    private final Set<RecordErrors> lineErrors;
+    private final Consumer<PartialSummary> partialSummaryConsumer;
+    private final long intervalMillis;
+
+    private final RecordAggregate allData = new RecordAggregate();
+    private int sourcesCompleted;
+    private long lastReportMillis;
+
+    RunningSummary(int sourcesTotal, Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors,
+                   Consumer<PartialSummary> partialSummaryConsumer, long intervalMillis) {
+        this.sourcesTotal = sourcesTotal;
+        this.urlErrors = urlErrors;
+        this.lineErrors = lineErrors;
+        this.partialSummaryConsumer = partialSummaryConsumer;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public void sourceCompleted(String pathOrUrl, RecordAggregate sourceData) {
+        PartialSummary partialSummary;
+        synchronized (this) {
+            allData.merge(sourceData);
+            sourcesCompleted++;
+
+            long now = System.currentTimeMillis();
+            if (now - lastReportMillis < intervalMillis && sourcesCompleted < sourcesTotal) {
+                return;
+            }
+            lastReportMillis = now;
+            partialSummary = toPartialSummary();
+        }
+        partialSummaryConsumer.accept(partialSummary);
+    }
+
+    private PartialSummary toPartialSummary() {
+        long lineErrorCount = 0;
+        for (RecordErrors recordErrors : lineErrors) {
+            lineErrorCount += recordErrors.getLineWithError().size();
+        }
+        double averageAge = BigDecimal.valueOf(allData.getHistogram().getAverage()).setScale(2, RoundingMode.HALF_UP).doubleValue();
+        return new PartialSummary(sourcesCompleted, sourcesTotal, allData.getCount(), averageAge,
+                new MedianResolver(allData).getMedianAge(), lineErrorCount, new HashSet<>(urlErrors));
+    }
+}
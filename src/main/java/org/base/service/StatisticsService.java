@@ -1,9 +1,27 @@
 package org.base.service;
 
-import org.base.dto.RecordData;
+import org.base.aggregator.AgeHistogram;
+import org.base.aggregator.ExtendedStatistics;
+import org.base.aggregator.GroupAggregate;
+import org.base.aggregator.GroupBy;
+import org.base.aggregator.MedianResolver;
+import org.base.aggregator.RecordAggregate;
+import org.base.cluster.PeerClient;
+import org.base.dto.GroupSummary;
+import org.base.dto.PartialAggregate;
+import org.base.dto.PartialSummary;
 import org.base.dto.RecordErrors;
 import org.base.dto.SummaryData;
 import org.base.dto.URLErrors;
+import org.base.fetcher.DataFetcher;
+import org.base.fetcher.SourceListener;
+import org.base.fetcher.SpooledFile;
+import org.base.fetcher.StreamedFile;
+import org.base.metrics.PipelineMetrics;
+import org.base.util.ValidationUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -12,17 +30,42 @@ import org.springframework.web.multipart.MultipartFile;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-import static org.base.fetcher.DataFetcher.*;
-import static org.base.util.StatisticsUtil.findPeronByMedianAgeRoundUp;
+import static org.base.aggregator.AgeHistogram.MAX_AGE;
+import static org.base.aggregator.AgeHistogram.MIN_AGE;
 import static org.base.util.ValidationUtil.readURLNames;
 
 @Service
 public class StatisticsService {
+    private static final Logger logger = LoggerFactory.getLogger(StatisticsService.class);
+
+    // Number of sources listed in the timing of a request
+    static final int SLOWEST_SOURCES = 10;
+
+    private final DataFetcher dataFetcher;
+    private final PeerClient peerClient;
+    private final PipelineMetrics pipelineMetrics;
+
+    @Autowired
+    public StatisticsService(DataFetcher dataFetcher, PeerClient peerClient, PipelineMetrics pipelineMetrics) {
+        this.dataFetcher = dataFetcher;
+        this.peerClient = peerClient;
+        this.pipelineMetrics = pipelineMetrics;
+    }
 
     public ResponseEntity<SummaryData> processDataFromPathsOrURLs(MultipartFile multipartFile) {
+        return processDataFromPathsOrURLs(multipartFile, SummaryOptions.NONE);
+    }
+
+    // With peers the URLs are split between this instance and the peers, unless the options ask for more than the
+    // partial aggregates carry. A summary with timing or groups is then read here, so no option is silently dropped.
+    public ResponseEntity<SummaryData> processDataFromPathsOrURLs(MultipartFile multipartFile, SummaryOptions options) {
         List<String> pathsOrURLs = readURLNames(multipartFile);
 
         if (pathsOrURLs.isEmpty()) {
@@ -30,18 +73,45 @@ public class StatisticsService {
                     .body(new SummaryData());
         }
 
-        SummaryData summaryStatisticsData = calculateStatisticsPathsOrUrls(pathsOrURLs);
+        if (!peerClient.getPeers().isEmpty() && pathsOrURLs.stream().filter(ValidationUtil::isURL).count() > 1 && options.isDistributable()) {
+            return ResponseEntity.status(HttpStatus.OK)
+                    .body(calculateStatisticsDistributed(pathsOrURLs, peerClient.getPeers(), options));
+        }
+        SummaryData summaryStatisticsData = calculateStatistics("paths", SourceListener.NONE, options, (urlErrors, lineErrors, threadCount, sourceListener) ->
+                dataFetcher.fetchRecordData(pathsOrURLs, urlErrors, lineErrors, threadCount, sourceListener, options.getGroupBy()));
         return ResponseEntity.status(HttpStatus.OK)
                 .body(summaryStatisticsData);
     }
 
     public ResponseEntity<SummaryData> processDataFromCSVFiles(List<MultipartFile> multipartFileList) {
+        return processDataFromCSVFiles(multipartFileList, SummaryOptions.NONE);
+    }
+
+    public ResponseEntity<SummaryData> processDataFromCSVFiles(List<MultipartFile> multipartFileList, SummaryOptions options) {
 
         if (multipartFileList.isEmpty()) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(new SummaryData());
         }
-        SummaryData summaryStatisticsData = calculateStatisticsUploadFiles(multipartFileList);
+        SummaryData summaryStatisticsData = calculateStatisticsUploadFiles(multipartFileList, options);
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(summaryStatisticsData);
+    }
+
+    public ResponseEntity<SummaryData> processDataFromCSVStreams(Iterator<StreamedFile> streamedFiles) {
+        return processDataFromCSVStreams(streamedFiles, SummaryOptions.NONE);
+    }
+
+    // Uploaded CSV files parsed while the request body arrives, the files are read in the order they were sent.
+    // The records are not kept by source while they stream in, so the summary is not grouped.
+    public ResponseEntity<SummaryData> processDataFromCSVStreams(Iterator<StreamedFile> streamedFiles, SummaryOptions options) {
+
+        if (!streamedFiles.hasNext()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new SummaryData());
+        }
+        SummaryData summaryStatisticsData = calculateStatistics("upload", SourceListener.NONE, options.withGroupBy(null), (urlErrors, lineErrors, threadCount, sourceListener) ->
+                dataFetcher.readStreamedCSVFiles(streamedFiles, urlErrors, lineErrors, threadCount, sourceListener));
         return ResponseEntity.status(HttpStatus.OK)
                 .body(summaryStatisticsData);
     }
@@ -49,76 +119,207 @@ public class StatisticsService {
     /**
      * This method accepts n+1 CSV files, uploaded over HTTP
      */
-    private SummaryData calculateStatisticsUploadFiles(List<MultipartFile> multipartFileList) {
-        Set<URLErrors> urlErrors = new HashSet<>();
-        Set<RecordErrors> lineErrors = new HashSet<>();
+    private SummaryData calculateStatisticsUploadFiles(List<MultipartFile> multipartFileList, SummaryOptions options) {
+        return calculateStatistics("upload", SourceListener.NONE, options, (urlErrors, lineErrors, threadCount, sourceListener) ->
+                dataFetcher.readCSVRecordDataFiles(multipartFileList, urlErrors, lineErrors, threadCount, sourceListener, options.getGroupBy()));
+    }
 
+    // Summary of uploaded CSV files that were spooled to temporary files, used by jobs that outlive the upload request
+    public SummaryData calculateStatisticsSpooledFiles(List<SpooledFile> spooledFiles, SourceListener sourceListener) {
+        return calculateStatistics("upload", sourceListener, SummaryOptions.NONE, (urlErrors, lineErrors, threadCount, listener) ->
+                dataFetcher.readSpooledCSVFiles(spooledFiles, urlErrors, lineErrors, threadCount, listener));
+    }
+
+    /**
+     * This method fetches @RecordData from CSVs that are stored somewhere on the cloud over HTTP,
+     * or CSV files that are stored locally on the machine
+     */
+    public SummaryData calculateStatisticsPathsOrUrls(List<String> pathsOrURLs, SourceListener sourceListener) {
+        return calculateStatistics("paths", sourceListener, SummaryOptions.NONE, (urlErrors, lineErrors, threadCount, listener) ->
+                dataFetcher.fetchRecordData(pathsOrURLs, urlErrors, lineErrors, threadCount, listener));
+    }
+
+    // Same summary, the statistics of the sources read so far are passed to the consumer while the sources complete
+    public SummaryData calculateStatisticsPathsOrUrls(List<String> pathsOrURLs, Consumer<PartialSummary> partialSummaryConsumer, long intervalMillis) {
+        // The running summary needs the error sets of the request, so it is created by the reader and not passed in
+        return calculateStatistics("paths", SourceListener.NONE, SummaryOptions.NONE, (urlErrors, lineErrors, threadCount, listener) -> {
+            RunningSummary runningSummary = new RunningSummary(pathsOrURLs.size(), urlErrors, lineErrors, partialSummaryConsumer, intervalMillis);
+            return dataFetcher.fetchRecordData(pathsOrURLs, urlErrors, lineErrors, threadCount, runningSummary);
+        });
+    }
+
+    // Partial aggregate of a shard of paths or URLs, read for a coordinating instance
+    public PartialAggregate calculatePartialAggregate(List<String> pathsOrURLs) {
+        Set<URLErrors> urlErrors = ConcurrentHashMap.newKeySet();
+        Set<RecordErrors> lineErrors = ConcurrentHashMap.newKeySet();
+        long startNanos = System.nanoTime();
+
+        RecordAggregate allData = mergeAggregates(dataFetcher.fetchRecordData(pathsOrURLs, urlErrors, lineErrors, new AtomicInteger()));
+
+        pipelineMetrics.requestCompleted("partial", System.nanoTime() - startNanos, allData.getCount());
+        return PartialAggregates.toPartialAggregate(allData, urlErrors, lineErrors);
+    }
+
+    // Coordinator mode, the URLs are split into shards, the first one is read here while the peers read the others.
+    // Local paths only exist on this instance and are always read here. The sources are merged in the order they
+    // were listed, so the person kept for each age is the same as if all sources were read here. For that a peer is
+    // asked once for each run of its URLs that is not interrupted by a source read here.
+    // The URLs of peers that failed or answered with an invalid aggregate are read here afterwards, all at once.
+    private SummaryData calculateStatisticsDistributed(List<String> pathsOrURLs, List<String> peers, SummaryOptions options) {
+        Set<URLErrors> urlErrors = ConcurrentHashMap.newKeySet();
+        Set<RecordErrors> lineErrors = ConcurrentHashMap.newKeySet();
         long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
 
-        // Use AtomicInteger to share thread count between methods
-        AtomicInteger threadCount = new AtomicInteger(Thread.activeCount());
+        List<SourceRun> runs = splitIntoRuns(pathsOrURLs, peers);
+        List<String> readHere = new ArrayList<>();
+        for (SourceRun run : runs) {
+            if (run.peer == null) {
+                readHere.addAll(run.pathsOrURLs);
+            } else {
+                run.partialAggregate = peerClient.fetchPartial(run.peer, run.pathsOrURLs);
+            }
+        }
 
-        // Fetch the record data concurrently
-        List<RecordData> allData = readCSVRecordDataFiles(multipartFileList, urlErrors, lineErrors, threadCount);
+        AtomicInteger threadCount = new AtomicInteger();
+        Iterator<RecordAggregate> sourcesReadHere = dataFetcher.fetchRecordData(readHere, urlErrors, lineErrors, threadCount).iterator();
+
+        // The peers time out by themselves, their failed runs are collected first and read together
+        List<String> retriedHere = new ArrayList<>();
+        for (SourceRun run : runs) {
+            if (run.peer == null) {
+                continue;
+            }
+            try {
+                PartialAggregate partialAggregate = run.partialAggregate.join();
+                run.allData = PartialAggregates.toRecordAggregate(partialAggregate);
+                urlErrors.addAll(partialAggregate.getUrlErrors() == null ? Collections.emptySet() : partialAggregate.getUrlErrors());
+                lineErrors.addAll(partialAggregate.getLineErrors() == null ? Collections.emptySet() : partialAggregate.getLineErrors());
+            } catch (CompletionException | IllegalArgumentException e) {
+                logger.warn("Peer {} failed, reading its shard here : {}", run.peer, e.getMessage());
+                retriedHere.addAll(run.pathsOrURLs);
+            }
+        }
+        Iterator<RecordAggregate> sourcesRetriedHere = dataFetcher.fetchRecordData(retriedHere, urlErrors, lineErrors, new AtomicInteger()).iterator();
+
+        RecordAggregate allData = new RecordAggregate();
+        for (SourceRun run : runs) {
+            if (run.allData != null) {
+                allData.merge(run.allData);
+            } else {
+                Iterator<RecordAggregate> sources = run.peer == null ? sourcesReadHere : sourcesRetriedHere;
+                run.pathsOrURLs.forEach(pathOrUrl -> allData.merge(sources.next()));
+            }
+        }
 
-        System.out.println("Number of records : " + allData.size());
+        logger.debug("Distributed summary of {} records, {} sources read by peers and {} retried here",
+                allData.getCount(), pathsOrURLs.size() - readHere.size(), retriedHere.size());
 
-        return calculateStatistics(urlErrors, lineErrors, startTime, threadCount, allData);
+        SummaryData summaryData = calculateStatistics(urlErrors, lineErrors, startTime, threadCount, allData);
+        addExtendedStatistics(summaryData, allData, options.getPercentiles());
+        pipelineMetrics.requestCompleted("distributed", System.nanoTime() - startNanos, allData.getCount());
+        return summaryData;
     }
 
-    /**
-     * This method fetches @RecordData from CSVs that are stored somewhere on the cloud over HTTP,
-     * or CSV files that are stored locally on the machine
-     */
-    private SummaryData calculateStatisticsPathsOrUrls(List<String> pathsOrURLs) {
-        Set<URLErrors> urlErrors = new HashSet<>();
-        Set<RecordErrors> lineErrors = new HashSet<>();
+    // Splits the sources into runs of consecutive sources with the same reader, in the order of the sources. The URLs
+    // are split into one shard per instance, the first shard and all local paths are read here (peer null).
+    static List<SourceRun> splitIntoRuns(List<String> pathsOrURLs, List<String> peers) {
+        List<String> urls = pathsOrURLs.stream().filter(ValidationUtil::isURL).collect(Collectors.toList());
+        List<List<String>> shards = splitIntoShards(urls, Math.min(peers.size() + 1, urls.size()));
+        Map<String, String> peerByUrl = new HashMap<>();
+        for (int i = 1; i < shards.size(); i++) {
+            for (String url : shards.get(i)) {
+                peerByUrl.putIfAbsent(url, peers.get(i - 1));
+            }
+        }
+
+        List<SourceRun> runs = new ArrayList<>();
+        SourceRun run = null;
+        for (String pathOrUrl : pathsOrURLs) {
+            String peer = peerByUrl.get(pathOrUrl);
+            if (run == null || !Objects.equals(run.peer, peer)) {
+                run = new SourceRun(peer);
+                runs.add(run);
+            }
+            run.pathsOrURLs.add(pathOrUrl);
+        }
+        return runs;
+    }
+
+    // Consecutive shards of nearly equal size
+    static List<List<String>> splitIntoShards(List<String> pathsOrURLs, int shardCount) {
+        List<List<String>> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(pathsOrURLs.subList(pathsOrURLs.size() * i / shardCount, pathsOrURLs.size() * (i + 1) / shardCount));
+        }
+        return shards;
+    }
+
+    // Consecutive sources read by one peer, or here when the peer is null
+    static class SourceRun {
+        final String peer;
+        final List<String> pathsOrURLs = new ArrayList<>();
+        CompletableFuture<PartialAggregate> partialAggregate;
+        // Set once the peer answered
+        RecordAggregate allData;
+
+        SourceRun(String peer) {
+            this.peer = peer;
+        }
+    }
+
+    private SummaryData calculateStatistics(String request, SourceListener sourceListener, SummaryOptions options, SourceReader sourceReader) {
+        // Errors are added concurrently by the fetch tasks
+        Set<URLErrors> urlErrors = ConcurrentHashMap.newKeySet();
+        Set<RecordErrors> lineErrors = ConcurrentHashMap.newKeySet();
 
         long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        RequestTiming requestTiming = options.isTiming() ? new RequestTiming(sourceListener, SLOWEST_SOURCES) : null;
 
         // Use AtomicInteger to share thread count between methods
-        AtomicInteger threadCount = new AtomicInteger(Thread.activeCount());
+        AtomicInteger threadCount = new AtomicInteger();
+
         // Fetch the record data concurrently
-        List<RecordData> allData = fetchRecordData(pathsOrURLs, urlErrors, lineErrors, threadCount);
+        List<RecordAggregate> sourceAggregates = sourceReader.read(urlErrors, lineErrors, threadCount, options.isTiming() ? requestTiming : sourceListener);
+        long readEnd = System.nanoTime();
+        RecordAggregate allData = mergeAggregates(sourceAggregates);
+        long mergeEnd = System.nanoTime();
 
-        System.out.println("Number of records : " + allData.size());
+        SummaryData summaryData = calculateStatistics(urlErrors, lineErrors, startTime, threadCount, allData);
+        addExtendedStatistics(summaryData, allData, options.getPercentiles());
+        addGroups(summaryData, allData, options.getGroupBy());
+        long statisticsEnd = System.nanoTime();
+        if (options.isTiming()) {
+            summaryData.setTiming(requestTiming.toSummaryTiming(readEnd, mergeEnd, statisticsEnd));
+        }
+        pipelineMetrics.requestCompleted(request, statisticsEnd - startNanos, allData.getCount());
+        return summaryData;
+    }
 
-        return calculateStatistics(urlErrors, lineErrors, startTime, threadCount, allData);
+    // Merge the per source aggregates in submission order, so the first person read for each age is kept
+    static RecordAggregate mergeAggregates(List<RecordAggregate> sourceAggregates) {
+        RecordAggregate allData = new RecordAggregate();
+        sourceAggregates.forEach(allData::merge);
+        return allData;
     }
 
-    private static SummaryData calculateStatistics(Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors, long startTime, AtomicInteger threadCount, List<RecordData> allData) {
+    static SummaryData calculateStatistics(Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors, long startTime, AtomicInteger threadCount, RecordAggregate allData) {
         SummaryData summaryData = new SummaryData();
+        AgeHistogram histogram = allData.getHistogram();
 
-        int size = allData.size();
+        long size = histogram.getCount();
         if (size != 0) {
             // Calculate the average age
-            double averageAge = allData.stream().collect(Collectors.averagingDouble(RecordData::getAge));
+            double averageAge = histogram.getAverage();
             BigDecimal averageAgeDecimal = BigDecimal.valueOf(averageAge).setScale(2, RoundingMode.HALF_UP); // Set decimal points to 2 and round up
             summaryData.setAverageAge(averageAgeDecimal.doubleValue());
 
-            // Check if the list is even
-            if (size % 2 == 0) {
-                double middleAge1 = allData.get(size / 2 - 1).getAge();
-                double middleAge2 = allData.get(size / 2).getAge();
-                double medianEvenAge = (middleAge1 + middleAge2) / 2;
-                summaryData.setMedianAge(medianEvenAge);
-
-                // If the ages are the same, no need to iterate over the list to find a person with the median age
-                if (middleAge1 == middleAge2) {
-                    summaryData.setPersonWithMedianAge(allData.get(size / 2).getFullName());
-                } else {
-                    // Get the person closest to the medianEvenAge by incrementing the medianEvenAge
-                    int indexOfPersonWithMedianAge = findPeronByMedianAgeRoundUp(allData, medianEvenAge);
-                    if (indexOfPersonWithMedianAge != -1) {
-                        RecordData personWithMedianAgeRecord = allData.get(indexOfPersonWithMedianAge);
-                        summaryData.setPersonWithMedianAge(personWithMedianAgeRecord.getFullName());
-                    }
-                }
-            } else {
-                //If size in odd, set the middle person name
-                summaryData.setMedianAge(allData.get(size / 2).getAge());
-                summaryData.setPersonWithMedianAge(allData.get(size / 2).getFullName());
-            }
+            // The median age and the person with the median age, on an even count with different middle ages
+            // the median is rounded up to find the person
+            MedianResolver medianResolver = new MedianResolver(allData);
+            summaryData.setMedianAge(medianResolver.getMedianAge());
+            summaryData.setPersonWithMedianAge(medianResolver.getPersonWithMedianAge());
         }
         long endTime = System.currentTimeMillis();
 
@@ -130,4 +331,67 @@ public class StatisticsService {
 
         return summaryData;
     }
+
+    // Min, max, variance, the percentiles and the age histogram, read from the histogram of the aggregate
+    static void addExtendedStatistics(SummaryData summaryData, RecordAggregate allData, double[] percentiles) {
+        if (percentiles == null || allData.getCount() == 0) {
+            return;
+        }
+        ExtendedStatistics extendedStatistics = new ExtendedStatistics(allData.getHistogram(), percentiles);
+        summaryData.setMinAge(extendedStatistics.getMinAge());
+        summaryData.setMaxAge(extendedStatistics.getMaxAge());
+        summaryData.setAgeVariance(BigDecimal.valueOf(extendedStatistics.getVariance()).setScale(2, RoundingMode.HALF_UP).doubleValue());
+        summaryData.setAgeStandardDeviation(BigDecimal.valueOf(extendedStatistics.getStandardDeviation()).setScale(2, RoundingMode.HALF_UP).doubleValue());
+        Map<String, Integer> agePercentiles = new LinkedHashMap<>();
+        for (int i = 0; i < percentiles.length; i++) {
+            agePercentiles.put("p" + BigDecimal.valueOf(percentiles[i]).stripTrailingZeros().toPlainString(), extendedStatistics.getPercentileAges()[i]);
+        }
+        summaryData.setAgePercentiles(agePercentiles);
+        summaryData.setAgeHistogram(extendedStatistics.getAgeCounts());
+    }
+
+    // The groups with the most records, the records of all the other groups are summarized together. The other
+    // groups are what is left of the request histogram once the listed groups are taken out.
+    static void addGroups(SummaryData summaryData, RecordAggregate allData, GroupBy groupBy) {
+        if (groupBy == null) {
+            return;
+        }
+        long[] otherCounts = new long[MAX_AGE + 1];
+        for (int age = MIN_AGE; age <= MAX_AGE; age++) {
+            otherCounts[age] = allData.getHistogram().getCount(age);
+        }
+        Map<String, GroupSummary> groupSummaries = new LinkedHashMap<>();
+        GroupAggregate groups = allData.getGroups();
+        if (groups != null) {
+            for (int id : groups.topGroups(groupBy.getTopGroups())) {
+                AgeHistogram histogram = groups.getHistogram(id);
+                groupSummaries.put(groups.getKey(id), toGroupSummary(histogram));
+                for (int age = MIN_AGE; age <= MAX_AGE; age++) {
+                    otherCounts[age] -= histogram.getCount(age);
+                }
+            }
+        }
+        AgeHistogram otherGroups = new AgeHistogram();
+        for (int age = MIN_AGE; age <= MAX_AGE; age++) {
+            if (otherCounts[age] > 0) {
+                otherGroups.add(age, otherCounts[age]);
+            }
+        }
+        summaryData.setGroups(groupSummaries);
+        summaryData.setOtherGroups(otherGroups.getCount() == 0 ? null : toGroupSummary(otherGroups));
+        // Only records of keys that were not tracked are counted in the other groups of the aggregate
+        summaryData.setGroupsApproximate(groups != null && groups.getOtherGroups().getCount() > 0);
+    }
+
+    private static GroupSummary toGroupSummary(AgeHistogram histogram) {
+        RecordAggregate groupData = new RecordAggregate();
+        groupData.getHistogram().merge(histogram);
+        double averageAge = BigDecimal.valueOf(histogram.getAverage()).setScale(2, RoundingMode.HALF_UP).doubleValue();
+        return new GroupSummary(histogram.getCount(), averageAge, new MedianResolver(groupData).getMedianAge());
+    }
+
+    // Reads all the sources of a request into one aggregate per source
+    interface SourceReader {
+        List<RecordAggregate> read(Set<URLErrors> urlErrors, Set<RecordErrors> lineErrors, AtomicInteger threadCount, SourceListener sourceListener);
+    }
 }
@@ -0,0 +1,75 @@
+package org.base.service;
+
+import org.base.dto.JobStatus;
+import org.base.dto.SummaryData;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A summary computed in the background, polled by the client through its id
+public class SummaryJob {
+    private final String id;
+    private final int sourcesTotal;
+    private final AtomicInteger sourcesCompleted = new AtomicInteger();
+    private final CompletableFuture<SummaryData> result = new CompletableFuture<>();
+    // Queued or running, the state of a finished job is read from its result
+    private volatile JobStatus.State state = JobStatus.State.QUEUED;
+    private volatile long finishedAtMillis;
+
+    SummaryJob(String id, int sourcesTotal) {
+        this.id = id;
+        this.sourcesTotal = sourcesTotal;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    // Completes when the job is done or failed
+    public CompletableFuture<SummaryData> getResult() {
+        return result;
+    }
+
+    public boolean isFinished() {
+        return result.isDone();
+    }
+
+    // A finished job takes its state from the result, so a job is never reported done before its summary is set
+    public JobStatus toStatus() {
+        JobStatus.State state = this.state;
+        SummaryData summary = null;
+        String error = null;
+        if (result.isDone()) {
+            try {
+                summary = result.getNow(null);
+                state = JobStatus.State.DONE;
+            } catch (Exception e) {
+                error = e.getCause() != null ? e.getCause().toString() : e.toString();
+                state = JobStatus.State.FAILED;
+            }
+        }
+        return new JobStatus(id, state, sourcesTotal, sourcesCompleted.get(), summary, error);
+    }
+
+    void started() {
+        state = JobStatus.State.RUNNING;
+    }
+
+    void sourceCompleted() {
+        sourcesCompleted.incrementAndGet();
+    }
+
+    void done(SummaryData summary) {
+        finishedAtMillis = System.currentTimeMillis();
+        result.complete(summary);
+    }
+
+    void failed(Throwable error) {
+        finishedAtMillis = System.currentTimeMillis();
+        result.completeExceptionally(error);
+    }
+
+    long getFinishedAtMillis() {
+        return finishedAtMillis;
+    }
+}
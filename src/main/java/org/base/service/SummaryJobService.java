@@ -0,0 +1,93 @@
+package org.base.service;
+
+import org.base.config.StatisticsProperties;
+import org.base.dto.SummaryData;
+import org.base.exectutor.ExecutorServiceManager;
+import org.base.fetcher.SourceListener;
+import org.base.fetcher.SpooledFile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+// Runs summaries in the background on the bounded job pool. The request that submits a job returns at once
+// with the job id, and the result is kept until the retention time after the job finished.
+@Service
+public class SummaryJobService {
+    private final StatisticsService statisticsService;
+    private final ExecutorServiceManager executorServiceManager;
+    private final long retentionMillis;
+    private final Map<String, SummaryJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SummaryJobService(StatisticsService statisticsService, ExecutorServiceManager executorServiceManager,
+                             StatisticsProperties statisticsProperties) {
+        this.statisticsService = statisticsService;
+        this.executorServiceManager = executorServiceManager;
+        this.retentionMillis = statisticsProperties.getJobs().getRetention().toMillis();
+    }
+
+    public SummaryJob submitPathsOrUrls(List<String> pathsOrURLs) {
+        return submit(pathsOrURLs.size(), listener -> statisticsService.calculateStatisticsPathsOrUrls(pathsOrURLs, listener), () -> {
+        });
+    }
+
+    // The uploads are only readable while the upload request is running, so they are spooled before it returns
+    public SummaryJob submitCSVFiles(List<MultipartFile> csvFiles) throws IOException {
+        List<SpooledFile> spooledFiles = new ArrayList<>();
+        try {
+            for (MultipartFile csvFile : csvFiles) {
+                spooledFiles.add(SpooledFile.spool(csvFile));
+            }
+        } catch (IOException e) {
+            spooledFiles.forEach(SpooledFile::delete);
+            throw e;
+        }
+        return submit(spooledFiles.size(), listener -> statisticsService.calculateStatisticsSpooledFiles(spooledFiles, listener),
+                () -> spooledFiles.forEach(SpooledFile::delete));
+    }
+
+    public SummaryJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    private SummaryJob submit(int sourcesTotal, Function<SourceListener, SummaryData> summary, Runnable cleanUp) {
+        removeExpiredJobs();
+
+        SummaryJob job = new SummaryJob(UUID.randomUUID().toString(), sourcesTotal);
+        jobs.put(job.getId(), job);
+        try {
+            executorServiceManager.submitJob(() -> run(job, summary, cleanUp));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            cleanUp.run();
+            throw e;
+        }
+        return job;
+    }
+
+    private static void run(SummaryJob job, Function<SourceListener, SummaryData> summary, Runnable cleanUp) {
+        job.started();
+        try {
+            job.done(summary.apply((pathOrUrl, sourceData) -> job.sourceCompleted()));
+        } catch (Throwable e) {
+            // Also an Error such as OutOfMemoryError, otherwise the job would never finish and never expire
+            job.failed(e);
+        } finally {
+            cleanUp.run();
+        }
+    }
+
+    private void removeExpiredJobs() {
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(job -> job.isFinished() && now - job.getFinishedAtMillis() > retentionMillis);
+    }
+}
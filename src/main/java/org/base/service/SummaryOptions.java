@@ -0,0 +1,52 @@
+package org.base.service;
+
+import org.base.aggregator.GroupBy;
+
+// What a summary request asks for besides the basic statistics, built once from the request parameters. NONE is
+// the basic summary, every option is added with its own with-method so a new option does not change the callers.
+public class SummaryOptions {
+    public static final SummaryOptions NONE = new SummaryOptions(false, null, null);
+
+    private final boolean timing;
+    private final double[] percentiles;
+    private final GroupBy groupBy;
+
+    private SummaryOptions(boolean timing, double[] percentiles, GroupBy groupBy) {
+        this.timing = timing;
+        this.percentiles = percentiles;
+        this.groupBy = groupBy;
+    }
+
+    // The summary also shows where the time of the request went
+    public SummaryOptions withTiming(boolean timing) {
+        return new SummaryOptions(timing, percentiles, groupBy);
+    }
+
+    // The summary also has the extended statistics with these percentiles, null leaves them out
+    public SummaryOptions withPercentiles(double[] percentiles) {
+        return new SummaryOptions(timing, percentiles, groupBy);
+    }
+
+    // The summary also has the statistics of each group, null leaves them out
+    public SummaryOptions withGroupBy(GroupBy groupBy) {
+        return new SummaryOptions(timing, percentiles, groupBy);
+    }
+
+    // The partial aggregate of a peer only has the age counts of its shard, which give the basic and the extended
+    // statistics. A summary with timing or groups is read on the instance that received it.
+    public boolean isDistributable() {
+        return !timing && groupBy == null;
+    }
+
+    public boolean isTiming() {
+        return timing;
+    }
+
+    public double[] getPercentiles() {
+        return percentiles;
+    }
+
+    public GroupBy getGroupBy() {
+        return groupBy;
+    }
+}
@@ -0,0 +1,89 @@
+package org.base.service;
+
+import org.base.config.StatisticsProperties;
+import org.base.dto.PartialSummary;
+import org.base.dto.SummaryData;
+import org.base.exectutor.ExecutorServiceManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+// Computes a summary on the job pool and streams it as Server-Sent Events: "progress" events with the running
+// statistics while the sources complete, then one "summary" event with the final SummaryData.
+@Service
+public class SummaryStreamService {
+    private final StatisticsService statisticsService;
+    private final ExecutorServiceManager executorServiceManager;
+    private final long progressIntervalMillis;
+    private final long streamTimeoutMillis;
+
+    @Autowired
+    public SummaryStreamService(StatisticsService statisticsService, ExecutorServiceManager executorServiceManager,
+                                StatisticsProperties statisticsProperties) {
+        this.statisticsService = statisticsService;
+        this.executorServiceManager = executorServiceManager;
+        this.progressIntervalMillis = statisticsProperties.getJobs().getProgressInterval().toMillis();
+        this.streamTimeoutMillis = statisticsProperties.getJobs().getStreamTimeout().toMillis();
+    }
+
+    public SseEmitter streamPathsOrUrls(List<String> pathsOrURLs) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        EventSender eventSender = new EventSender(emitter, executorServiceManager.getEventExecutor());
+
+        executorServiceManager.submitJob(() -> {
+            try {
+                SummaryData summary = statisticsService.calculateStatisticsPathsOrUrls(pathsOrURLs,
+                        partialSummary -> eventSender.send("progress", partialSummary), progressIntervalMillis);
+                eventSender.send("summary", summary);
+                eventSender.complete();
+            } catch (Throwable e) {
+                eventSender.fail(e);
+            }
+        });
+        return emitter;
+    }
+
+    // Progress is reported on the threads that read the sources, which can be event loop threads of the HTTP
+    // client. Events are written one after the other on the event pool, so a slow client never blocks a fetch.
+    private static class EventSender {
+        private final SseEmitter emitter;
+        private final Executor executor;
+        private CompletableFuture<Void> lastEvent = CompletableFuture.completedFuture(null);
+        private volatile boolean clientGone;
+
+        private EventSender(SseEmitter emitter, Executor executor) {
+            this.emitter = emitter;
+            this.executor = executor;
+            emitter.onTimeout(() -> clientGone = true);
+            emitter.onError(error -> clientGone = true);
+        }
+
+        private synchronized void send(String name, Object data) {
+            lastEvent = lastEvent.thenRunAsync(() -> {
+                if (clientGone) {
+                    return;
+                }
+                try {
+                    emitter.send(SseEmitter.event().name(name).data(data));
+                } catch (IOException | IllegalStateException e) {
+                    // The client disconnected or the stream timed out, the summary still runs to the end
+                    clientGone = true;
+                }
+            }, executor);
+        }
+
+        private synchronized void complete() {
+            lastEvent = lastEvent.thenRun(emitter::complete);
+        }
+
+        // Behind the events already queued, so none of them is lost or written after the error
+        private synchronized void fail(Throwable error) {
+            lastEvent = lastEvent.thenRun(() -> emitter.completeWithError(error));
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.base.snapshot;
+
+import org.base.config.StatisticsProperties;
+import org.base.exectutor.ExecutorServiceManager;
+import org.base.fetcher.FetchResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps a snapshot of every parsed local file and URL in a directory, named after a hash of the path or URL.
+// A snapshot is written in the background once its source was read completely, and replaces an older one atomically,
+// so a request never reads a snapshot that is still being written. A snapshot that is read is touched, after a write
+// the least recently used snapshots are deleted until the directory fits its disk limit again.
+@Component
+public class SnapshotStore {
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private final ExecutorServiceManager executorServiceManager;
+    private final boolean enabled;
+    private final Path directory;
+    private final int maxRows;
+    private final long maxDiskBytes;
+    // Shared by the writers of all sources being read
+    private final AtomicLong bufferedRowsLeft;
+
+    @Autowired
+    public SnapshotStore(ExecutorServiceManager executorServiceManager, StatisticsProperties statisticsProperties) {
+        StatisticsProperties.Snapshots properties = statisticsProperties.getSnapshots();
+        this.executorServiceManager = executorServiceManager;
+        this.enabled = properties.isEnabled();
+        this.directory = Paths.get(properties.getDirectory());
+        this.maxRows = properties.getMaxRows();
+        this.maxDiskBytes = properties.getMaxDiskSize().toBytes();
+        this.bufferedRowsLeft = new AtomicLong(properties.getMaxBufferedRows());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public SnapshotWriter newWriter() {
+        return new SnapshotWriter(maxRows, bufferedRowsLeft);
+    }
+
+    // The snapshot of the path or URL, null if there is none or it can not be read
+    public SourceSnapshot find(String pathOrUrl) {
+        Path file = snapshotFile(pathOrUrl);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            SourceSnapshot snapshot = SourceSnapshot.read(file);
+            if (!snapshot.getPathOrUrl().equals(pathOrUrl)) {
+                return null;
+            }
+            touch(file);
+            return snapshot;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read snapshot of {} : {}", pathOrUrl, e.getMessage());
+            return null;
+        }
+    }
+
+    public CompletableFuture<Void> saveFile(String path, long fileSize, long modifiedMillis, boolean validCSV, List<String> recordLineErrors,
+                                            SnapshotWriter writer) {
+        return save(path, fileSize, modifiedMillis, null, validCSV, recordLineErrors, writer);
+    }
+
+    // A URL without validators can not be revalidated, so it is not snapshotted
+    public CompletableFuture<Void> saveUrl(String url, FetchResponse validators, boolean validCSV, List<String> recordLineErrors,
+                                           SnapshotWriter writer) {
+        if (!validators.hasValidators()) {
+            writer.release();
+            return CompletableFuture.completedFuture(null);
+        }
+        return save(url, -1, -1, validators, validCSV, recordLineErrors, writer);
+    }
+
+    // The writer is released once its snapshot is written, or right away when it is not written
+    private CompletableFuture<Void> save(String pathOrUrl, long fileSize, long modifiedMillis, FetchResponse validators, boolean validCSV,
+                                         List<String> recordLineErrors, SnapshotWriter writer) {
+        if (writer.isTooLarge()) {
+            writer.release();
+            return CompletableFuture.completedFuture(null);
+        }
+        return executorServiceManager.submitSnapshotWrite(() -> {
+            try {
+                Files.createDirectories(directory);
+                Path tempFile = Files.createTempFile(directory, "snapshot-", ".tmp");
+                try {
+                    SourceSnapshot.write(tempFile, pathOrUrl, fileSize, modifiedMillis, validators, validCSV, recordLineErrors, writer);
+                    Files.move(tempFile, snapshotFile(pathOrUrl), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+                evict();
+            } catch (IOException e) {
+                logger.warn("Could not write snapshot of {} : {}", pathOrUrl, e.getMessage());
+            }
+        }).whenComplete((ignored, error) -> writer.release());
+    }
+
+    // Snapshots are written one at a time, so only one eviction runs at a time. A deleted snapshot that is still
+    // mapped by a request stays readable until it is unmapped.
+    private void evict() throws IOException {
+        Map<Path, BasicFileAttributes> snapshots = new HashMap<>();
+        long totalBytes = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.snapshot")) {
+            for (Path file : files) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    snapshots.put(file, attributes);
+                    totalBytes += attributes.size();
+                } catch (IOException e) {
+                    // Deleted meanwhile
+                }
+            }
+        }
+        if (totalBytes <= maxDiskBytes) {
+            return;
+        }
+
+        List<Path> leastRecentlyUsed = new ArrayList<>(snapshots.keySet());
+        leastRecentlyUsed.sort(Comparator.comparing(file -> snapshots.get(file).lastModifiedTime()));
+        for (Path file : leastRecentlyUsed) {
+            if (totalBytes <= maxDiskBytes) {
+                break;
+            }
+            if (Files.deleteIfExists(file)) {
+                totalBytes -= snapshots.get(file).size();
+            }
+        }
+    }
+
+    // The modification time of a snapshot is the time it was last read, a snapshot that can not be touched is still used
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.debug("Could not touch snapshot {} : {}", file, e.getMessage());
+        }
+    }
+
+    private Path snapshotFile(String pathOrUrl) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(pathOrUrl.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : hash) {
+                name.append(String.format("%02x", b));
+            }
+            return directory.resolve(name.append(".snapshot").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.base.snapshot;
+
+import org.base.aggregator.NameDictionary;
+import org.base.fetcher.RecordSink;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Collects the records of one source while it is parsed, until they are written as a snapshot. Every parser of the
+// source, such as the parser of each chunk of a large file, gets its own part and the parts are written in the order
+// they were asked for. A source read by a single parser, such as a URL, can add its records to the writer itself.
+//
+// A part counts its own rows and keeps them in blocks of BLOCK_ROWS rows, the writer is only asked for a new block.
+// The blocks of all writers are taken from the buffer of the store, so the rows held until their snapshots are written
+// stay bounded however many sources are read at once. A source with more rows than the snapshot limit, or that finds
+// the buffer full, is dropped: it stops collecting, gives its blocks back and is not snapshotted.
+public class SnapshotWriter implements RecordSink {
+    static final int BLOCK_ROWS = 16 * 1024;
+
+    private final int maxRows;
+    private final AtomicLong bufferedRowsLeft;
+    private final List<Part> parts = new ArrayList<>();
+    private long blocks;
+    private volatile boolean dropped;
+    private Part singlePart;
+
+    SnapshotWriter(int maxRows, AtomicLong bufferedRowsLeft) {
+        this.maxRows = maxRows;
+        this.bufferedRowsLeft = bufferedRowsLeft;
+    }
+
+    public synchronized RecordSink newPart() {
+        Part part = new Part();
+        parts.add(part);
+        return part;
+    }
+
+    @Override
+    public void add(ByteBuffer bytes, int fnameStart, int fnameEnd, int lnameStart, int lnameEnd, int age) {
+        if (singlePart == null) {
+            singlePart = (Part) newPart();
+        }
+        singlePart.add(bytes, fnameStart, fnameEnd, lnameStart, lnameEnd, age);
+    }
+
+    // Gives the blocks back to the buffer of the store, once the snapshot is written or the records are not needed.
+    // A released writer collects no more rows.
+    @Override
+    public synchronized void release() {
+        dropped = true;
+        bufferedRowsLeft.addAndGet(blocks * BLOCK_ROWS);
+        blocks = 0;
+        for (Part part : parts) {
+            part.ages.clear();
+            part.fnames.clear();
+            part.lnames.clear();
+        }
+    }
+
+    // More rows than the limit, the buffer was full or the writer was released
+    public boolean isDropped() {
+        return dropped;
+    }
+
+    boolean isTooLarge() {
+        return dropped || getRows() > maxRows;
+    }
+
+    synchronized List<Part> getParts() {
+        return new ArrayList<>(parts);
+    }
+
+    private synchronized long getRows() {
+        long rows = 0;
+        for (Part part : parts) {
+            rows += part.size;
+        }
+        return rows;
+    }
+
+    // Every part has at most one block that is not full, so the rows collected are at least the rows of the other
+    // blocks. The exact count is checked before the snapshot is written.
+    private synchronized boolean newBlock(Part part) {
+        if (dropped) {
+            return false;
+        }
+        if ((blocks - parts.size()) * BLOCK_ROWS >= maxRows || !takeBufferedRows()) {
+            release();
+            return false;
+        }
+        blocks++;
+        part.ageBlock = new byte[BLOCK_ROWS];
+        part.fnameBlock = new int[BLOCK_ROWS];
+        part.lnameBlock = new int[BLOCK_ROWS];
+        part.ages.add(part.ageBlock);
+        part.fnames.add(part.fnameBlock);
+        part.lnames.add(part.lnameBlock);
+        return true;
+    }
+
+    private boolean takeBufferedRows() {
+        while (true) {
+            long current = bufferedRowsLeft.get();
+            if (current < BLOCK_ROWS) {
+                return false;
+            }
+            if (bufferedRowsLeft.compareAndSet(current, current - BLOCK_ROWS)) {
+                return true;
+            }
+        }
+    }
+
+    // The columns of one part, the names are ids of the dictionary of the part. Row i is at index i % BLOCK_ROWS of
+    // block i / BLOCK_ROWS, so a part grows without copying its rows.
+    class Part implements RecordSink {
+        final NameDictionary names = new NameDictionary();
+        final List<byte[]> ages = new ArrayList<>();
+        final List<int[]> fnames = new ArrayList<>();
+        final List<int[]> lnames = new ArrayList<>();
+        int size;
+        // The last block of the part, a row is added without a lookup in the lists
+        private byte[] ageBlock;
+        private int[] fnameBlock;
+        private int[] lnameBlock;
+
+        @Override
+        public void add(ByteBuffer bytes, int fnameStart, int fnameEnd, int lnameStart, int lnameEnd, int age) {
+            if (dropped) {
+                return;
+            }
+            int row = size % BLOCK_ROWS;
+            if (row == 0 && !newBlock(this)) {
+                return;
+            }
+            // Ages are between 0 and 150, one byte each
+            ageBlock[row] = (byte) age;
+            fnameBlock[row] = names.intern(bytes, fnameStart, fnameEnd);
+            lnameBlock[row] = names.intern(bytes, lnameStart, lnameEnd);
+            size++;
+        }
+
+        int blockRows(int block) {
+            return Math.min(BLOCK_ROWS, size - block * BLOCK_ROWS);
+        }
+
+        int getFname(int row) {
+            return fnames.get(row / BLOCK_ROWS)[row % BLOCK_ROWS];
+        }
+
+        int getLname(int row) {
+            return lnames.get(row / BLOCK_ROWS)[row % BLOCK_ROWS];
+        }
+    }
+}
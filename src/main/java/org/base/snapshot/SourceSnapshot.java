@@ -0,0 +1,222 @@
+package org.base.snapshot;
+
+import org.base.aggregator.NameDictionary;
+import org.base.aggregator.RecordAggregate;
+import org.base.fetcher.FetchResponse;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.base.aggregator.AgeHistogram.MAX_AGE;
+
+// A parsed source stored in columns: the age of every row as one byte, and the first and last name of every row as
+// ids into one dictionary of the names of the source. The file is memory mapped, rebuilding the aggregate reads the
+// age column only and decodes the names of the first person of each age.
+//
+// Layout: magic, version, the source, its file size and modification time or its ETag and Last-Modified, the CSV
+// check, the line errors, the row count, the name dictionary, then the age, first name and last name columns.
+public class SourceSnapshot {
+    private static final int MAGIC = 0x53534e50;
+    private static final int VERSION = 1;
+    private static final int NO_STRING = -1;
+
+    private final String pathOrUrl;
+    private final long fileSize;
+    private final long modifiedMillis;
+    private final FetchResponse validators;
+    private final boolean validCSV;
+    private final List<String> recordLineErrors;
+    private final ByteBuffer buffer;
+    private final int rows;
+    private final int dictionaryOffset;
+    private final int agesOffset;
+    private final int fnamesOffset;
+    private final int lnamesOffset;
+
+    private SourceSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        ByteBuffer header = buffer.duplicate();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a snapshot of this version");
+        }
+        this.pathOrUrl = getString(header);
+        this.fileSize = header.getLong();
+        this.modifiedMillis = header.getLong();
+        String eTag = getString(header);
+        String lastModified = getString(header);
+        this.validators = eTag == null && lastModified == null ? null : new FetchResponse(false, eTag, lastModified);
+        this.validCSV = header.get() != 0;
+        int lineErrorCount = header.getInt();
+        List<String> lineErrors = new ArrayList<>(lineErrorCount);
+        for (int i = 0; i < lineErrorCount; i++) {
+            lineErrors.add(getString(header));
+        }
+        this.recordLineErrors = Collections.unmodifiableList(lineErrors);
+        this.rows = header.getInt();
+        this.dictionaryOffset = header.position();
+        int names = header.getInt();
+        int nameBytes = header.getInt();
+        this.agesOffset = dictionaryOffset + 8 + (names + 1) * 4 + nameBytes;
+        this.fnamesOffset = agesOffset + rows;
+        this.lnamesOffset = fnamesOffset + rows * 4;
+        if ((long) lnamesOffset + rows * 4L != buffer.limit()) {
+            throw new IOException("Snapshot is incomplete");
+        }
+    }
+
+    static SourceSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot is larger than 2GB");
+            }
+            // The mapping stays valid after the channel is closed
+            return new SourceSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // A local file is identified by its size and modification time, a URL by the validators of its response
+    static void write(Path file, String pathOrUrl, long fileSize, long modifiedMillis, FetchResponse validators, boolean validCSV,
+                      List<String> recordLineErrors, SnapshotWriter writer) throws IOException {
+        // The names of every part are added to one dictionary, their ids in it replace the ids of the part
+        List<SnapshotWriter.Part> parts = writer.getParts();
+        NameDictionary names = new NameDictionary();
+        List<int[]> partIds = new ArrayList<>(parts.size());
+        long rows = 0;
+        for (SnapshotWriter.Part part : parts) {
+            partIds.add(names.internAll(part.names));
+            rows += part.size;
+        }
+        if (rows * 9 + names.serializedSize() > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot would be larger than 2GB");
+        }
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            writeString(output, pathOrUrl);
+            output.writeLong(fileSize);
+            output.writeLong(modifiedMillis);
+            writeString(output, validators == null ? null : validators.getETag());
+            writeString(output, validators == null ? null : validators.getLastModified());
+            output.writeByte(validCSV ? 1 : 0);
+            output.writeInt(recordLineErrors.size());
+            for (String lineError : recordLineErrors) {
+                writeString(output, lineError);
+            }
+            output.writeInt((int) rows);
+
+            ByteBuffer dictionary = ByteBuffer.allocate(names.serializedSize());
+            names.writeTo(dictionary);
+            output.write(dictionary.array());
+
+            for (SnapshotWriter.Part part : parts) {
+                for (int block = 0; block < part.ages.size(); block++) {
+                    output.write(part.ages.get(block), 0, part.blockRows(block));
+                }
+            }
+            for (int i = 0; i < parts.size(); i++) {
+                SnapshotWriter.Part part = parts.get(i);
+                for (int row = 0; row < part.size; row++) {
+                    output.writeInt(partIds.get(i)[part.getFname(row)]);
+                }
+            }
+            for (int i = 0; i < parts.size(); i++) {
+                SnapshotWriter.Part part = parts.get(i);
+                for (int row = 0; row < part.size; row++) {
+                    output.writeInt(partIds.get(i)[part.getLname(row)]);
+                }
+            }
+        }
+    }
+
+    public String getPathOrUrl() {
+        return pathOrUrl;
+    }
+
+    public boolean isSameFile(long fileSize, long modifiedMillis) {
+        return validators == null && this.fileSize == fileSize && this.modifiedMillis == modifiedMillis;
+    }
+
+    // Null for a local file or a URL whose server sent no validators
+    public FetchResponse getValidators() {
+        return validators;
+    }
+
+    public boolean isValidCSV() {
+        return validCSV;
+    }
+
+    public List<String> getRecordLineErrors() {
+        return recordLineErrors;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public long getSize() {
+        return buffer.limit();
+    }
+
+    public int getAge(int row) {
+        return buffer.get(agesOffset + row) & 0xFF;
+    }
+
+    public String getFname(int row) {
+        return NameDictionary.read(buffer, dictionaryOffset, buffer.getInt(fnamesOffset + row * 4));
+    }
+
+    public String getLname(int row) {
+        return NameDictionary.read(buffer, dictionaryOffset, buffer.getInt(lnamesOffset + row * 4));
+    }
+
+    // The same aggregate as parsing the source, the person kept for each age is the first row with that age
+    public RecordAggregate toAggregate() {
+        long[] ageCounts = new long[MAX_AGE + 1];
+        int[] firstRows = new int[MAX_AGE + 1];
+        for (int row = 0; row < rows; row++) {
+            int age = getAge(row);
+            if (ageCounts[age]++ == 0) {
+                firstRows[age] = row;
+            }
+        }
+
+        RecordAggregate allData = new RecordAggregate();
+        for (int age = 0; age <= MAX_AGE; age++) {
+            if (ageCounts[age] > 0 && allData.add(age, ageCounts[age])) {
+                allData.setPersonWithAge(age, getFname(firstRows[age]) + " " + getLname(firstRows[age]));
+            }
+        }
+        return allData;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(NO_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NO_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
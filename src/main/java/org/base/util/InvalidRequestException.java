@@ -0,0 +1,10 @@
+package org.base.util;
+
+// A request parameter that can not be used, such as a percentile above 100 or an unknown group key. It is answered
+// with 400 Bad Request, other runtime exceptions of the request handling are not.
+public class InvalidRequestException extends RuntimeException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
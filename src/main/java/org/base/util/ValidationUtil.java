@@ -11,8 +11,13 @@ import java.util.List;
 
 // Class used for validating files
 public class ValidationUtil {
+    // A gzip compressed CSV file is named .csv.gz, the first line is checked after it was inflated
     public static boolean isCSVFile(String filePath, String firstLine) {
-        if (!filePath.toLowerCase().endsWith(".csv")) {
+        String name = filePath.toLowerCase();
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - ".gz".length());
+        }
+        if (!name.endsWith(".csv")) {
             return false;
         }
         return firstLine != null && (firstLine.contains(","));
@@ -28,6 +33,23 @@ public class ValidationUtil {
         return dataURLs;
     }
 
+    // Percentiles given as a comma separated list such as "50,90,99.9"
+    public static double[] readPercentiles(String percentiles) {
+        String[] values = percentiles.split(",");
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            try {
+                result[i] = Double.parseDouble(values[i].trim());
+            } catch (NumberFormatException e) {
+                throw new InvalidRequestException("Percentile " + values[i] + " is not a number");
+            }
+            if (!(result[i] >= 0 && result[i] <= 100)) {
+                throw new InvalidRequestException("Percentile " + values[i] + " is not between 0 and 100");
+            }
+        }
+        return result;
+    }
+
     public static boolean isURL(String pathOrUrl) {
         return pathOrUrl.toLowerCase().startsWith("http://") || pathOrUrl.toLowerCase().startsWith("https://");
     }
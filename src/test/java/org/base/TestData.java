@@ -0,0 +1,42 @@
+package org.base;
+
+import org.base.aggregator.RecordAggregate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+// Fixtures shared by the tests of several packages
+public final class TestData {
+
+    private TestData() {
+    }
+
+    // An aggregate of the ages, the first person of each age is named after the age
+    public static RecordAggregate aggregate(int... ages) {
+        RecordAggregate allData = new RecordAggregate();
+        for (int age : ages) {
+            if (allData.add(age)) {
+                allData.setPersonWithAge(age, "Person " + age);
+            }
+        }
+        return allData;
+    }
+
+    public static byte[] readResource(String name) throws IOException {
+        try (InputStream inputStream = ClassLoader.getSystemResourceAsStream(name)) {
+            return readAll(Objects.requireNonNull(inputStream, name));
+        }
+    }
+
+    public static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,79 @@
+package org.base.aggregator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExtendedStatisticsTest {
+
+    @Test
+    void should_use_nearest_rank_percentiles() {
+        // Given
+        AgeHistogram histogram = histogram(15, 20, 35, 40, 50);
+
+        // When
+        ExtendedStatistics extendedStatistics = new ExtendedStatistics(histogram, new double[]{0, 5, 30, 40, 50, 100});
+
+        // Then
+        assertArrayEquals(new int[]{15, 15, 20, 20, 35, 50}, extendedStatistics.getPercentileAges());
+        assertEquals(15, extendedStatistics.getMinAge());
+        assertEquals(50, extendedStatistics.getMaxAge());
+        assertEquals(Arrays.asList(15, 20, 35, 40, 50), Arrays.asList(extendedStatistics.getAgeCounts().keySet().toArray()));
+    }
+
+    @Test
+    void should_match_statistics_of_the_sorted_records() {
+        Random random = new Random(11);
+        for (int i = 0; i < 500; i++) {
+            // Given
+            int[] ages = new int[1 + random.nextInt(300)];
+            for (int j = 0; j < ages.length; j++) {
+                ages[j] = random.nextInt(151);
+            }
+            double[] percentiles = {random.nextInt(101), 99.9, 50};
+
+            // When
+            ExtendedStatistics extendedStatistics = new ExtendedStatistics(histogram(ages), percentiles);
+
+            // Then
+            int[] sorted = ages.clone();
+            Arrays.sort(sorted);
+            double mean = Arrays.stream(ages).average().getAsDouble();
+            double variance = Arrays.stream(ages).mapToDouble(age -> (age - mean) * (age - mean)).sum() / ages.length;
+            assertEquals(sorted[0], extendedStatistics.getMinAge());
+            assertEquals(sorted[sorted.length - 1], extendedStatistics.getMaxAge());
+            assertEquals(variance, extendedStatistics.getVariance(), 1e-9);
+            for (int p = 0; p < percentiles.length; p++) {
+                int rank = Math.max(0, (int) Math.ceil(percentiles[p] * ages.length / 100 - 1e-9) - 1);
+                assertEquals(sorted[rank], extendedStatistics.getPercentileAges()[p]);
+            }
+        }
+    }
+
+    @Test
+    void should_keep_variance_exact_for_many_records_of_one_age() {
+        // Given
+        AgeHistogram histogram = new AgeHistogram();
+        histogram.add(100, 3_000_000_000L);
+        histogram.add(101, 3_000_000_000L);
+
+        // When
+        ExtendedStatistics extendedStatistics = new ExtendedStatistics(histogram, new double[]{50});
+
+        // Then
+        assertEquals(0.25, extendedStatistics.getVariance(), 1e-12);
+        assertEquals(0.5, extendedStatistics.getStandardDeviation(), 1e-12);
+        assertEquals(100, extendedStatistics.getPercentileAges()[0]);
+    }
+
+    private static AgeHistogram histogram(int... ages) {
+        AgeHistogram histogram = new AgeHistogram();
+        for (int age : ages) {
+            histogram.add(age);
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,80 @@
+package org.base.aggregator;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GroupAggregateTest {
+
+    @Test
+    void should_count_keys_after_the_limit_in_the_other_groups() {
+        // Given
+        GroupAggregate groups = new GroupAggregate(2);
+
+        // When
+        add(groups, "SMITH", 30);
+        add(groups, "JONES", 40);
+        add(groups, "BROWN", 50);
+        add(groups, "SMITH", 32);
+
+        // Then
+        assertEquals(2, groups.size());
+        assertEquals(2, groups.getHistogram(0).getCount());
+        assertEquals(62, groups.getHistogram(0).getSum());
+        assertEquals(1, groups.getOtherGroups().getCount());
+        assertEquals(50, groups.getOtherGroups().getSum());
+    }
+
+    @Test
+    void should_merge_parts_within_the_limit_and_return_largest_groups_first() {
+        // Given
+        GroupAggregate first = new GroupAggregate(10);
+        add(first, "SMITH", 30);
+        add(first, "JONES", 40);
+        GroupAggregate second = new GroupAggregate(10);
+        add(second, "JONES", 41);
+        add(second, "BROWN", 50);
+        add(second, "BROWN", 51);
+        add(second, "BROWN", 52);
+        GroupAggregate merged = new GroupAggregate(2);
+
+        // When
+        merged.merge(first);
+        merged.merge(second);
+        int[] top = merged.topGroups(5);
+
+        // Then
+        assertEquals(2, top.length);
+        assertEquals("JONES", merged.getKey(top[0]));
+        assertEquals("SMITH", merged.getKey(top[1]));
+        assertEquals(81, merged.getHistogram(top[0]).getSum());
+        assertEquals(3, merged.getOtherGroups().getCount());
+    }
+
+    @Test
+    void should_break_ties_by_key_and_group_whole_histograms() {
+        // Given
+        GroupAggregate groups = new GroupAggregate(10);
+        AgeHistogram histogram = new AgeHistogram();
+        histogram.add(20, 3);
+
+        // When
+        groups.add("b.csv", histogram);
+        groups.add("a.csv", histogram);
+        groups.add("c.csv", new AgeHistogram());
+        int[] top = groups.topGroups(2);
+
+        // Then
+        assertEquals("a.csv", groups.getKey(top[0]));
+        assertEquals("b.csv", groups.getKey(top[1]));
+        assertEquals(3, groups.getHistogram(top[0]).getCount(20));
+    }
+
+    private static void add(GroupAggregate groups, String key, int age) {
+        byte[] bytes = (" " + key + " ").getBytes(StandardCharsets.UTF_8);
+        groups.add(ByteBuffer.wrap(bytes), 1, bytes.length - 1, age);
+    }
+}
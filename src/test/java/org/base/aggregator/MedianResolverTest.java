@@ -0,0 +1,79 @@
+package org.base.aggregator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.base.TestData.aggregate;
+import static org.base.aggregator.AgeHistogram.isValidAge;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MedianResolverTest {
+
+    @Test
+    void should_round_up_to_the_next_person_when_middle_ages_differ() {
+        // Given
+        RecordAggregate allData = aggregate(20, 20, 25, 30);
+        allData.merge(aggregate(22, 31));
+
+        // When
+        MedianResolver medianResolver = new MedianResolver(allData);
+
+        // Then
+        assertEquals(23.5, medianResolver.getMedianAge());
+        assertEquals("Person 25", medianResolver.getPersonWithMedianAge());
+    }
+
+    @Test
+    void should_select_the_same_person_as_the_round_up_search() {
+        Random random = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            // Given, a few sparse ages so the two middle ages are often far apart
+            int[] ages = new int[2 + random.nextInt(20)];
+            for (int j = 0; j < ages.length; j++) {
+                ages[j] = random.nextInt(151);
+            }
+            RecordAggregate allData = aggregate(ages);
+            AgeHistogram histogram = allData.getHistogram();
+            long size = histogram.getCount();
+            double expectedMedian = size % 2 == 0
+                    ? (histogram.ageAtRank(size / 2 - 1) + histogram.ageAtRank(size / 2)) / 2.0
+                    : histogram.ageAtRank(size / 2);
+
+            // When
+            MedianResolver medianResolver = new MedianResolver(allData);
+
+            // Then
+            assertEquals(expectedMedian, medianResolver.getMedianAge());
+            assertEquals(findPersonByMedianAgeRoundUp(allData, expectedMedian), medianResolver.getPersonWithMedianAge());
+        }
+    }
+
+    @Test
+    void should_have_no_person_without_records() {
+        // When
+        MedianResolver medianResolver = new MedianResolver(new RecordAggregate());
+
+        // Then
+        assertEquals(0, medianResolver.getMedianAge());
+        assertNull(medianResolver.getPersonWithMedianAge());
+    }
+
+    // The search the resolver replaces: try the median, then the rounded up median, then every higher age
+    private static String findPersonByMedianAgeRoundUp(RecordAggregate allData, double medianAge) {
+        String person = findPersonByAge(allData, medianAge);
+        if (person == null) {
+            double roundUpAge = Math.ceil(medianAge);
+            person = findPersonByAge(allData, roundUpAge);
+            if (person == null && roundUpAge + 1 <= 150) {
+                return findPersonByMedianAgeRoundUp(allData, roundUpAge + 1);
+            }
+        }
+        return person;
+    }
+
+    private static String findPersonByAge(RecordAggregate allData, double targetAge) {
+        int age = (int) targetAge;
+        return age != targetAge || !isValidAge(age) ? null : allData.getPersonWithAge(age);
+    }
+}
@@ -0,0 +1,61 @@
+package org.base.cache;
+
+import org.base.aggregator.RecordAggregate;
+import org.base.config.StatisticsProperties;
+import org.base.dto.CacheStats;
+import org.base.fetcher.FetchResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UrlSourceCacheTest {
+
+    @Test
+    void should_evict_least_recently_used_source() {
+        // Given
+        StatisticsProperties statisticsProperties = new StatisticsProperties();
+        statisticsProperties.getCache().setMaxEntries(2);
+        UrlSourceCache cache = new UrlSourceCache(statisticsProperties);
+        cache.put("http://host/a.csv", source("\"a\""));
+        cache.put("http://host/b.csv", source("\"b\""));
+
+        // When
+        cache.notModified(cache.get("http://host/a.csv"));
+        cache.put("http://host/c.csv", source("\"c\""));
+
+        // Then
+        assertNotNull(cache.get("http://host/a.csv"));
+        assertNull(cache.get("http://host/b.csv"));
+        assertNotNull(cache.get("http://host/c.csv"));
+        CacheStats stats = cache.getStats();
+        assertEquals(2, stats.getEntries());
+        assertEquals(1, stats.getHits());
+        assertEquals(3, stats.getMisses());
+        assertEquals(1, stats.getEvictions());
+    }
+
+    @Test
+    void should_not_keep_sources_without_validators_or_expired() throws InterruptedException {
+        // Given
+        StatisticsProperties statisticsProperties = new StatisticsProperties();
+        statisticsProperties.getCache().setTtl(Duration.ofMillis(1));
+        UrlSourceCache cache = new UrlSourceCache(statisticsProperties);
+
+        // When
+        cache.put("http://host/a.csv", source(null));
+        cache.put("http://host/b.csv", source("\"b\""));
+        Thread.sleep(10);
+
+        // Then
+        assertNull(cache.get("http://host/a.csv"));
+        assertNull(cache.get("http://host/b.csv"));
+        assertEquals(1, cache.getStats().getExpirations());
+    }
+
+    private static CachedSource source(String eTag) {
+        return new CachedSource(new RecordAggregate(), new ArrayList<>(), true, new FetchResponse(false, eTag, null));
+    }
+}
@@ -0,0 +1,84 @@
+package org.base.exectutor;
+
+import org.base.config.StatisticsProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutorServiceManagerTest {
+
+    @Test
+    void should_reject_request_and_cancel_its_queued_tasks_when_queue_is_full() throws InterruptedException {
+        // Given
+        StatisticsProperties properties = new StatisticsProperties();
+        properties.getExecutor().setIoThreads(1);
+        properties.getExecutor().setIoQueueCapacity(1);
+        ExecutorServiceManager executorServiceManager = new ExecutorServiceManager(properties);
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> blockingTask = executorServiceManager.submitTask(() -> {
+            running.countDown();
+            release.await();
+            return "done";
+        });
+        running.await();
+
+        List<Callable<String>> tasks = Arrays.asList(() -> "queued", () -> "rejected");
+
+        // When
+        assertThrows(RejectedExecutionException.class, () -> executorServiceManager.submitTasks(tasks));
+        release.countDown();
+
+        // Then
+        assertEquals("done", blockingTask.join());
+        assertEquals(1, executorServiceManager.getStats().get(0).getRejectedTasks());
+        executorServiceManager.shutdown();
+    }
+
+    @Test
+    @EnabledIf("virtualThreadsAvailable")
+    void should_complete_all_fetch_tasks_in_virtual_thread_mode() {
+        // Given
+        StatisticsProperties properties = new StatisticsProperties();
+        properties.getExecutor().setVirtualThreads(true);
+        properties.getExecutor().setMaxConcurrentFetches(2);
+        ExecutorServiceManager executorServiceManager = new ExecutorServiceManager(properties);
+
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            int value = i;
+            tasks.add(() -> value);
+        }
+
+        // When
+        List<CompletableFuture<Integer>> futures = executorServiceManager.submitTasks(tasks);
+        executorServiceManager.waitForCompletion(futures);
+
+        // Then
+        assertEquals(5050, futures.stream().mapToInt(CompletableFuture::join).sum());
+        assertEquals(100, executorServiceManager.getStats().get(0).getCompletedTasks());
+        assertEquals("fetch-virtual", executorServiceManager.getStats().get(0).getName());
+        executorServiceManager.shutdown();
+    }
+
+    // The JUnit version of this build has no JRE constant for 21, so the condition looks for the JDK 21 factory
+    static boolean virtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.base.fetcher;
+
+import org.base.aggregator.RecordAggregate;
+import org.base.config.StatisticsProperties;
+import org.base.exectutor.ExecutorServiceManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkedFileParserTest {
+
+    private final ChunkedFileParser chunkedFileParser = new ChunkedFileParser(new ExecutorServiceManager(new StatisticsProperties()));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void should_give_the_same_result_as_sequential_parsing_for_any_chunk_count() throws IOException {
+        // Given
+        Path file = writeCSV("records.csv", "fname, lname, age\r\n");
+        RecordAggregate sequentialData = new RecordAggregate();
+        List<String> sequentialErrors = new ArrayList<>();
+        try (InputStream inputStream = new FileInputStream(file.toFile())) {
+            new CsvRecordParser("records.csv", sequentialData, sequentialErrors).parse(inputStream);
+        }
+
+        for (int chunks = 1; chunks <= 16; chunks++) {
+            RecordAggregate allData = new RecordAggregate();
+            List<String> lineErrors = new ArrayList<>();
+
+            // When
+            boolean validCSV;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                validCSV = chunkedFileParser.parse("records.csv", channel, chunks, allData, lineErrors);
+            }
+
+            // Then
+            assertTrue(validCSV);
+            assertEquals(sequentialData.getCount(), allData.getCount());
+            assertEquals(sequentialData.getHistogram().getSum(), allData.getHistogram().getSum());
+            assertEquals(sequentialErrors, lineErrors);
+            for (int age = 0; age <= 150; age++) {
+                assertEquals(sequentialData.getPersonWithAge(age), allData.getPersonWithAge(age));
+            }
+        }
+    }
+
+    @Test
+    void should_check_the_header_on_the_first_chunk_only() throws IOException {
+        // Given
+        Path file = writeCSV("records.csv", "this is not actually a csv file\n");
+        RecordAggregate allData = new RecordAggregate();
+
+        // When
+        boolean validCSV;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            validCSV = chunkedFileParser.parse("records.csv", channel, 4, allData, new ArrayList<>());
+        }
+
+        // Then
+        assertFalse(validCSV);
+        assertEquals(0, allData.getCount());
+    }
+
+    @Test
+    void should_parse_lines_crossing_mapped_windows() throws IOException {
+        // Given
+        Path file = writeCSV("records.csv", "fname, lname, age\n");
+        RecordAggregate allData = new RecordAggregate();
+        RecordAggregate windowedData = new RecordAggregate();
+
+        // When
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedFileReader.read(channel, 0, channel.size(), new CsvRecordParser("records.csv", allData, new ArrayList<>()));
+            MappedFileReader.read(channel, 0, channel.size(), 7, new CsvRecordParser("records.csv", windowedData, new ArrayList<>()));
+        }
+
+        // Then
+        assertEquals(allData.getCount(), windowedData.getCount());
+        assertEquals(allData.getHistogram().getSum(), windowedData.getHistogram().getSum());
+        assertEquals(allData.getPersonWithAge(42), windowedData.getPersonWithAge(42));
+    }
+
+    @Test
+    void should_inflate_gzip_file_of_concatenated_members() throws IOException {
+        // Given
+        Path file = writeCSV("records.csv", "fname, lname, age\n");
+        byte[] csv = Files.readAllBytes(file);
+        Path compressedFile = tempDir.resolve("records.csv.gz");
+        try (OutputStream outputStream = Files.newOutputStream(compressedFile)) {
+            // Two gzip members, as written by parallel compressors
+            for (int[] range : new int[][]{{0, csv.length / 2}, {csv.length / 2, csv.length}}) {
+                GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+                gzipOutputStream.write(csv, range[0], range[1] - range[0]);
+                gzipOutputStream.finish();
+            }
+        }
+        RecordAggregate allData = new RecordAggregate();
+        RecordAggregate inflatedData = new RecordAggregate();
+
+        // When
+        boolean validCSV = chunkedFileParser.parse("records.csv", file, allData, new ArrayList<>());
+        boolean validCompressedCSV = chunkedFileParser.parse("records.csv.gz", compressedFile, inflatedData, new ArrayList<>());
+
+        // Then
+        assertTrue(validCSV);
+        assertTrue(validCompressedCSV);
+        assertEquals(allData.getCount(), inflatedData.getCount());
+        assertEquals(allData.getHistogram().getSum(), inflatedData.getHistogram().getSum());
+    }
+
+    private Path writeCSV(String name, String header) throws IOException {
+        StringBuilder csv = new StringBuilder(header);
+        for (int i = 0; i < 2000; i++) {
+            if (i % 97 == 0) {
+                csv.append("Bad, LINE").append(i).append('\n');
+            } else {
+                csv.append("Person").append(i).append(", NAME").append(i).append(", ").append(i % 151).append(i % 2 == 0 ? "\r\n" : "\n");
+            }
+        }
+        Path file = tempDir.resolve(name);
+        Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
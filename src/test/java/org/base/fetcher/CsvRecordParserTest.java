@@ -0,0 +1,227 @@
+package org.base.fetcher;
+
+import org.base.aggregator.GroupAggregate;
+import org.base.aggregator.GroupBy;
+import org.base.aggregator.RecordAggregate;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvRecordParserTest {
+
+    private static final String CSV = "fname, lname, age\r\n" +
+            "Phillip, GILES, 37\r\n" +
+            "Michaela, , 39\n" +
+            "Mikayla, SERRANO, 34,,\n" +
+            "Melanie, POWELL, Faith, CHAVEZ, 49\n" +
+            "Caitlin, PARKER, \n" +
+            "Cory, FINLEY,\n" +
+            "Jorge, MALDONADO, 1x\n" +
+            "Desiree, SCOTT, 151\n" +
+            "\n" +
+            "Sergio, CANNON, +18\r" +
+            "Jesus, BRYANT, 99999999999";
+
+    @Test
+    void should_classify_lines_the_same_way_as_split_and_parseInt() throws IOException {
+        // Given
+        RecordAggregate allData = new RecordAggregate();
+        List<String> lineErrors = new ArrayList<>();
+        CsvRecordParser parser = new CsvRecordParser("file.csv", allData, lineErrors);
+
+        // When
+        parser.parse(new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8)));
+
+        // Then
+        assertTrue(parser.isValidCSV());
+        assertEquals(4, allData.getCount());
+        assertEquals("Phillip GILES", allData.getPersonWithAge(37));
+        assertEquals("Michaela ", allData.getPersonWithAge(39));
+        assertEquals("Mikayla SERRANO", allData.getPersonWithAge(34));
+        assertEquals("Sergio CANNON", allData.getPersonWithAge(18));
+        assertEquals(7, lineErrors.size());
+        assertEquals("RecordError on line: Melanie, POWELL, Faith, CHAVEZ, 49 for url file.csv", lineErrors.get(0));
+        assertEquals("Invalid age format in line: Caitlin, PARKER,  for url file.csv", lineErrors.get(1));
+        assertEquals("RecordError on line: Cory, FINLEY, for url file.csv", lineErrors.get(2));
+        assertEquals("Invalid age format in line: Jorge, MALDONADO, 1x for url file.csv", lineErrors.get(3));
+        assertEquals("Age out of range in line: Desiree, SCOTT, 151 for url file.csv", lineErrors.get(4));
+        assertEquals("RecordError on line:  for url file.csv", lineErrors.get(5));
+        assertEquals("Invalid age format in line: Jesus, BRYANT, 99999999999 for url file.csv", lineErrors.get(6));
+    }
+
+    @Test
+    void should_parse_lines_split_across_buffers() {
+        // Given
+        RecordAggregate allData = new RecordAggregate();
+        List<String> lineErrors = new ArrayList<>();
+        CsvRecordParser parser = new CsvRecordParser("file.csv", allData, lineErrors);
+        byte[] bytes = CSV.getBytes(StandardCharsets.UTF_8);
+
+        // When
+        for (byte b : bytes) {
+            parser.feed(ByteBuffer.wrap(new byte[]{b}));
+        }
+        parser.finish();
+
+        // Then
+        assertEquals(4, allData.getCount());
+        assertEquals("Sergio CANNON", allData.getPersonWithAge(18));
+        assertEquals(7, lineErrors.size());
+    }
+
+    @Test
+    void should_reject_source_without_csv_header() throws IOException {
+        // Given
+        RecordAggregate allData = new RecordAggregate();
+        CsvRecordParser parser = new CsvRecordParser("file6_bad.csv", allData, new ArrayList<>());
+
+        // When
+        parser.parse(new ByteArrayInputStream("this is not actually a csv file\nPhillip, GILES, 37".getBytes(StandardCharsets.UTF_8)));
+
+        // Then
+        assertFalse(parser.isValidCSV());
+        assertEquals(0, allData.getCount());
+    }
+
+    @Test
+    void should_stop_at_source_row_limit_and_report_it() throws IOException {
+        // Given
+        RecordAggregate allData = new RecordAggregate();
+        SourceLimit sourceLimit = new ReadLimits(0, 2, 0, 0, false).newSource();
+        CsvRecordParser parser = new CsvRecordParser("file.csv", allData, new ArrayList<>(), sourceLimit);
+
+        // When
+        parser.parse(new ByteArrayInputStream("fname, lname, age\nA, B, 10\nC, D, 20\nE, F, 30\n".getBytes(StandardCharsets.UTF_8)));
+
+        // Then
+        assertFalse(parser.isReading());
+        assertEquals(2, allData.getCount());
+        assertEquals("Source row limit exceeded", sourceLimit.getExceeded());
+    }
+
+    @Test
+    void should_stop_at_request_byte_limit_without_parsing_cut_line() {
+        // Given
+        ReadLimits readLimits = new ReadLimits(0, 0, 40, 0, false);
+        RecordAggregate first = new RecordAggregate();
+        RecordAggregate second = new RecordAggregate();
+        CsvRecordParser firstParser = new CsvRecordParser("first.csv", first, new ArrayList<>(), readLimits.newSource());
+        CsvRecordParser secondParser = new CsvRecordParser("second.csv", second, new ArrayList<>(), readLimits.newSource());
+
+        // When
+        firstParser.feed(ByteBuffer.wrap("fname, lname, age\nA, B, 10\n".getBytes(StandardCharsets.UTF_8)));
+        secondParser.feed(ByteBuffer.wrap("fname, lname, age\nC, D, 20\n".getBytes(StandardCharsets.UTF_8)));
+        firstParser.finish();
+        secondParser.finish();
+
+        // Then
+        assertEquals(1, first.getCount());
+        assertNull(firstParser.getSourceLimit().getExceeded());
+        assertEquals(0, second.getCount());
+        assertEquals("Request size limit exceeded", secondParser.getSourceLimit().getExceeded());
+    }
+
+    @Test
+    void should_not_truncate_sources_read_at_the_same_time_below_request_row_limit() {
+        // Given
+        ReadLimits readLimits = new ReadLimits(0, 0, 0, 1500, false);
+        List<CsvRecordParser> parsers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            parsers.add(new CsvRecordParser("source" + i + ".csv", new RecordAggregate(), new ArrayList<>(), readLimits.newSource()));
+        }
+
+        // When
+        parsers.forEach(parser -> parser.feed(ByteBuffer.wrap(csv(10).getBytes(StandardCharsets.UTF_8))));
+        parsers.forEach(CsvRecordParser::finish);
+
+        // Then
+        for (CsvRecordParser parser : parsers) {
+            assertNull(parser.getSourceLimit().getExceeded());
+        }
+    }
+
+    @Test
+    void should_give_rows_of_a_failed_source_back_to_the_request() {
+        // Given
+        ReadLimits readLimits = new ReadLimits(0, 0, 0, 20, false);
+        CsvRecordParser failed = new CsvRecordParser("failed.csv", new RecordAggregate(), new ArrayList<>(), readLimits.newSource());
+        failed.feed(ByteBuffer.wrap(csv(5).getBytes(StandardCharsets.UTF_8)));
+        RecordAggregate allData = new RecordAggregate();
+        CsvRecordParser retried = new CsvRecordParser("retried.csv", allData, new ArrayList<>(), readLimits.newSource());
+
+        // When, the failed source is released without finishing its parser, as a failed attempt is
+        failed.getSourceLimit().release();
+        failed.feed(ByteBuffer.wrap("A, B, 10\n".getBytes(StandardCharsets.UTF_8)));
+        retried.feed(ByteBuffer.wrap(csv(15).getBytes(StandardCharsets.UTF_8)));
+        retried.finish();
+
+        // Then
+        assertEquals("Request row limit exceeded", failed.getSourceLimit().getExceeded());
+        assertEquals(15, allData.getCount());
+        assertNull(retried.getSourceLimit().getExceeded());
+    }
+
+    @Test
+    void should_bound_line_errors_and_line_length() throws IOException {
+        // Given
+        StringBuilder csv = new StringBuilder("fname, lname, age\n");
+        for (int i = 0; i < CsvRecordParser.MAX_LINE_ERRORS + 5; i++) {
+            csv.append("bad line\n");
+        }
+        for (int i = 0; i < CsvRecordParser.MAX_LINE_LENGTH * 3; i++) {
+            csv.append('x');
+        }
+        csv.append("\nA, B, 10\n");
+        RecordAggregate allData = new RecordAggregate();
+        List<String> lineErrors = new ArrayList<>();
+        CsvRecordParser parser = new CsvRecordParser("file.csv", allData, lineErrors);
+
+        // When
+        parser.parse(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)));
+
+        // Then
+        assertEquals(1, allData.getCount());
+        assertEquals(CsvRecordParser.MAX_LINE_ERRORS + 1, lineErrors.size());
+        assertEquals("6 more line errors for url file.csv", lineErrors.get(lineErrors.size() - 1));
+    }
+
+    @Test
+    void should_merge_groups_of_a_chunk_into_the_source_when_the_chunk_is_parsed() throws IOException {
+        // Given
+        GroupBy groupBy = new GroupBy(GroupBy.Key.FNAME, 10, 100);
+        GroupAggregate sourceGroups = groupBy.newAggregate();
+        GroupingSink first = new GroupingSink(groupBy, sourceGroups);
+        GroupingSink second = new GroupingSink(groupBy, sourceGroups);
+        CsvRecordParser firstParser = new CsvRecordParser("file.csv", new RecordAggregate(), new ArrayList<>());
+        CsvRecordParser secondParser = new CsvRecordParser("file.csv", new RecordAggregate(), new ArrayList<>(), false);
+        firstParser.setRecordSink(first);
+        secondParser.setRecordSink(second);
+
+        // When
+        firstParser.parse(new ByteArrayInputStream(csv(30).getBytes(StandardCharsets.UTF_8)));
+        secondParser.parse(new ByteArrayInputStream("Person, P1, 20\nOther, P2, 30\n".getBytes(StandardCharsets.UTF_8)));
+
+        // Then
+        assertNull(first.getGroups());
+        assertNull(second.getGroups());
+        assertEquals(2, sourceGroups.size());
+        assertEquals(31, sourceGroups.getHistogram(0).getCount());
+        assertEquals("Other", sourceGroups.getKey(1));
+        assertEquals(0, sourceGroups.getOtherGroups().getCount());
+    }
+
+    private static String csv(int rows) {
+        StringBuilder csv = new StringBuilder("fname, lname, age\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append("Person, P").append(i).append(", ").append(20 + i % 50).append('\n');
+        }
+        return csv.toString();
+    }
+}
@@ -0,0 +1,98 @@
+package org.base.fetcher;
+
+import org.base.config.StatisticsProperties;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HostSchedulerTest {
+
+    @Test
+    void should_limit_requests_per_host_and_let_hosts_take_turns() {
+        // Given
+        StatisticsProperties statisticsProperties = new StatisticsProperties();
+        statisticsProperties.getFetch().setMaxConnectionsPerHost(1);
+        statisticsProperties.getFetch().setMaxConcurrentRequests(2);
+        HostScheduler hostScheduler = new HostScheduler(statisticsProperties);
+        List<String> started = new ArrayList<>();
+        List<CompletableFuture<String>> responses = new ArrayList<>();
+
+        // When
+        for (String url : new String[]{"http://a/1.csv", "http://a/2.csv", "http://a/3.csv", "http://b/1.csv"}) {
+            hostScheduler.submit(url, () -> {
+                CompletableFuture<String> response = new CompletableFuture<>();
+                started.add(url);
+                responses.add(response);
+                return response;
+            });
+        }
+        List<String> startedBeforeCompletion = new ArrayList<>(started);
+        responses.get(0).complete("done");
+
+        // Then
+        assertEquals(2, startedBeforeCompletion.size());
+        assertEquals("http://a/1.csv", startedBeforeCompletion.get(0));
+        assertEquals("http://b/1.csv", startedBeforeCompletion.get(1));
+        assertEquals(3, started.size());
+        assertEquals("http://a/2.csv", started.get(2));
+        assertEquals(1, hostScheduler.getStats().getQueuedTasks());
+    }
+
+    @Test
+    void should_open_circuit_after_failures_and_close_it_after_successful_trial() throws InterruptedException {
+        // Given
+        StatisticsProperties statisticsProperties = new StatisticsProperties();
+        statisticsProperties.getFetch().setCircuitFailureThreshold(2);
+        statisticsProperties.getFetch().setCircuitOpenDuration(Duration.ofMillis(200));
+        HostScheduler hostScheduler = new HostScheduler(statisticsProperties);
+
+        // When
+        for (int i = 0; i < 2; i++) {
+            CompletableFuture<String> failed = hostScheduler.submit("http://down/file.csv", () -> failedFuture(new IOException("Connection refused")));
+            assertThrows(CompletionException.class, failed::join);
+        }
+        CompletionException open = assertThrows(CompletionException.class,
+                () -> hostScheduler.submit("http://down/other.csv", () -> CompletableFuture.completedFuture("ok")).join());
+        String otherHost = hostScheduler.submit("http://up/file.csv", () -> CompletableFuture.completedFuture("ok")).join();
+        Thread.sleep(300);
+        String trial = hostScheduler.submit("http://down/file.csv", () -> CompletableFuture.completedFuture("ok")).join();
+        String closed = hostScheduler.submit("http://down/file.csv", () -> CompletableFuture.completedFuture("ok")).join();
+
+        // Then
+        assertTrue(open.getCause() instanceof CircuitOpenException);
+        assertEquals("ok", otherHost);
+        assertEquals("ok", trial);
+        assertEquals("ok", closed);
+        assertEquals(1, hostScheduler.getStats().getRejectedTasks());
+    }
+
+    @Test
+    void should_not_count_missing_urls_as_host_failures() {
+        // Given
+        StatisticsProperties statisticsProperties = new StatisticsProperties();
+        statisticsProperties.getFetch().setCircuitFailureThreshold(1);
+        HostScheduler hostScheduler = new HostScheduler(statisticsProperties);
+
+        // When
+        CompletableFuture<String> missing = hostScheduler.submit("http://host/missing.csv",
+                () -> failedFuture(new HttpStatusException("http://host/missing.csv", 404)));
+        assertThrows(CompletionException.class, missing::join);
+        String next = hostScheduler.submit("http://host/file.csv", () -> CompletableFuture.completedFuture("ok")).join();
+
+        // Then
+        assertEquals("ok", next);
+    }
+
+    private static CompletableFuture<String> failedFuture(Throwable error) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+}
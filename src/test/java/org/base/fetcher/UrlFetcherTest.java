@@ -0,0 +1,189 @@
+package org.base.fetcher;
+
+import com.sun.net.httpserver.HttpServer;
+import org.base.aggregator.RecordAggregate;
+import org.base.config.StatisticsProperties;
+import org.base.exectutor.ExecutorServiceManager;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import static org.base.TestData.readAll;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UrlFetcherTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    private static HttpServer server;
+    private static String baseUrl;
+
+    private final StatisticsProperties statisticsProperties = new StatisticsProperties();
+    private final ExecutorServiceManager executorServiceManager = new ExecutorServiceManager(statisticsProperties);
+    private final List<UrlFetcher> urlFetchers = Arrays.asList(
+            new AsyncUrlFetcher(statisticsProperties, executorServiceManager),
+            new BlockingUrlFetcher(executorServiceManager, statisticsProperties));
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        // Local HTTP server that serves the CSV test files with an ETag, answers 304 if the ETag matches and 404 for anything else.
+        // A .gz path is the test file compressed, other files are compressed with Content-Encoding if the client accepts gzip.
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath().substring(1);
+            boolean gzipFile = path.endsWith(".gz");
+            boolean gzipEncoding = !gzipFile && "gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            try (InputStream inputStream = ClassLoader.getSystemResourceAsStream(gzipFile ? path.substring(0, path.length() - 3) : path)) {
+                if (inputStream == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+                byte[] body = gzipFile || gzipEncoding ? gzip(readAll(inputStream)) : readAll(inputStream);
+                if (gzipEncoding) {
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(body);
+                }
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void should_stream_response_body_into_parser() {
+        for (UrlFetcher urlFetcher : urlFetchers) {
+            // Given
+            RecordAggregate allData = new RecordAggregate();
+            List<String> lineErrors = new ArrayList<>();
+            CsvRecordParser parser = new CsvRecordParser(baseUrl + "csvfiles/file9_bad.csv", allData, lineErrors);
+
+            // When
+            urlFetcher.fetch(baseUrl + "csvfiles/file9_bad.csv", null, parser).join();
+
+            // Then
+            assertTrue(parser.isValidCSV());
+            assertTrue(allData.getCount() > 0);
+            assertFalse(lineErrors.isEmpty());
+        }
+    }
+
+    @Test
+    void should_parse_body_of_async_client_on_the_parser_pool() {
+        // Given
+        String url = baseUrl + "csvfiles/file1.csv";
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        CsvRecordParser parser = new CsvRecordParser(url, new RecordAggregate(), new ArrayList<>());
+        parser.setRecordSink((bytes, fnameStart, fnameEnd, lnameStart, lnameEnd, age) -> threadNames.add(Thread.currentThread().getName()));
+
+        // When
+        new AsyncUrlFetcher(statisticsProperties, executorServiceManager).fetch(url, null, parser).join();
+
+        // Then
+        assertFalse(threadNames.isEmpty());
+        assertTrue(threadNames.stream().allMatch(name -> name.startsWith("parser-cpu-")), threadNames.toString());
+    }
+
+    @Test
+    void should_fail_when_url_is_not_found() {
+        for (UrlFetcher urlFetcher : urlFetchers) {
+            // Given
+            CsvRecordParser parser = new CsvRecordParser(baseUrl + "missing.csv", new RecordAggregate(), new ArrayList<>());
+
+            // When, Then
+            assertThrows(CompletionException.class, () -> urlFetcher.fetch(baseUrl + "missing.csv", null, parser).join());
+        }
+    }
+
+    @Test
+    void should_reject_response_that_is_not_a_csv_file() {
+        for (UrlFetcher urlFetcher : urlFetchers) {
+            // Given
+            RecordAggregate allData = new RecordAggregate();
+            CsvRecordParser parser = new CsvRecordParser(baseUrl + "csvfiles/file6_bad.csv", allData, new ArrayList<>());
+
+            // When
+            urlFetcher.fetch(baseUrl + "csvfiles/file6_bad.csv", null, parser).join();
+
+            // Then
+            assertFalse(parser.isValidCSV());
+            assertEquals(0, allData.getCount());
+        }
+    }
+
+    @Test
+    void should_revalidate_with_etag_of_previous_response() {
+        for (UrlFetcher urlFetcher : urlFetchers) {
+            // Given
+            String url = baseUrl + "csvfiles/file1.csv";
+            FetchResponse firstResponse = urlFetcher.fetch(url, null, new CsvRecordParser(url, new RecordAggregate(), new ArrayList<>())).join();
+            RecordAggregate allData = new RecordAggregate();
+
+            // When
+            FetchResponse secondResponse = urlFetcher.fetch(url, firstResponse, new CsvRecordParser(url, allData, new ArrayList<>())).join();
+
+            // Then
+            assertFalse(firstResponse.isNotModified());
+            assertEquals(ETAG, firstResponse.getETag());
+            assertTrue(secondResponse.isNotModified());
+            assertEquals(0, allData.getCount());
+        }
+    }
+
+    @Test
+    void should_inflate_gzip_file_and_gzip_content_encoding() {
+        for (UrlFetcher urlFetcher : urlFetchers) {
+            // Given
+            RecordAggregate encodedData = new RecordAggregate();
+            RecordAggregate fileData = new RecordAggregate();
+            CsvRecordParser encodedParser = new CsvRecordParser(baseUrl + "csvfiles/file1.csv", encodedData, new ArrayList<>());
+            CsvRecordParser fileParser = new CsvRecordParser(baseUrl + "csvfiles/file1.csv.gz", fileData, new ArrayList<>());
+
+            // When
+            urlFetcher.fetch(baseUrl + "csvfiles/file1.csv", null, encodedParser).join();
+            urlFetcher.fetch(baseUrl + "csvfiles/file1.csv.gz", null, fileParser).join();
+
+            // Then
+            assertTrue(encodedParser.isValidCSV());
+            assertTrue(fileParser.isValidCSV());
+            assertTrue(encodedData.getCount() > 0);
+            assertEquals(encodedData.getCount(), fileData.getCount());
+            assertEquals(encodedData.getHistogram().getSum(), fileData.getHistogram().getSum());
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(bytes);
+        }
+        return outputStream.toByteArray();
+    }
+}
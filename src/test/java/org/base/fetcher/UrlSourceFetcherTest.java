@@ -0,0 +1,178 @@
+package org.base.fetcher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.base.config.StatisticsProperties;
+import org.base.exectutor.ExecutorServiceManager;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UrlSourceFetcherTest {
+
+    private static final byte[] CSV = "fname, lname, age\nPhillip, GILES, 37\n".getBytes(StandardCharsets.UTF_8);
+    private static final ConcurrentHashMap<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+
+    private static HttpServer server;
+    private static String baseUrl;
+
+    private final List<ExecutorServiceManager> executorServiceManagers = new ArrayList<>();
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        // "flaky" fails with 503 on the first request, "slow" never answers in time, "slow-once" only answers the
+        // second request right away, "missing" is not found and "broken" closes the connection halfway through the body
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            int request = requestCounts.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+            try {
+                if (path.startsWith("/missing")) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else if (path.startsWith("/broken")) {
+                    sendBrokenCSV(exchange);
+                } else if (path.startsWith("/flaky") && request == 1) {
+                    exchange.sendResponseHeaders(503, -1);
+                } else if (path.startsWith("/slow-once") && request == 1 || path.startsWith("/slow/")) {
+                    sleep(3000);
+                    sendCSV(exchange);
+                } else {
+                    sendCSV(exchange);
+                }
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop(0);
+    }
+
+    @AfterEach
+    void shutdownExecutors() {
+        executorServiceManagers.forEach(ExecutorServiceManager::shutdown);
+    }
+
+    @Test
+    void should_retry_server_errors_but_not_missing_urls() {
+        // Given
+        UrlSourceFetcher urlSourceFetcher = urlSourceFetcher(new StatisticsProperties());
+
+        // When
+        UrlFetchResult result = urlSourceFetcher.fetch(baseUrl + "flaky/file.csv", null, Long.MAX_VALUE).join();
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> urlSourceFetcher.fetch(baseUrl + "missing/file.csv", null, Long.MAX_VALUE).join());
+
+        // Then
+        assertEquals(1, result.getAllData().getCount());
+        assertEquals(2, requestCounts.get("/flaky/file.csv").get());
+        assertEquals(404, ((HttpStatusException) error.getCause()).getStatus());
+        assertEquals(1, requestCounts.get("/missing/file.csv").get());
+    }
+
+    @Test
+    void should_fail_with_source_or_request_deadline() {
+        // Given
+        StatisticsProperties statisticsProperties = new StatisticsProperties();
+        statisticsProperties.getFetch().setSourceTimeout(Duration.ofMillis(300));
+        UrlSourceFetcher urlSourceFetcher = urlSourceFetcher(statisticsProperties);
+
+        // When
+        CompletionException sourceDeadline = assertThrows(CompletionException.class,
+                () -> urlSourceFetcher.fetch(baseUrl + "slow/source.csv", null, Long.MAX_VALUE).join());
+        CompletionException requestDeadline = assertThrows(CompletionException.class,
+                () -> urlSourceFetcher.fetch(baseUrl + "slow/request.csv", null, System.currentTimeMillis() + 100).join());
+
+        // Then
+        assertFalse(((SourceDeadlineException) sourceDeadline.getCause()).isRequestDeadline());
+        assertTrue(((SourceDeadlineException) requestDeadline.getCause()).isRequestDeadline());
+        assertTrue(UrlSourceFetcher.isTimeout(sourceDeadline));
+    }
+
+    @Test
+    void should_answer_with_hedged_request_when_first_request_is_slow() {
+        // Given
+        StatisticsProperties statisticsProperties = new StatisticsProperties();
+        statisticsProperties.getFetch().setHedge(true);
+        statisticsProperties.getFetch().setHedgeDelay(Duration.ofMillis(100));
+        UrlSourceFetcher urlSourceFetcher = urlSourceFetcher(statisticsProperties);
+        long startTime = System.currentTimeMillis();
+
+        // When
+        UrlFetchResult result = urlSourceFetcher.fetch(baseUrl + "slow-once/file.csv", null, Long.MAX_VALUE).join();
+
+        // Then
+        assertEquals(1, result.getAllData().getCount());
+        assertEquals(2, requestCounts.get("/slow-once/file.csv").get());
+        assertTrue(System.currentTimeMillis() - startTime < 3000);
+    }
+
+    @Test
+    void should_keep_line_errors_of_a_source_that_broke_off() {
+        // Given
+        StatisticsProperties statisticsProperties = new StatisticsProperties();
+        statisticsProperties.getFetch().setMaxRetries(0);
+        UrlSourceFetcher urlSourceFetcher = urlSourceFetcher(statisticsProperties);
+        List<String> failedLineErrors = new ArrayList<>();
+
+        // When
+        assertThrows(CompletionException.class, () -> urlSourceFetcher.fetch(baseUrl + "broken/file.csv", null, Long.MAX_VALUE,
+                ReadLimits.UNLIMITED, null, failedLineErrors).join());
+
+        // Then
+        assertEquals(1, failedLineErrors.size());
+    }
+
+    private UrlSourceFetcher urlSourceFetcher(StatisticsProperties statisticsProperties) {
+        ExecutorServiceManager executorServiceManager = new ExecutorServiceManager(statisticsProperties);
+        executorServiceManagers.add(executorServiceManager);
+        return new UrlSourceFetcher(new AsyncUrlFetcher(statisticsProperties, executorServiceManager), new HostScheduler(statisticsProperties),
+                executorServiceManager, statisticsProperties);
+    }
+
+    private static void sendCSV(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, CSV.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(CSV);
+        } catch (IOException e) {
+            // The client cancelled the request
+        }
+    }
+
+    // Declares a longer body than is sent, so the client fails after parsing the lines it received
+    private static void sendBrokenCSV(HttpExchange exchange) throws IOException {
+        byte[] body = "fname, lname, age\nPhillip, GILES, x\nPhillip, GILES, 37\n".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length + 100);
+        OutputStream outputStream = exchange.getResponseBody();
+        outputStream.write(body);
+        outputStream.flush();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
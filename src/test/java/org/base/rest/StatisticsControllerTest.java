@@ -0,0 +1,133 @@
+package org.base.rest;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.base.TestData.readResource;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class StatisticsControllerTest {
+
+    private static final String BOUNDARY = "summary-boundary";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void should_summarize_streamed_multipart_upload_like_buffered_upload() throws Exception {
+        // Given
+        byte[] file1 = readResource("csvfiles/file1.csv");
+        byte[] file10 = readResource("csvfiles/file10_even.csv");
+        byte[] body = multipartBody(new String[]{"file1.csv", "file10_even.csv"}, file1, file10);
+
+        // When
+        String buffered = mockMvc.perform(multipart("/rest/summary/csv")
+                        .file(new MockMultipartFile("csvfiles", "file1.csv", "text/csv", file1))
+                        .file(new MockMultipartFile("csvfiles", "file10_even.csv", "text/csv", file10)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Then
+        mockMvc.perform(post("/rest/summary/csv/stream?extended=true")
+                        .contentType("multipart/form-data; boundary=" + BOUNDARY)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.medianAge").value(JsonPath.<Double>read(buffered, "$.medianAge")))
+                .andExpect(jsonPath("$.averageAge").value(JsonPath.<Double>read(buffered, "$.averageAge")))
+                .andExpect(jsonPath("$.personWithMedianAge").value(JsonPath.<String>read(buffered, "$.personWithMedianAge")))
+                .andExpect(jsonPath("$.minAge").isNumber())
+                .andExpect(jsonPath("$.lineErrors", empty()));
+    }
+
+    @Test
+    void should_answer_bad_request_for_broken_multipart_upload() throws Exception {
+        // Given
+        byte[] body = multipartBody(new String[]{"file1.csv"}, readResource("csvfiles/file1.csv"));
+        byte[] truncated = new byte[body.length / 2];
+        System.arraycopy(body, 0, truncated, 0, truncated.length);
+
+        // When
+        // Then
+        mockMvc.perform(post("/rest/summary/csv/stream")
+                        .contentType("multipart/form-data; boundary=" + BOUNDARY)
+                        .content(truncated))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void should_answer_bad_request_for_invalid_percentiles_and_group_key() throws Exception {
+        // Given
+        MockMultipartFile file1 = new MockMultipartFile("csvfiles", "file1.csv", "text/csv", readResource("csvfiles/file1.csv"));
+
+        // When
+        // Then
+        mockMvc.perform(multipart("/rest/summary/csv").file(file1).param("percentiles", "50,101"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(multipart("/rest/summary/csv").file(file1).param("groupBy", "age"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(multipart("/rest/summary/csv").file(file1).param("groupBy", "lname").param("topGroups", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(multipart("/rest/summary/csv").file(file1).param("groupBy", "lname").param("percentiles", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.groups", aMapWithSize(greaterThan(0))));
+    }
+
+    @Test
+    void should_stream_progress_then_summary_events() throws Exception {
+        // Given
+        String file1 = ClassLoader.getSystemResource("csvfiles/file1.csv").getPath();
+        String file10 = ClassLoader.getSystemResource("csvfiles/file10_even.csv").getPath();
+        MockMultipartFile sources = new MockMultipartFile("multipartFile", String.join("\n", file1, file10).getBytes());
+
+        // When
+        MvcResult started = mockMvc.perform(multipart(HttpMethod.GET, "/rest/summary/stream").file(sources))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        started.getAsyncResult(10_000);
+
+        // Then
+        String events = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        int summary = events.indexOf("event:summary");
+        assertTrue(summary >= 0, events);
+        assertTrue(events.lastIndexOf("event:progress") < summary, events);
+        assertEquals(summary, events.lastIndexOf("event:"), events);
+        assertTrue(events.substring(summary).contains("\"personWithMedianAge\""), events);
+    }
+
+    // A multipart body with one "csvfiles" part per file, as a browser or curl -F would send it
+    private static byte[] multipartBody(String[] names, byte[]... files) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (int i = 0; i < files.length; i++) {
+            body.write(("--" + BOUNDARY + "\r\n"
+                    + "Content-Disposition: form-data; name=\"csvfiles\"; filename=\"" + names[i] + "\"\r\n"
+                    + "Content-Type: text/csv\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            body.write(files[i]);
+            body.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        body.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+}
@@ -0,0 +1,159 @@
+package org.base.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.base.cache.UrlSourceCache;
+import org.base.cluster.PeerClient;
+import org.base.config.StatisticsProperties;
+import org.base.dto.SummaryData;
+import org.base.exectutor.ExecutorServiceManager;
+import org.base.fetcher.AsyncUrlFetcher;
+import org.base.fetcher.ChunkedFileParser;
+import org.base.fetcher.DataFetcher;
+import org.base.fetcher.HostScheduler;
+import org.base.fetcher.StreamedFile;
+import org.base.fetcher.UrlSourceFetcher;
+import org.base.metrics.PipelineMetrics;
+import org.base.snapshot.SnapshotStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatasetServiceTest {
+
+    private final StatisticsProperties statisticsProperties = new StatisticsProperties();
+    private final ExecutorServiceManager executorServiceManager = new ExecutorServiceManager(statisticsProperties);
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics(new SimpleMeterRegistry());
+    private final DataFetcher dataFetcher = new DataFetcher(executorServiceManager, new ChunkedFileParser(executorServiceManager),
+            new UrlSourceFetcher(new AsyncUrlFetcher(statisticsProperties, executorServiceManager), new HostScheduler(statisticsProperties),
+                    executorServiceManager, statisticsProperties),
+            new UrlSourceCache(statisticsProperties), pipelineMetrics, new SnapshotStore(executorServiceManager, statisticsProperties),
+            statisticsProperties);
+    private final StatisticsService statisticsService = new StatisticsService(dataFetcher, new PeerClient(statisticsProperties), pipelineMetrics);
+
+    @Test
+    void should_keep_summary_of_rows_appended_by_concurrent_producers() {
+        // Given
+        DatasetService datasetService = new DatasetService(dataFetcher, pipelineMetrics, statisticsProperties);
+        ExecutorService producers = Executors.newFixedThreadPool(8);
+        List<CompletableFuture<ResponseEntity<SummaryData>>> appends = new ArrayList<>();
+        List<StreamedFile> allBatches = new ArrayList<>();
+
+        // When
+        for (int batch = 0; batch < 40; batch++) {
+            String csv = csv(batch * 100, 100 + batch);
+            allBatches.add(streamedFile(csv));
+            appends.add(CompletableFuture.supplyAsync(() -> datasetService.appendCSVStreams("people", streams(csv)), producers));
+        }
+        appends.forEach(CompletableFuture::join);
+        producers.shutdown();
+        SummaryData datasetSummary = datasetService.getSummary("people").getBody();
+        SummaryData expected = statisticsService.processDataFromCSVStreams(allBatches.iterator()).getBody();
+
+        // Then
+        appends.forEach(append -> assertEquals(HttpStatus.OK, append.join().getStatusCode()));
+        assertEquals(expected.getMedianAge(), datasetSummary.getMedianAge());
+        assertEquals(expected.getAverageAge(), datasetSummary.getAverageAge());
+        assertEquals(expected.getPersonWithMedianAge(), datasetSummary.getPersonWithMedianAge());
+        assertTrue(datasetSummary.getLineErrors().isEmpty());
+    }
+
+    @Test
+    void should_return_errors_of_an_append_to_its_producer_only() {
+        // Given
+        DatasetService datasetService = new DatasetService(dataFetcher, pipelineMetrics, statisticsProperties);
+        String file1 = ClassLoader.getSystemResource("csvfiles/file1.csv").getPath();
+
+        // When
+        SummaryData appended = datasetService.appendPathsOrUrls("files", Arrays.asList(file1, "missing.csv")).getBody();
+        SummaryData summary = datasetService.getSummary("files").getBody();
+
+        // Then
+        assertEquals(1, appended.getUrlErrors().size());
+        assertTrue(summary.getUrlErrors().isEmpty());
+        assertEquals(appended.getMedianAge(), summary.getMedianAge());
+        assertNotNull(summary.getPersonWithMedianAge());
+    }
+
+    @Test
+    void should_reject_invalid_names_and_new_datasets_above_the_limit() {
+        // Given
+        statisticsProperties.getDatasets().setMaxDatasets(1);
+        DatasetService datasetService = new DatasetService(dataFetcher, pipelineMetrics, statisticsProperties);
+        datasetService.appendCSVStreams("first", streams(csv(0, 10)));
+
+        // When
+        HttpStatus invalidName = datasetService.appendCSVStreams("bad/name", streams(csv(0, 10))).getStatusCode();
+        HttpStatus secondDataset = datasetService.appendCSVStreams("second", streams(csv(0, 10))).getStatusCode();
+        HttpStatus existingDataset = datasetService.appendCSVStreams("first", streams(csv(0, 10))).getStatusCode();
+        boolean deleted = datasetService.delete("first");
+        HttpStatus afterDelete = datasetService.appendCSVStreams("second", streams(csv(0, 10))).getStatusCode();
+
+        // Then
+        assertEquals(HttpStatus.BAD_REQUEST, invalidName);
+        assertEquals(HttpStatus.INSUFFICIENT_STORAGE, secondDataset);
+        assertEquals(HttpStatus.OK, existingDataset);
+        assertTrue(deleted);
+        assertEquals(HttpStatus.OK, afterDelete);
+        assertEquals(HttpStatus.NOT_FOUND, datasetService.getSummary("first").getStatusCode());
+    }
+
+    @Test
+    void should_create_dataset_only_after_its_first_batch_was_read() {
+        // Given
+        statisticsProperties.getDatasets().setMaxDatasets(1);
+        DatasetService datasetService = new DatasetService(dataFetcher, pipelineMetrics, statisticsProperties);
+        Iterator<StreamedFile> unreadBody = new Iterator<StreamedFile>() {
+            @Override
+            public boolean hasNext() {
+                throw new AssertionError("The body of an invalid name is read");
+            }
+
+            @Override
+            public StreamedFile next() {
+                throw new AssertionError("The body of an invalid name is read");
+            }
+        };
+
+        // When
+        SummaryData failed = datasetService.appendPathsOrUrls("failed", Collections.singletonList("missing.csv")).getBody();
+        HttpStatus invalidName = datasetService.appendCSVStreams("bad/name", unreadBody).getStatusCode();
+        HttpStatus people = datasetService.appendCSVStreams("people", streams(csv(0, 10))).getStatusCode();
+
+        // Then
+        assertEquals(1, failed.getUrlErrors().size());
+        assertEquals(HttpStatus.NOT_FOUND, datasetService.getSummary("failed").getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, invalidName);
+        assertEquals(HttpStatus.OK, people);
+    }
+
+    private static Iterator<StreamedFile> streams(String csv) {
+        return Collections.singletonList(streamedFile(csv)).iterator();
+    }
+
+    private static StreamedFile streamedFile(String csv) {
+        return new StreamedFile("batch.csv", new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // The person of each age does not depend on the batch, so the order of the appends does not change the summary
+    private static String csv(int firstRow, int rows) {
+        StringBuilder csv = new StringBuilder("fname, lname, age\n");
+        for (int i = firstRow; i < firstRow + rows; i++) {
+            int age = (i * 7) % 151;
+            csv.append("Person").append(age).append(", NAME, ").append(age).append('\n');
+        }
+        return csv.toString();
+    }
+}
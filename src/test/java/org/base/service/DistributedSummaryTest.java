@@ -0,0 +1,209 @@
+package org.base.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.base.aggregator.GroupBy;
+import org.base.cache.UrlSourceCache;
+import org.base.cluster.PeerClient;
+import org.base.config.StatisticsProperties;
+import org.base.dto.PartialAggregate;
+import org.base.dto.SummaryData;
+import org.base.exectutor.ExecutorServiceManager;
+import org.base.fetcher.AsyncUrlFetcher;
+import org.base.fetcher.ChunkedFileParser;
+import org.base.fetcher.DataFetcher;
+import org.base.fetcher.HostScheduler;
+import org.base.fetcher.UrlSourceFetcher;
+import org.base.metrics.PipelineMetrics;
+import org.base.snapshot.SnapshotStore;
+import org.base.util.ValidationUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.base.TestData.readResource;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DistributedSummaryTest {
+
+    private static final List<String> NAMES = Arrays.asList("file10_even.csv", "file1.csv", "file2.csv", "file6_bad.csv", "file9_bad.csv");
+    private static final List<String> PATHS = NAMES.stream()
+            .map(name -> ClassLoader.getSystemResource("csvfiles/" + name).getPath())
+            .collect(Collectors.toList());
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    // Every shard a peer was asked to read
+    private static final List<List<String>> peerShards = new CopyOnWriteArrayList<>();
+
+    private static HttpServer peer;
+    private static String peerUrl;
+    // The test files as URLs, with one local path in between
+    private static List<String> sources;
+
+    @BeforeAll
+    static void startPeer() throws IOException {
+        // A peer instance that only serves partial aggregates, and the test files
+        StatisticsService peerService = statisticsService(new StatisticsProperties());
+        peer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        // The peer reads the test files from itself while it answers the coordinator
+        peer.setExecutor(Executors.newCachedThreadPool());
+        peer.createContext("/rest/summary/partial", exchange -> {
+            List<String> shard = objectMapper.readValue(exchange.getRequestBody(), new TypeReference<List<String>>() {
+            });
+            peerShards.add(shard);
+            byte[] response = objectMapper.writeValueAsBytes(peerService.calculatePartialAggregate(shard));
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(response);
+            }
+        });
+        peer.createContext("/csvfiles/", exchange -> {
+            byte[] csv = readResource(exchange.getRequestURI().getPath().substring(1));
+            exchange.sendResponseHeaders(200, csv.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(csv);
+            }
+        });
+        peer.start();
+        peerUrl = "http://localhost:" + peer.getAddress().getPort() + "/";
+        sources = new ArrayList<>();
+        for (String name : NAMES) {
+            sources.add(name.equals("file2.csv") ? ClassLoader.getSystemResource("csvfiles/" + name).getPath() : peerUrl + "csvfiles/" + name);
+        }
+    }
+
+    @AfterAll
+    static void stopPeer() {
+        peer.stop(0);
+    }
+
+    @Test
+    void should_merge_partial_aggregates_into_same_summary_as_single_instance() {
+        // Given
+        StatisticsProperties coordinatorProperties = new StatisticsProperties();
+        coordinatorProperties.getCluster().setPeers(Arrays.asList(peerUrl, peerUrl));
+        StatisticsService coordinator = statisticsService(coordinatorProperties);
+        StatisticsService singleInstance = statisticsService(new StatisticsProperties());
+
+        // When
+        SummaryData distributed = coordinator.processDataFromPathsOrURLs(pathsFile()).getBody();
+        SummaryData expected = singleInstance.processDataFromPathsOrURLs(pathsFile()).getBody();
+
+        // Then
+        assertSameSummary(expected, distributed);
+        assertTrue(peerShards.stream().flatMap(List::stream).allMatch(ValidationUtil::isURL));
+    }
+
+    @Test
+    void should_read_shard_of_failed_peer_on_coordinator() {
+        // Given
+        StatisticsProperties coordinatorProperties = new StatisticsProperties();
+        coordinatorProperties.getCluster().setPeers(Arrays.asList(peerUrl, "http://localhost:1"));
+        StatisticsService coordinator = statisticsService(coordinatorProperties);
+        StatisticsService singleInstance = statisticsService(new StatisticsProperties());
+
+        // When
+        SummaryData distributed = coordinator.processDataFromPathsOrURLs(pathsFile()).getBody();
+        SummaryData expected = singleInstance.processDataFromPathsOrURLs(pathsFile()).getBody();
+
+        // Then
+        assertSameSummary(expected, distributed);
+    }
+
+    @Test
+    void should_read_summary_with_timing_or_groups_on_coordinator() {
+        // Given
+        StatisticsProperties coordinatorProperties = new StatisticsProperties();
+        coordinatorProperties.getCluster().setPeers(Arrays.asList(peerUrl, peerUrl));
+        StatisticsService coordinator = statisticsService(coordinatorProperties);
+        StatisticsService singleInstance = statisticsService(new StatisticsProperties());
+        SummaryOptions grouped = SummaryOptions.NONE.withGroupBy(new GroupBy(GroupBy.Key.SOURCE, 5, 100));
+        int shardsBefore = peerShards.size();
+
+        // When
+        SummaryData withTiming = coordinator.processDataFromPathsOrURLs(pathsFile(), SummaryOptions.NONE.withTiming(true)).getBody();
+        SummaryData withGroups = coordinator.processDataFromPathsOrURLs(pathsFile(), grouped).getBody();
+        SummaryData expected = singleInstance.processDataFromPathsOrURLs(pathsFile(), grouped).getBody();
+
+        // Then
+        assertEquals(shardsBefore, peerShards.size());
+        assertNotNull(withTiming.getTiming());
+        assertSameSummary(expected, withTiming);
+        assertEquals(expected.getGroups().keySet(), withGroups.getGroups().keySet());
+    }
+
+    @Test
+    void should_rebuild_aggregate_from_serialized_partial_aggregate() throws IOException {
+        // Given
+        StatisticsService statisticsService = statisticsService(new StatisticsProperties());
+        PartialAggregate partialAggregate = statisticsService.calculatePartialAggregate(PATHS);
+
+        // When
+        PartialAggregate received = objectMapper.readValue(objectMapper.writeValueAsBytes(partialAggregate), PartialAggregate.class);
+        received.getAgeCounts()[40]++;
+
+        // Then
+        assertEquals(partialAggregate.getCount(), PartialAggregates.toRecordAggregate(
+                objectMapper.readValue(objectMapper.writeValueAsBytes(partialAggregate), PartialAggregate.class)).getCount());
+        assertEquals(partialAggregate.getUrlErrors(), received.getUrlErrors());
+        assertThrows(IllegalArgumentException.class, () -> PartialAggregates.toRecordAggregate(received));
+    }
+
+    @Test
+    void should_split_into_runs_of_sources_with_same_reader() {
+        // When
+        List<StatisticsService.SourceRun> runs = StatisticsService.splitIntoRuns(
+                Arrays.asList("http://a", "local", "http://b", "http://c", "local2", "http://d"), Arrays.asList("peer"));
+
+        // Then
+        assertEquals(Arrays.asList(null, "peer", null, "peer"), runs.stream().map(run -> run.peer).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(Arrays.asList("http://a", "local", "http://b"), Arrays.asList("http://c"), Arrays.asList("local2"),
+                Arrays.asList("http://d")), runs.stream().map(run -> run.pathsOrURLs).collect(Collectors.toList()));
+    }
+
+    @Test
+    void should_split_into_consecutive_shards() {
+        // When
+        List<List<String>> shards = StatisticsService.splitIntoShards(Arrays.asList("a", "b", "c", "d", "e"), 3);
+
+        // Then
+        assertEquals(Arrays.asList(Arrays.asList("a"), Arrays.asList("b", "c"), Arrays.asList("d", "e")), shards);
+    }
+
+    private static void assertSameSummary(SummaryData expected, SummaryData actual) {
+        assertEquals(expected.getMedianAge(), actual.getMedianAge());
+        assertEquals(expected.getAverageAge(), actual.getAverageAge());
+        assertEquals(expected.getPersonWithMedianAge(), actual.getPersonWithMedianAge());
+        assertEquals(expected.getUrlErrors(), actual.getUrlErrors());
+        assertEquals(expected.getLineErrors(), actual.getLineErrors());
+    }
+
+    private static MockMultipartFile pathsFile() {
+        return new MockMultipartFile("multipartFile", String.join("\n", sources).getBytes());
+    }
+
+    private static StatisticsService statisticsService(StatisticsProperties statisticsProperties) {
+        ExecutorServiceManager executorServiceManager = new ExecutorServiceManager(statisticsProperties);
+        PipelineMetrics pipelineMetrics = new PipelineMetrics(new SimpleMeterRegistry());
+        return new StatisticsService(
+                new DataFetcher(executorServiceManager, new ChunkedFileParser(executorServiceManager),
+                        new UrlSourceFetcher(new AsyncUrlFetcher(statisticsProperties, executorServiceManager), new HostScheduler(statisticsProperties),
+                                executorServiceManager, statisticsProperties),
+                        new UrlSourceCache(statisticsProperties), pipelineMetrics, new SnapshotStore(executorServiceManager, statisticsProperties),
+                        statisticsProperties),
+                new PeerClient(statisticsProperties), pipelineMetrics);
+    }
+}
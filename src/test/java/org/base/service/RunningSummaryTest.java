@@ -0,0 +1,49 @@
+package org.base.service;
+
+import org.base.aggregator.RecordAggregate;
+import org.base.dto.PartialSummary;
+import org.base.dto.RecordErrors;
+import org.base.dto.URLErrors;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.base.TestData.aggregate;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RunningSummaryTest {
+
+    @Test
+    void should_report_first_and_last_source_within_one_interval() {
+        // Given
+        Set<URLErrors> urlErrors = ConcurrentHashMap.newKeySet();
+        Set<RecordErrors> lineErrors = ConcurrentHashMap.newKeySet();
+        List<PartialSummary> partialSummaries = new ArrayList<>();
+        RunningSummary runningSummary = new RunningSummary(3, urlErrors, lineErrors, partialSummaries::add, 60 * 60 * 1000);
+
+        // When
+        runningSummary.sourceCompleted("file1.csv", aggregate(20, 30));
+        urlErrors.add(new URLErrors("missing.csv", "Error accessing file or URL"));
+        runningSummary.sourceCompleted("missing.csv", new RecordAggregate());
+        lineErrors.add(new RecordErrors("file3.csv", Arrays.asList("RecordError on line: a for url file3.csv", "RecordError on line: b for url file3.csv")));
+        runningSummary.sourceCompleted("file3.csv", aggregate(40, 50));
+
+        // Then
+        assertEquals(2, partialSummaries.size());
+        assertEquals(1, partialSummaries.get(0).getSourcesCompleted());
+        assertEquals(25, partialSummaries.get(0).getMedianAge());
+
+        PartialSummary last = partialSummaries.get(1);
+        assertEquals(3, last.getSourcesCompleted());
+        assertEquals(3, last.getSourcesTotal());
+        assertEquals(4, last.getRecordCount());
+        assertEquals(35, last.getAverageAge());
+        assertEquals(35, last.getMedianAge());
+        assertEquals(2, last.getLineErrorCount());
+        assertEquals(1, last.getUrlErrors().size());
+    }
+}
@@ -1,6 +1,22 @@
 package org.base.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.base.aggregator.GroupBy;
+import org.base.cache.UrlSourceCache;
+import org.base.cluster.PeerClient;
+import org.base.config.StatisticsProperties;
+import org.base.dto.GroupSummary;
 import org.base.dto.SummaryData;
+import org.base.dto.SummaryTiming;
+import org.base.exectutor.ExecutorServiceManager;
+import org.base.fetcher.AsyncUrlFetcher;
+import org.base.fetcher.ChunkedFileParser;
+import org.base.fetcher.DataFetcher;
+import org.base.fetcher.HostScheduler;
+import org.base.fetcher.StreamedFile;
+import org.base.fetcher.UrlSourceFetcher;
+import org.base.metrics.PipelineMetrics;
+import org.base.snapshot.SnapshotStore;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -10,16 +26,32 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
+import static org.base.TestData.readResource;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class StatisticsServiceTest {
 
-    private final StatisticsService statisticsService = new StatisticsService();
+    private final StatisticsProperties statisticsProperties = new StatisticsProperties();
+    private final ExecutorServiceManager executorServiceManager = new ExecutorServiceManager(statisticsProperties);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics(meterRegistry);
+    private final StatisticsService statisticsService = new StatisticsService(
+            new DataFetcher(executorServiceManager, new ChunkedFileParser(executorServiceManager),
+                    new UrlSourceFetcher(new AsyncUrlFetcher(statisticsProperties, executorServiceManager), new HostScheduler(statisticsProperties),
+                            executorServiceManager, statisticsProperties),
+                    new UrlSourceCache(statisticsProperties), pipelineMetrics, new SnapshotStore(executorServiceManager, statisticsProperties),
+                    statisticsProperties),
+            new PeerClient(statisticsProperties), pipelineMetrics);
 
     @Test
     void should_return_ok_with_summary_data_without_line_url_errors_from_URL_list() {
@@ -75,6 +107,143 @@ public class StatisticsServiceTest {
         assertTrue(responseEntity.getBody().getUrlErrors().isEmpty());
     }
 
+    @Test
+    void should_record_request_and_source_metrics() {
+        // Given
+        URL urlPath = ClassLoader.getSystemResource("csvfiles/file10_even.csv");
+        MultipartFile multipartFile = new MockMultipartFile("file10_even", urlPath.getPath().getBytes());
+
+        // When
+        statisticsService.processDataFromPathsOrURLs(multipartFile);
+
+        // Then
+        assertEquals(1, meterRegistry.get("summary.request").tag("request", "paths").timer().count());
+        assertEquals(6, meterRegistry.get("summary.request.records").tag("request", "paths").summary().totalAmount());
+        assertEquals(1, meterRegistry.get("summary.source.parse").tag("source", "file").timer().count());
+        assertEquals(6, meterRegistry.get("summary.rows").tag("source", "file").counter().count());
+        assertTrue(meterRegistry.get("summary.bytes.read").tag("source", "file").counter().count() > 0);
+    }
+
+    @Test
+    void should_return_extended_statistics_only_when_requested() {
+        // Given
+        MultipartFile multipartFile = new MockMultipartFile("files", getAllPaths().getBytes());
+
+        // When
+        SummaryData summary = statisticsService.processDataFromPathsOrURLs(multipartFile).getBody();
+        SummaryData extended = statisticsService.processDataFromPathsOrURLs(multipartFile, SummaryOptions.NONE.withPercentiles(new double[]{50, 99.9})).getBody();
+
+        // Then
+        assertNull(summary.getAgePercentiles());
+        assertNull(summary.getAgeHistogram());
+        assertEquals(summary.getMedianAge(), extended.getMedianAge());
+        assertEquals(Arrays.asList("p50", "p99.9"), new ArrayList<>(extended.getAgePercentiles().keySet()));
+        assertTrue(extended.getMinAge() <= extended.getAgePercentiles().get("p50"));
+        assertTrue(extended.getAgePercentiles().get("p99.9") <= extended.getMaxAge());
+        assertEquals(extended.getAgeStandardDeviation(), Math.sqrt(extended.getAgeVariance()), 0.01);
+        long histogramCount = extended.getAgeHistogram().values().stream().mapToLong(Long::longValue).sum();
+        long histogramSum = extended.getAgeHistogram().entrySet().stream().mapToLong(entry -> entry.getKey() * entry.getValue()).sum();
+        assertEquals(summary.getAverageAge(), Math.round(100.0 * histogramSum / histogramCount) / 100.0);
+    }
+
+    @Test
+    void should_group_records_by_last_name_and_by_source() throws IOException {
+        // Given
+        String file1 = ClassLoader.getSystemResource("csvfiles/file1.csv").getPath();
+        String file3 = ClassLoader.getSystemResource("csvfiles/file3.csv").getPath();
+        MultipartFile multipartFile = new MockMultipartFile("files", (file1 + "\n" + file3).getBytes());
+        Map<String, List<Integer>> agesByLname = new HashMap<>();
+        for (String name : Arrays.asList("csvfiles/file1.csv", "csvfiles/file3.csv")) {
+            String[] lines = new String(readResource(name), StandardCharsets.UTF_8).split("\n");
+            for (int i = 1; i < lines.length; i++) {
+                String[] fields = lines[i].split(",");
+                agesByLname.computeIfAbsent(fields[1].trim(), lname -> new ArrayList<>()).add(Integer.parseInt(fields[2].trim()));
+            }
+        }
+        long recordCount = agesByLname.values().stream().mapToLong(List::size).sum();
+
+        // When
+        SummaryData byLname = statisticsService.processDataFromPathsOrURLs(multipartFile,
+                SummaryOptions.NONE.withGroupBy(new GroupBy(GroupBy.Key.LNAME, 5, 10000))).getBody();
+        SummaryData bySource = statisticsService.processDataFromPathsOrURLs(multipartFile,
+                SummaryOptions.NONE.withGroupBy(new GroupBy(GroupBy.Key.SOURCE, 5, 10000))).getBody();
+
+        // Then
+        assertEquals(5, byLname.getGroups().size());
+        long previousCount = Long.MAX_VALUE;
+        long groupedCount = byLname.getOtherGroups().getRecordCount();
+        for (Map.Entry<String, GroupSummary> group : byLname.getGroups().entrySet()) {
+            List<Integer> ages = agesByLname.get(group.getKey());
+            assertEquals(ages.size(), group.getValue().getRecordCount());
+            assertEquals(Math.round(100.0 * ages.stream().mapToInt(Integer::intValue).sum() / ages.size()) / 100.0, group.getValue().getAverageAge());
+            assertTrue(group.getValue().getRecordCount() <= previousCount);
+            previousCount = group.getValue().getRecordCount();
+            groupedCount += previousCount;
+        }
+        assertEquals(recordCount, groupedCount);
+        assertFalse(byLname.getGroupsApproximate());
+        assertEquals(new HashSet<>(Arrays.asList(file1, file3)), bySource.getGroups().keySet());
+        assertNull(bySource.getOtherGroups());
+        assertEquals(byLname.getMedianAge(), bySource.getMedianAge());
+    }
+
+    @Test
+    void should_mark_groups_as_approximate_when_a_source_has_more_keys_than_it_tracks() {
+        // Given
+        String file1 = ClassLoader.getSystemResource("csvfiles/file1.csv").getPath();
+        MultipartFile multipartFile = new MockMultipartFile("files", file1.getBytes());
+
+        // When
+        SummaryData byLname = statisticsService.processDataFromPathsOrURLs(multipartFile,
+                SummaryOptions.NONE.withGroupBy(new GroupBy(GroupBy.Key.LNAME, 5, 3))).getBody();
+
+        // Then
+        assertTrue(byLname.getGroupsApproximate());
+        assertEquals(3, byLname.getGroups().size());
+        assertNotNull(byLname.getOtherGroups());
+    }
+
+    @Test
+    void should_return_timing_of_phases_and_slowest_sources_only_when_requested() {
+        // Given
+        MultipartFile multipartFile = new MockMultipartFile("files", getAllPaths().getBytes());
+
+        // When
+        SummaryData withoutTiming = statisticsService.processDataFromPathsOrURLs(multipartFile).getBody();
+        SummaryData withTiming = statisticsService.processDataFromPathsOrURLs(multipartFile, SummaryOptions.NONE.withTiming(true)).getBody();
+
+        // Then
+        assertNull(withoutTiming.getTiming());
+        SummaryTiming timing = withTiming.getTiming();
+        assertTrue(timing.getTotalMillis() >= timing.getReadMillis());
+        assertTrue(timing.getSourceCount() > 0);
+        assertTrue(timing.getBytesRead() > 0);
+        assertEquals(Math.min(timing.getSourceCount(), StatisticsService.SLOWEST_SOURCES), timing.getSlowestSources().size());
+        for (int i = 1; i < timing.getSlowestSources().size(); i++) {
+            assertTrue(timing.getSlowestSources().get(i - 1).getParseMillis() >= timing.getSlowestSources().get(i).getParseMillis());
+        }
+    }
+
+    @Test
+    void should_truncate_or_drop_uploaded_file_over_row_limit() throws IOException {
+        // Given
+        statisticsProperties.getLimits().setMaxSourceRows(10);
+        byte[] csv = readResource("csvfiles/file1.csv");
+
+        // When
+        SummaryData truncated = statisticsService.processDataFromCSVFiles(
+                Collections.singletonList(new MockMultipartFile("file1", "file1.csv", "text/csv", csv))).getBody();
+        statisticsProperties.getLimits().setOnExceeded(StatisticsProperties.Limits.OnExceeded.FAIL);
+        SummaryData dropped = statisticsService.processDataFromCSVFiles(
+                Collections.singletonList(new MockMultipartFile("file1", "file1.csv", "text/csv", csv))).getBody();
+
+        // Then
+        assertEquals("Source row limit exceeded, truncated", truncated.getUrlErrors().iterator().next().getErrorName());
+        assertNotNull(truncated.getPersonWithMedianAge());
+        assertEquals("Source row limit exceeded", dropped.getUrlErrors().iterator().next().getErrorName());
+        assertNull(dropped.getPersonWithMedianAge());
+    }
+
     @Test
     void should_return_badRequest_if_multipart_file_has_no_urls() {
         // Given
@@ -142,6 +311,29 @@ public class StatisticsServiceTest {
         assertTrue(responseEntity.getBody().getUrlErrors().isEmpty());
     }
 
+    @Test
+    void should_return_same_summary_from_streamed_csv_files_as_from_uploaded_files() throws IOException {
+        // Given
+        List<MultipartFile> multipartFiles = getAllCSVFiles();
+        List<StreamedFile> streamedFiles = new ArrayList<>();
+        for (MultipartFile multipartFile : multipartFiles) {
+            streamedFiles.add(new StreamedFile(multipartFile.getOriginalFilename(), multipartFile.getInputStream()));
+        }
+
+        // When
+        SummaryData expected = statisticsService.processDataFromCSVFiles(multipartFiles).getBody();
+        ResponseEntity<SummaryData> responseEntity = statisticsService.processDataFromCSVStreams(streamedFiles.iterator());
+
+        // Then
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        assertEquals(expected.getMedianAge(), responseEntity.getBody().getMedianAge());
+        assertEquals(expected.getAverageAge(), responseEntity.getBody().getAverageAge());
+        assertEquals(expected.getPersonWithMedianAge(), responseEntity.getBody().getPersonWithMedianAge());
+        assertEquals(expected.getUrlErrors(), responseEntity.getBody().getUrlErrors());
+        assertEquals(expected.getLineErrors(), responseEntity.getBody().getLineErrors());
+        assertEquals(HttpStatus.BAD_REQUEST, statisticsService.processDataFromCSVStreams(Collections.emptyIterator()).getStatusCode());
+    }
+
     @Test
     void should_return_badRequest_if_multipart_file_has_no_csvs() {
         // When
@@ -0,0 +1,116 @@
+package org.base.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.base.cache.UrlSourceCache;
+import org.base.cluster.PeerClient;
+import org.base.config.StatisticsProperties;
+import org.base.dto.JobStatus;
+import org.base.dto.SummaryData;
+import org.base.exectutor.ExecutorServiceManager;
+import org.base.fetcher.AsyncUrlFetcher;
+import org.base.fetcher.ChunkedFileParser;
+import org.base.fetcher.DataFetcher;
+import org.base.fetcher.HostScheduler;
+import org.base.fetcher.SourceListener;
+import org.base.fetcher.UrlSourceFetcher;
+import org.base.metrics.PipelineMetrics;
+import org.base.snapshot.SnapshotStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SummaryJobServiceTest {
+
+    private final StatisticsProperties statisticsProperties = new StatisticsProperties();
+    private final ExecutorServiceManager executorServiceManager = new ExecutorServiceManager(statisticsProperties);
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics(new SimpleMeterRegistry());
+    private final StatisticsService statisticsService = new StatisticsService(
+            new DataFetcher(executorServiceManager, new ChunkedFileParser(executorServiceManager),
+                    new UrlSourceFetcher(new AsyncUrlFetcher(statisticsProperties, executorServiceManager), new HostScheduler(statisticsProperties),
+                            executorServiceManager, statisticsProperties),
+                    new UrlSourceCache(statisticsProperties), pipelineMetrics, new SnapshotStore(executorServiceManager, statisticsProperties),
+                    statisticsProperties),
+            new PeerClient(statisticsProperties), pipelineMetrics);
+    private final SummaryJobService summaryJobService = new SummaryJobService(statisticsService, executorServiceManager, statisticsProperties);
+
+    @Test
+    void should_run_paths_job_in_background_and_report_progress() {
+        // Given
+        String file1 = ClassLoader.getSystemResource("csvfiles/file1.csv").getPath();
+        String file10 = ClassLoader.getSystemResource("csvfiles/file10_even.csv").getPath();
+
+        // When
+        SummaryJob job = summaryJobService.submitPathsOrUrls(Arrays.asList(file1, file10, "missing.csv"));
+        job.getResult().join();
+
+        // Then
+        JobStatus status = summaryJobService.getJob(job.getId()).toStatus();
+        assertEquals(JobStatus.State.DONE, status.getState());
+        assertEquals(3, status.getSourcesTotal());
+        assertEquals(3, status.getSourcesCompleted());
+        assertNotNull(status.getSummary().getPersonWithMedianAge());
+        assertEquals(1, status.getSummary().getUrlErrors().size());
+    }
+
+    @Test
+    void should_read_spooled_uploads_after_submission() throws IOException {
+        // Given
+        InputStream inputStream = ClassLoader.getSystemResourceAsStream("csvfiles/file1.csv");
+        MockMultipartFile csvFile = new MockMultipartFile("file1", "file1.csv", "text/csv", inputStream);
+
+        // When
+        SummaryJob job = summaryJobService.submitCSVFiles(Collections.singletonList(csvFile));
+        job.getResult().join();
+
+        // Then
+        JobStatus status = job.toStatus();
+        assertEquals(JobStatus.State.DONE, status.getState());
+        assertEquals(1, status.getSourcesCompleted());
+        assertTrue(status.getSummary().getUrlErrors().isEmpty());
+        assertTrue(status.getSummary().getLineErrors().isEmpty());
+        assertNull(summaryJobService.getJob("unknown"));
+    }
+
+    @Test
+    void should_limit_rows_of_spooled_uploads() throws IOException {
+        // Given
+        statisticsProperties.getLimits().setMaxSourceRows(10);
+        InputStream inputStream = ClassLoader.getSystemResourceAsStream("csvfiles/file1.csv");
+        MockMultipartFile csvFile = new MockMultipartFile("file1", "file1.csv", "text/csv", inputStream);
+
+        // When
+        SummaryJob job = summaryJobService.submitCSVFiles(Collections.singletonList(csvFile));
+        job.getResult().join();
+
+        // Then
+        JobStatus status = job.toStatus();
+        assertEquals("Source row limit exceeded, truncated", status.getSummary().getUrlErrors().iterator().next().getErrorName());
+    }
+
+    @Test
+    void should_fail_job_when_summary_throws_an_error() {
+        // Given
+        SummaryJobService failingJobService = new SummaryJobService(new StatisticsService(null, null, pipelineMetrics) {
+            @Override
+            public SummaryData calculateStatisticsPathsOrUrls(List<String> pathsOrURLs, SourceListener sourceListener) {
+                throw new OutOfMemoryError("Java heap space");
+            }
+        }, executorServiceManager, statisticsProperties);
+
+        // When
+        SummaryJob job = failingJobService.submitPathsOrUrls(Collections.singletonList("file1.csv"));
+        CompletionException error = assertThrows(CompletionException.class, () -> job.getResult().join());
+
+        // Then
+        assertInstanceOf(OutOfMemoryError.class, error.getCause());
+        assertEquals(JobStatus.State.FAILED, job.toStatus().getState());
+    }
+}
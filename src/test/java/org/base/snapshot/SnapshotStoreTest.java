@@ -0,0 +1,265 @@
+package org.base.snapshot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.base.aggregator.RecordAggregate;
+import org.base.cache.UrlSourceCache;
+import org.base.config.StatisticsProperties;
+import org.base.dto.RecordErrors;
+import org.base.dto.URLErrors;
+import org.base.exectutor.ExecutorServiceManager;
+import org.base.fetcher.AsyncUrlFetcher;
+import org.base.fetcher.ChunkedFileParser;
+import org.base.fetcher.CsvRecordParser;
+import org.base.fetcher.DataFetcher;
+import org.base.fetcher.FetchResponse;
+import org.base.fetcher.HostScheduler;
+import org.base.fetcher.UrlSourceFetcher;
+import org.base.metrics.PipelineMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.base.aggregator.AgeHistogram.MAX_AGE;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotStoreTest {
+
+    private final StatisticsProperties statisticsProperties = new StatisticsProperties();
+    private final ExecutorServiceManager executorServiceManager = new ExecutorServiceManager(statisticsProperties);
+
+    @TempDir
+    Path tempDir;
+
+    private SnapshotStore snapshotStore;
+
+    @BeforeEach
+    void enableSnapshots() {
+        statisticsProperties.getSnapshots().setEnabled(true);
+        statisticsProperties.getSnapshots().setDirectory(tempDir.resolve("snapshots").toString());
+        snapshotStore = new SnapshotStore(executorServiceManager, statisticsProperties);
+    }
+
+    @Test
+    void should_rebuild_same_aggregate_from_snapshot_written_in_parts() {
+        // Given
+        String csv = csv(3000);
+        int half = csv.indexOf('\n', csv.length() / 2) + 1;
+        RecordAggregate allData = new RecordAggregate();
+        List<String> lineErrors = new ArrayList<>();
+        SnapshotWriter writer = snapshotStore.newWriter();
+        parse(csv.substring(0, half), true, allData, lineErrors, writer);
+        parse(csv.substring(half), false, allData, lineErrors, writer);
+
+        // When
+        snapshotStore.saveFile("records.csv", 100, 200, true, lineErrors, writer).join();
+        SourceSnapshot snapshot = snapshotStore.find("records.csv");
+
+        // Then
+        assertNotNull(snapshot);
+        assertTrue(snapshot.isSameFile(100, 200));
+        assertFalse(snapshot.isSameFile(100, 201));
+        assertTrue(snapshot.isValidCSV());
+        assertEquals(lineErrors, snapshot.getRecordLineErrors());
+        assertSameAggregate(allData, snapshot.toAggregate());
+        assertNull(snapshotStore.find("other.csv"));
+    }
+
+    @Test
+    void should_snapshot_url_with_validators_only() {
+        // Given
+        SnapshotWriter writer = snapshotStore.newWriter();
+        parse(csv(10), true, new RecordAggregate(), new ArrayList<>(), writer);
+
+        // When
+        snapshotStore.saveUrl("http://host/a.csv", new FetchResponse(false, "\"v1\"", null), true, Collections.emptyList(), writer).join();
+        snapshotStore.saveUrl("http://host/b.csv", new FetchResponse(false, null, null), true, Collections.emptyList(), writer).join();
+
+        // Then
+        assertEquals("\"v1\"", snapshotStore.find("http://host/a.csv").getValidators().getETag());
+        assertFalse(snapshotStore.find("http://host/a.csv").isSameFile(-1, -1));
+        assertNull(snapshotStore.find("http://host/b.csv"));
+    }
+
+    @Test
+    void should_not_snapshot_source_with_more_rows_than_the_limit() {
+        // Given
+        statisticsProperties.getSnapshots().setMaxRows(5);
+        SnapshotWriter writer = new SnapshotStore(executorServiceManager, statisticsProperties).newWriter();
+
+        // When
+        parse(csv(10), true, new RecordAggregate(), new ArrayList<>(), writer);
+        snapshotStore.saveFile("records.csv", 1, 1, true, Collections.emptyList(), writer).join();
+
+        // Then
+        assertTrue(writer.isDropped());
+        assertNull(snapshotStore.find("records.csv"));
+    }
+
+    @Test
+    void should_rebuild_same_aggregate_from_parts_of_several_blocks() {
+        // Given
+        String csv = csv(3 * SnapshotWriter.BLOCK_ROWS);
+        int half = csv.indexOf('\n', csv.length() / 2) + 1;
+        RecordAggregate allData = new RecordAggregate();
+        SnapshotWriter writer = snapshotStore.newWriter();
+        parse(csv.substring(0, half), true, allData, new ArrayList<>(), writer);
+        parse(csv.substring(half), false, allData, new ArrayList<>(), writer);
+
+        // When
+        snapshotStore.saveFile("records.csv", 1, 1, true, Collections.emptyList(), writer).join();
+
+        // Then
+        assertSameAggregate(allData, snapshotStore.find("records.csv").toAggregate());
+    }
+
+    @Test
+    void should_drop_source_that_finds_the_buffer_full_until_other_sources_are_written() {
+        // Given
+        statisticsProperties.getSnapshots().setMaxBufferedRows(2 * SnapshotWriter.BLOCK_ROWS);
+        SnapshotStore store = new SnapshotStore(executorServiceManager, statisticsProperties);
+        SnapshotWriter first = store.newWriter();
+        SnapshotWriter second = store.newWriter();
+        parse(csv(2 * SnapshotWriter.BLOCK_ROWS - 10), true, new RecordAggregate(), new ArrayList<>(), first);
+
+        // When
+        parse(csv(10), true, new RecordAggregate(), new ArrayList<>(), second);
+        store.saveFile("first.csv", 1, 1, true, Collections.emptyList(), first).join();
+        store.saveFile("second.csv", 1, 1, true, Collections.emptyList(), second).join();
+        SnapshotWriter third = store.newWriter();
+        parse(csv(10), true, new RecordAggregate(), new ArrayList<>(), third);
+        store.saveFile("third.csv", 1, 1, true, Collections.emptyList(), third).join();
+
+        // Then
+        assertNotNull(store.find("first.csv"));
+        assertTrue(second.isDropped());
+        assertNull(store.find("second.csv"));
+        assertNotNull(store.find("third.csv"));
+    }
+
+    @Test
+    void should_delete_least_recently_used_snapshots_above_the_disk_limit() throws IOException {
+        // Given
+        save("a.csv");
+        long snapshotBytes = snapshotStore.find("a.csv").getSize();
+        statisticsProperties.getSnapshots().setMaxDiskSize(DataSize.ofBytes(2 * snapshotBytes));
+        snapshotStore = new SnapshotStore(executorServiceManager, statisticsProperties);
+        save("b.csv");
+        Path snapshots = tempDir.resolve("snapshots");
+        try (Stream<Path> files = Files.list(snapshots)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+            }
+        }
+
+        // When
+        snapshotStore.find("a.csv");
+        save("c.csv");
+
+        // Then
+        assertNotNull(snapshotStore.find("a.csv"));
+        assertNull(snapshotStore.find("b.csv"));
+        assertNotNull(snapshotStore.find("c.csv"));
+    }
+
+    @Test
+    void should_read_unchanged_file_from_snapshot_and_parse_changed_file_again() throws Exception {
+        // Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DataFetcher dataFetcher = new DataFetcher(executorServiceManager, new ChunkedFileParser(executorServiceManager),
+                new UrlSourceFetcher(new AsyncUrlFetcher(statisticsProperties, executorServiceManager), new HostScheduler(statisticsProperties), executorServiceManager, statisticsProperties),
+                new UrlSourceCache(statisticsProperties), new PipelineMetrics(meterRegistry), snapshotStore, statisticsProperties);
+        Path file = tempDir.resolve("records.csv");
+        Files.write(file, csv(500).getBytes(StandardCharsets.UTF_8));
+        List<String> paths = Collections.singletonList(file.toString());
+
+        // When
+        RecordAggregate parsed = read(dataFetcher, paths);
+        awaitSnapshot(file.toString());
+        RecordAggregate fromSnapshot = read(dataFetcher, paths);
+        Files.write(file, csv(20).getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        RecordAggregate changed = read(dataFetcher, paths);
+        // The changed file is snapshotted again in the background, the temporary directory is deleted after that
+        awaitSnapshot(file.toString(), Files.size(file), Files.getLastModifiedTime(file).toMillis());
+
+        // Then
+        assertSameAggregate(parsed, fromSnapshot);
+        assertTrue(meterRegistry.counter("summary.rows", "source", "snapshot").count() > 0);
+        assertTrue(changed.getCount() < parsed.getCount());
+    }
+
+    private void save(String path) {
+        SnapshotWriter writer = snapshotStore.newWriter();
+        parse(csv(100), true, new RecordAggregate(), new ArrayList<>(), writer);
+        snapshotStore.saveFile(path, 1, 1, true, Collections.emptyList(), writer).join();
+    }
+
+    private void awaitSnapshot(String path) throws InterruptedException {
+        for (int i = 0; i < 100 && snapshotStore.find(path) == null; i++) {
+            Thread.sleep(50);
+        }
+    }
+
+    private void awaitSnapshot(String path, long size, long modifiedMillis) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            SourceSnapshot snapshot = snapshotStore.find(path);
+            if (snapshot != null && snapshot.isSameFile(size, modifiedMillis)) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private static RecordAggregate read(DataFetcher dataFetcher, List<String> paths) {
+        Set<URLErrors> urlErrors = new HashSet<>();
+        Set<RecordErrors> lineErrors = new HashSet<>();
+        return dataFetcher.fetchRecordData(paths, urlErrors, lineErrors, new AtomicInteger()).get(0);
+    }
+
+    private static void parse(String csv, boolean checkHeader, RecordAggregate allData, List<String> lineErrors, SnapshotWriter writer) {
+        RecordAggregate partData = new RecordAggregate();
+        CsvRecordParser parser = new CsvRecordParser("records.csv", partData, lineErrors, checkHeader);
+        parser.setRecordSink(writer.newPart());
+        try {
+            parser.parse(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        allData.merge(partData);
+    }
+
+    private static void assertSameAggregate(RecordAggregate expected, RecordAggregate actual) {
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getHistogram().getSum(), actual.getHistogram().getSum());
+        for (int age = 0; age <= MAX_AGE; age++) {
+            assertEquals(expected.getPersonWithAge(age), actual.getPersonWithAge(age));
+        }
+    }
+
+    private static String csv(int rows) {
+        StringBuilder csv = new StringBuilder("fname, lname, age\n");
+        for (int i = 0; i < rows; i++) {
+            if (i % 97 == 0) {
+                csv.append("Bad, LINE").append(i).append('\n');
+            } else {
+                csv.append(" Person").append(i % 400).append(" , NAME").append(i % 13).append(", ").append(i % 151).append('\n');
+            }
+        }
+        return csv.toString();
+    }
+}